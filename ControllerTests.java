@@ -1,4 +1,12 @@
+import controller.EditJournal;
 import controller.LogicGateController;
+import controller.SimulationScheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
 
 public class ControllerTests {
     
@@ -18,6 +26,10 @@ public class ControllerTests {
             // Test 3: Simulation logic
             testSimulationLogic();
             
+            // Test 4: Background simulation scheduler
+            testSimulationScheduler();
+            testEditJournal();
+            
             System.out.println("\n✅ CONTROLLER TESTS COMPLETED!");
             
         } catch (Exception e) {
@@ -101,4 +113,140 @@ public class ControllerTests {
             System.out.println("✓ Circuit logic correct: Final output is LOW");
         }
     }
-}
\ No newline at end of file
+    
+    static void testSimulationScheduler() throws Exception {
+        System.out.println("\n4. BACKGROUND SIMULATION SCHEDULER:");
+        
+        model.LogicGateModel circuit = new model.LogicGateModel();
+        model.GateComponent input = new model.GateComponent(model.ComponentType.LOW_INPUT, 0, 0);
+        model.GateComponent notGate = new model.GateComponent(model.ComponentType.NOT, 100, 0);
+        model.GateComponent output = new model.GateComponent(model.ComponentType.OUTPUT, 200, 0);
+        notGate.addInput(input);
+        output.addInput(notGate);
+        circuit.addComponent(input);
+        circuit.addComponent(notGate);
+        circuit.addComponent(output);
+        
+        AtomicReference<SimulationScheduler.Snapshot> latest = new AtomicReference<>();
+        CountDownLatch settled = new CountDownLatch(1);
+        boolean[] onEdt = {true};
+        SimulationScheduler scheduler = new SimulationScheduler(circuit, snapshot -> {
+            onEdt[0] &= SwingUtilities.isEventDispatchThread();
+            latest.set(snapshot);
+            // 1001 toggles starting from LOW end HIGH, so NOT drives the output LOW
+            if (!snapshot.getOutputStates().get(output.getId())) {
+                settled.countDown();
+            }
+        });
+        simulation.SimulationMetrics metrics = new simulation.SimulationMetrics();
+        scheduler.setMetrics(metrics);
+        
+        SwingUtilities.invokeAndWait(() -> {
+            scheduler.modelChanged();
+            for (int i = 0; i < 1001; i++) {
+                input.setState(!input.getState());
+                scheduler.inputsChanged();
+            }
+        });
+        
+        boolean done = settled.await(5, TimeUnit.SECONDS);
+        scheduler.shutdown();
+        if (done && onEdt[0]) {
+            System.out.println("✓ Final state published on the EDT: OUTPUT = LOW");
+        } else {
+            throw new AssertionError("Scheduler did not publish the final state on the EDT");
+        }
+        System.out.println("✓ 1002 requests coalesced into " + scheduler.getRunCount() + " run(s)");
+        System.out.println("✓ Snapshot from model version " + latest.get().getModelVersion());
+        if (metrics.getRuns() != scheduler.getRunCount() || metrics.getTotalNanos() <= 0) {
+            throw new AssertionError("Instrumented runs were not recorded");
+        }
+        System.out.println("✓ Metrics recorded " + metrics.getRuns() + " run(s), " + metrics.getGateEvaluations()
+                + " gate evaluation(s)");
+    }
+    
+    static void testEditJournal() throws Exception {
+        System.out.println("\n5. UNDO/REDO EDIT JOURNAL:");
+        
+        model.LogicGateModel circuit = new model.LogicGateModel();
+        model.ModelIndex index = new model.ModelIndex(circuit);
+        EditJournal journal = new EditJournal(index);
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("journal");
+        journal.startAutosave(dir.resolve("base.gate"), dir.resolve("edits.log"));
+        
+        model.GateComponent a = new model.GateComponent(model.ComponentType.LOW_INPUT, 0, 0);
+        model.GateComponent b = new model.GateComponent(model.ComponentType.HIGH_INPUT, 0, 100);
+        model.GateComponent and = new model.GateComponent(model.ComponentType.AND, 100, 50);
+        model.GateComponent out = new model.GateComponent(model.ComponentType.OUTPUT, 200, 50);
+        journal.addComponent(a);
+        journal.addComponent(b);
+        journal.addComponent(and);
+        journal.addComponent(out);
+        journal.addWire(connect(a, and));
+        journal.addWire(connect(b, and));
+        journal.addWire(connect(and, out));
+        
+        for (int step = 1; step <= 20; step++) {
+            journal.move(and, 100 + step * 5, 50);
+        }
+        journal.endDrag();
+        journal.setInputState(a, true);
+        if (journal.undoSize() != 9) {
+            throw new AssertionError("Expected 9 undo steps, got " + journal.undoSize());
+        }
+        System.out.println("✓ 20-step drag coalesced into one undo step");
+        
+        journal.removeComponent(and);
+        journal.undo();
+        if (!index.contains(and) || out.getInputs().get(0) != and || and.getInputs().size() != 2
+                || circuit.getWires().size() != 3) {
+            throw new AssertionError("Undoing a removal did not restore the gate and its wires");
+        }
+        System.out.println("✓ Undo of remove restores the gate, its wires and downstream inputs");
+        
+        journal.undo();
+        journal.undo();
+        if (a.getState() || and.getBounds().x != 100) {
+            throw new AssertionError("Undo did not restore state and position");
+        }
+        System.out.println("✓ Undo restores input state and the pre-drag position");
+        
+        journal.redo();
+        journal.redo();
+        if (!a.getState() || and.getBounds().x != 200) {
+            throw new AssertionError("Redo did not reapply the edits");
+        }
+        System.out.println("✓ Redo reapplies the drag and the input toggle");
+        
+        journal.removeWire(circuit.getWires().get(1));
+        journal.stopAutosave();
+        model.LogicGateModel recovered = EditJournal.recover(dir.resolve("base.gate"), dir.resolve("edits.log"));
+        boolean same = recovered.getComponents().size() == circuit.getComponents().size()
+                && recovered.getWires().size() == circuit.getWires().size();
+        for (int i = 0; same && i < circuit.getComponents().size(); i++) {
+            model.GateComponent expected = circuit.getComponents().get(i);
+            model.GateComponent actual = recovered.getComponents().get(i);
+            same = expected.getType() == actual.getType() && expected.getState() == actual.getState()
+                    && expected.getBounds().equals(actual.getBounds())
+                    && expected.getInputs().size() == actual.getInputs().size();
+        }
+        if (!same) {
+            throw new AssertionError("Recovered model differs from the edited one");
+        }
+        System.out.println("✓ Checkpoint plus appended log recovers the edited board ("
+                + java.nio.file.Files.size(dir.resolve("edits.log")) + " log bytes)");
+        
+        EditJournal bounded = new EditJournal(new model.ModelIndex(new model.LogicGateModel()), 5);
+        for (int i = 0; i < 10; i++) {
+            bounded.addComponent(new model.GateComponent(model.ComponentType.NOT, i * 100, 0));
+        }
+        if (bounded.undoSize() != 5) {
+            throw new AssertionError("History not bounded");
+        }
+        System.out.println("✓ History bounded to 5 steps");
+    }
+    
+    static model.ConnectionWire connect(model.GateComponent source, model.GateComponent target) {
+        return model.Wiring.connect(source, target);
+    }
+}
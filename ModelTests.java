@@ -1,8 +1,15 @@
 // First, try importing the classes
+import java.awt.Rectangle;
+import java.util.Arrays;
+
 import model.ComponentType;
 import model.GateComponent;
 import model.LogicGateModel;
+import model.CompactCircuitStore;
 import model.ConnectionWire;
+import model.ModelIndex;
+import model.SpatialIndex;
+import model.Wiring;
 
 public class ModelTests {
     
@@ -30,6 +37,9 @@ public class ModelTests {
             testModelManagement();
             testInputLimits();
             testSerialization();
+            testModelIndex();
+            testSpatialIndex();
+            testCompactStore();
             
             System.out.println("\n✅ ALL MODEL TESTS PASSED!");
             
@@ -216,4 +226,180 @@ public class ModelTests {
         assertTrue(model.getWires() != null, "Model has wires list");
         assertTrue(model.getOutputStates() != null, "Model has output states map");
     }
-}
\ No newline at end of file
+    
+    static void testModelIndex() {
+        System.out.println("\n7. TESTING MODEL INDEX:");
+        
+        LogicGateModel model = new LogicGateModel();
+        ModelIndex index = new ModelIndex(model);
+        
+        GateComponent high = new GateComponent(ComponentType.HIGH_INPUT, 0, 0);
+        GateComponent low = new GateComponent(ComponentType.LOW_INPUT, 0, 50);
+        GateComponent and = new GateComponent(ComponentType.AND, 100, 0);
+        GateComponent output = new GateComponent(ComponentType.OUTPUT, 200, 0);
+        index.addComponent(high);
+        index.addComponent(low);
+        index.addComponent(and);
+        index.addComponent(output);
+        
+        and.addInput(high);
+        and.addInput(low);
+        output.addInput(and);
+        ConnectionWire highToAnd = new ConnectionWire(high, and);
+        ConnectionWire lowToAnd = new ConnectionWire(low, and);
+        ConnectionWire andToOutput = new ConnectionWire(and, output);
+        index.addWire(highToAnd);
+        index.addWire(lowToAnd);
+        index.addWire(andToOutput);
+        
+        assertEquals(and, index.findById(and.getId()), "Component found by id");
+        assertEquals(2, index.getIncomingWires(and).size(), "AND has 2 incoming wires");
+        assertEquals(1, index.getOutgoingWires(and).size(), "AND has 1 outgoing wire");
+        
+        index.removeComponent(and);
+        assertEquals(3, model.getComponents().size(), "Model has 3 components after removal");
+        assertEquals(0, model.getWires().size(), "All wires of removed component are gone");
+        assertTrue(index.findById(and.getId()) == null, "Removed component no longer found");
+        assertEquals(0, index.getOutgoingWires(high).size(), "Source adjacency updated");
+        assertEquals(0, output.getInputs().size(), "Target no longer references removed component");
+        
+        // A selection is removed in one pass; wires among and around it go with it
+        GateComponent first = new GateComponent(ComponentType.NOT, 300, 0);
+        GateComponent second = new GateComponent(ComponentType.NOT, 400, 0);
+        index.addComponent(first);
+        index.addComponent(second);
+        first.addInput(high);
+        second.addInput(first);
+        output.addInput(second);
+        index.addWire(new ConnectionWire(high, first));
+        index.addWire(new ConnectionWire(first, second));
+        index.addWire(new ConnectionWire(second, output));
+        index.removeComponents(Arrays.asList(first, second));
+        assertEquals(3, model.getComponents().size(), "Selection removed from the model");
+        assertEquals(0, model.getWires().size(), "Wires touching the selection removed");
+        assertTrue(index.getOutgoingWires(high).isEmpty() && output.getInputs().isEmpty(),
+                "Survivors unlinked from the selection");
+        index.removeComponents(Arrays.asList(output));
+        assertEquals(0, model.getOutputStates().size(), "Output state dropped with its component");
+        
+        // Rebuild picks up a model edited directly
+        LogicGateModel loaded = new LogicGateModel();
+        loaded.addComponent(high);
+        loaded.addComponent(output);
+        loaded.addWire(new ConnectionWire(high, output));
+        ModelIndex rebuilt = new ModelIndex(loaded);
+        assertEquals(1, rebuilt.getIncomingWires(output).size(), "Existing wires indexed on construction");
+        
+        // A wire endpoint that was never added is not a member
+        GateComponent stray = new GateComponent(ComponentType.NOT, 300, 0);
+        rebuilt.addWire(new ConnectionWire(output, stray));
+        assertTrue(!rebuilt.contains(stray) && rebuilt.contains(output), "Only added components contained");
+        
+        rebuilt.clear();
+        assertTrue(rebuilt.findById(high.getId()) == null, "Index cleared with model");
+        assertEquals(0, loaded.getComponents().size(), "Model cleared through index");
+        
+        // Wiring restores connections without the editor's fan-in limit, both ways alike
+        GateComponent not = new GateComponent(ComponentType.NOT, 0, 0);
+        Wiring.connect(high, not);
+        Wiring.connect(low, not, 0);
+        assertEquals(Arrays.asList(low, high), not.getInputs(), "Every wired input recorded, in position");
+    }
+    
+    static void testSpatialIndex() {
+        System.out.println("\n8. TESTING SPATIAL INDEX:");
+        
+        LogicGateModel model = new LogicGateModel();
+        GateComponent high = new GateComponent(ComponentType.HIGH_INPUT, 0, 0);
+        GateComponent and = new GateComponent(ComponentType.AND, 300, 0);
+        GateComponent far = new GateComponent(ComponentType.OUTPUT, 5000, 5000);
+        model.addComponent(high);
+        model.addComponent(and);
+        model.addComponent(far);
+        ConnectionWire wire = new ConnectionWire(high, and);
+        model.addWire(wire);
+        
+        SpatialIndex index = SpatialIndex.of(model);
+        Rectangle highBounds = high.getBounds();
+        assertEquals(high, index.componentAt(highBounds.x + 1, highBounds.y + 1), "Hit-test finds component under point");
+        assertTrue(index.componentAt(2000, 2000) == null, "Hit-test on empty space finds nothing");
+        
+        int wireY = highBounds.y + highBounds.height / 2;
+        int wireX = (highBounds.x + highBounds.width + and.getBounds().x) / 2;
+        assertEquals(wire, index.wireAt(wireX, wireY + 2, 4), "Wire found within tolerance");
+        assertTrue(index.wireAt(wireX, wireY + 40, 4) == null, "Wire not found outside tolerance");
+        
+        Rectangle viewport = new Rectangle(-10, -10, 1000, 600);
+        assertEquals(2, index.componentsIn(viewport).size(), "Viewport culls far component");
+        assertEquals(1, index.wiresIn(viewport).size(), "Viewport contains the wire");
+        
+        far.getBounds().setLocation(100, 300);
+        index.update(far);
+        assertEquals(3, index.componentsIn(viewport).size(), "Moved component re-indexed");
+        
+        index.remove(and);
+        assertTrue(index.componentAt(and.getBounds().x + 1, and.getBounds().y + 1) == null, "Removed component not hit");
+        assertEquals(0, index.wireCount(), "Attached wire removed with component");
+    }
+    
+    static void testCompactStore() {
+        System.out.println("\n9. TESTING COMPACT CIRCUIT STORE:");
+        
+        LogicGateModel model = new LogicGateModel();
+        GateComponent high = new GateComponent(ComponentType.HIGH_INPUT, 0, 0);
+        GateComponent low = new GateComponent(ComponentType.LOW_INPUT, 0, 100);
+        GateComponent or = new GateComponent(ComponentType.OR, 100, 50);
+        GateComponent bulb = new GateComponent(ComponentType.BULB, 200, 50);
+        model.addComponent(high);
+        model.addComponent(low);
+        model.addComponent(or);
+        model.addComponent(bulb);
+        or.addInput(high);
+        or.addInput(low);
+        bulb.addInput(or);
+        
+        CompactCircuitStore store = CompactCircuitStore.fromModel(model);
+        assertEquals(4, store.size(), "All components stored");
+        assertEquals(ComponentType.BULB, store.type(3), "Exact component type kept");
+        assertEquals(2, store.inputCount(2), "Inputs held in CSR adjacency");
+        assertEquals(or.getId(), store.id(2), "Model ids carried over");
+        assertEquals(2, store.gateOf(or.getId()), "Gate found by id");
+        assertEquals(or.getBounds(), store.view(2).getBounds(), "View reports the component's bounds");
+        assertEquals(store.view(0), store.view(2).getInput(0), "Views of the same gate are equal");
+        
+        LogicGateModel copy = store.toModel();
+        assertEquals(2, copy.getComponents().get(2).getInputs().size(), "Materialized model rewired");
+        assertTrue(copy.getComponents().get(3).calculateOutput(), "Materialized model computes HIGH OR LOW");
+        
+        // A million gates: NOT chain laid out on a grid, ids created on demand only
+        int n = 1_000_000;
+        CompactCircuitStore big = new CompactCircuitStore(n);
+        big.addGate(ComponentType.LOW_INPUT, 0, 0, 60, 40);
+        for (int g = 1; g < n; g++) {
+            big.addGate(ComponentType.NOT, (g % 1000) * 100, (g / 1000) * 60, 60, 40);
+            big.connect(g - 1, g);
+        }
+        assertEquals(n - 1, big.edgeCount(), "Million-gate chain connected");
+        assertTrue(big.estimatedBytes() < 40L * 1024 * 1024, "Million gates fit in under 40 MB ("
+                + big.estimatedBytes() / (1024 * 1024) + " MB)");
+        String id = big.id(123_456);
+        assertEquals(123_456, big.gateOf(id), "UUID assigned lazily and reversible");
+        
+        // Reading while appending extends the adjacency in place instead of rebuilding it
+        int before = big.edgeCount();
+        boolean unconnected = true;
+        for (int g = 0; g < 100_000; g++) {
+            int gate = big.addGate(ComponentType.NOT, 0, 0, 60, 40);
+            unconnected &= big.inputCount(gate) == 0;
+        }
+        assertTrue(unconnected && big.edgeCount() == before, "Interleaved appends and reads keep the edges");
+        
+        boolean rejected = false;
+        try {
+            big.addGate(ComponentType.AND, 0, 0, 40_000, 40);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assertTrue(rejected, "Gate sizes beyond the short columns rejected");
+    }
+}
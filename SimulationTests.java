@@ -0,0 +1,863 @@
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.ObjectName;
+
+import model.CompactCircuitStore;
+import model.ComponentType;
+import model.GateComponent;
+import model.LogicGateModel;
+import simulation.BatchRunner;
+import simulation.BusCircuit;
+import simulation.CompiledCircuit;
+import simulation.GateOp;
+import simulation.GeneratedEvaluator;
+import simulation.HierarchicalCircuit;
+import simulation.IncrementalSimulator;
+import simulation.LazyLayout;
+import simulation.Netlist;
+import simulation.NetlistOptimizer;
+import simulation.ParallelEvaluator;
+import simulation.SequentialSimulator;
+import simulation.SimulationMetrics;
+import simulation.SubCircuitDefinition;
+import simulation.TruthTable;
+
+public class SimulationTests {
+    
+    public static void assertEquals(Object expected, Object actual, String testName) {
+        if (!expected.equals(actual)) {
+            throw new AssertionError(testName + " FAILED: Expected " + expected + " but got " + actual);
+        }
+        System.out.println("✓ " + testName);
+    }
+    
+    public static void assertTrue(boolean condition, String testName) {
+        if (!condition) {
+            throw new AssertionError(testName + " FAILED");
+        }
+        System.out.println("✓ " + testName);
+    }
+    
+    public static void main(String[] args) {
+        System.out.println("=== SIMULATION ENGINE TESTS ===\n");
+        
+        try {
+            testCompiledHalfAdder();
+            testCompiledMatchesRecursive();
+            testDeepChain();
+            testIncrementalPropagation();
+            testTruthTable();
+            testSequentialCircuits();
+            testSubCircuits();
+            testBusCircuits();
+            testNetlistOptimizer();
+            testBatchRunner();
+            testGeneratedEvaluator();
+            testSimulationMetrics();
+            testParallelEvaluator();
+            testLazyLayout();
+            testCompactStoreConversion();
+            
+            System.out.println("\n✅ ALL SIMULATION TESTS PASSED!");
+            
+        } catch (AssertionError e) {
+            System.out.println("\n❌ TEST FAILED: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("\n❌ UNEXPECTED ERROR: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    static void testCompiledHalfAdder() {
+        System.out.println("1. TESTING COMPILED HALF-ADDER:");
+        
+        LogicGateModel model = new LogicGateModel();
+        GateComponent a = new GateComponent(ComponentType.HIGH_INPUT, 0, 0);
+        GateComponent b = new GateComponent(ComponentType.HIGH_INPUT, 0, 50);
+        GateComponent xor = new GateComponent(ComponentType.XOR, 100, 0);
+        GateComponent and = new GateComponent(ComponentType.AND, 100, 50);
+        GateComponent sum = new GateComponent(ComponentType.OUTPUT, 200, 0);
+        GateComponent carry = new GateComponent(ComponentType.OUTPUT, 200, 50);
+        xor.addInput(a);
+        xor.addInput(b);
+        and.addInput(a);
+        and.addInput(b);
+        sum.addInput(xor);
+        carry.addInput(and);
+        // Deliberately out of topological order
+        model.addComponent(carry);
+        model.addComponent(sum);
+        model.addComponent(and);
+        model.addComponent(xor);
+        model.addComponent(a);
+        model.addComponent(b);
+        
+        CompiledCircuit circuit = CompiledCircuit.compile(model);
+        assertEquals(2, circuit.depth(), "Half-adder has depth 2");
+        
+        boolean[][] cases = {{false, false}, {false, true}, {true, false}, {true, true}};
+        for (boolean[] c : cases) {
+            a.setState(c[0]);
+            b.setState(c[1]);
+            circuit.loadSources();
+            circuit.evaluate();
+            String label = (c[0] ? "1" : "0") + "+" + (c[1] ? "1" : "0");
+            assertEquals(c[0] ^ c[1], circuit.outputStates().get(sum.getId()), "Sum of " + label);
+            assertEquals(c[0] && c[1], circuit.outputStates().get(carry.getId()), "Carry of " + label);
+        }
+    }
+    
+    static void testCompiledMatchesRecursive() {
+        System.out.println("\n2. TESTING COMPILED MATCHES calculateOutput():");
+        
+        // ((A AND B) OR (NOT C)) -> OUTPUT, as in IntegrationTests
+        LogicGateModel model = new LogicGateModel();
+        GateComponent a = new GateComponent(ComponentType.HIGH_INPUT, 0, 0);
+        GateComponent b = new GateComponent(ComponentType.LOW_INPUT, 0, 50);
+        GateComponent c = new GateComponent(ComponentType.HIGH_INPUT, 0, 100);
+        GateComponent andAB = new GateComponent(ComponentType.AND, 100, 25);
+        GateComponent notC = new GateComponent(ComponentType.NOT, 100, 100);
+        GateComponent or = new GateComponent(ComponentType.OR, 200, 62);
+        GateComponent output = new GateComponent(ComponentType.OUTPUT, 300, 62);
+        andAB.addInput(a);
+        andAB.addInput(b);
+        notC.addInput(c);
+        or.addInput(andAB);
+        or.addInput(notC);
+        output.addInput(or);
+        for (GateComponent g : new GateComponent[] {a, b, c, andAB, notC, or, output}) {
+            model.addComponent(g);
+        }
+        
+        CompiledCircuit circuit = CompiledCircuit.compile(model);
+        for (int bits = 0; bits < 8; bits++) {
+            a.setState((bits & 1) != 0);
+            b.setState((bits & 2) != 0);
+            c.setState((bits & 4) != 0);
+            circuit.loadSources();
+            circuit.evaluate();
+            assertEquals(output.calculateOutput(), circuit.outputStates().get(output.getId()),
+                    "Compiled result matches for inputs " + bits);
+        }
+    }
+    
+    static void testDeepChain() {
+        System.out.println("\n3. TESTING DEEP CHAIN WITHOUT RECURSION:");
+        
+        int length = 200_000;
+        Netlist.Builder builder = new Netlist.Builder();
+        int input = builder.add(GateOp.INPUT);
+        int previous = input;
+        for (int i = 0; i < length; i++) {
+            previous = builder.add(GateOp.NOT, previous);
+        }
+        int output = builder.add(GateOp.OUTPUT, previous);
+        
+        CompiledCircuit circuit = CompiledCircuit.compile(builder.build());
+        circuit.setInput(input, true);
+        circuit.evaluate();
+        assertEquals(length + 1, circuit.depth(), "Chain depth is " + (length + 1));
+        assertTrue(circuit.get(output), "Even number of inverters keeps HIGH");
+        
+        Netlist.Builder loop = new Netlist.Builder();
+        int x = loop.add(GateOp.NOT);
+        int y = loop.add(GateOp.NOT, x);
+        loop.connect(y, x);
+        boolean rejected = false;
+        try {
+            CompiledCircuit.compile(loop.build());
+        } catch (IllegalStateException e) {
+            rejected = true;
+        }
+        assertTrue(rejected, "Feedback loop is rejected by the combinational compiler");
+    }
+    
+    static void testIncrementalPropagation() {
+        System.out.println("\n4. TESTING EVENT-DRIVEN PROPAGATION:");
+        
+        // Many independent AND cones; toggling one input must only touch its own cone
+        int cones = 1000;
+        Netlist.Builder builder = new Netlist.Builder();
+        int[] inputs = new int[cones * 2];
+        int[] outputs = new int[cones];
+        for (int i = 0; i < cones; i++) {
+            inputs[2 * i] = builder.add(GateOp.INPUT);
+            inputs[2 * i + 1] = builder.add(GateOp.INPUT);
+            builder.setInitial(inputs[2 * i + 1], true);
+            int and = builder.add(GateOp.AND, inputs[2 * i], inputs[2 * i + 1]);
+            outputs[i] = builder.add(GateOp.OUTPUT, builder.add(GateOp.NOT, and));
+        }
+        IncrementalSimulator simulator = new IncrementalSimulator(CompiledCircuit.compile(builder.build()));
+        assertTrue(simulator.get(outputs[500]), "Initial state is fully evaluated");
+        
+        assertTrue(simulator.setInput(inputs[1000], true), "Toggle reports a change");
+        assertTrue(!simulator.get(outputs[500]), "Change propagated to the output");
+        assertEquals(3, simulator.lastEvaluations(), "Only the AND, NOT and OUTPUT of one cone re-evaluated");
+        assertEquals(4, simulator.changedCount(), "Input, AND, NOT and OUTPUT changed");
+        
+        assertTrue(!simulator.setInput(inputs[1000], true), "Setting the same value is a no-op");
+        
+        simulator.setInput(inputs[1000], false);
+        simulator.setInput(inputs[1001], false);
+        assertEquals(1, simulator.lastEvaluations(), "Propagation stops when the AND output is unchanged");
+        
+        // Model-backed: shared fan-in of the half-adder
+        LogicGateModel model = new LogicGateModel();
+        GateComponent a = new GateComponent(ComponentType.LOW_INPUT, 0, 0);
+        GateComponent b = new GateComponent(ComponentType.LOW_INPUT, 0, 50);
+        GateComponent xor = new GateComponent(ComponentType.XOR, 100, 0);
+        GateComponent and = new GateComponent(ComponentType.AND, 100, 50);
+        GateComponent sum = new GateComponent(ComponentType.OUTPUT, 200, 0);
+        GateComponent carry = new GateComponent(ComponentType.OUTPUT, 200, 50);
+        xor.addInput(a);
+        xor.addInput(b);
+        and.addInput(a);
+        and.addInput(b);
+        sum.addInput(xor);
+        carry.addInput(and);
+        for (GateComponent g : new GateComponent[] {a, b, xor, and, sum, carry}) {
+            model.addComponent(g);
+        }
+        IncrementalSimulator halfAdder = IncrementalSimulator.forModel(model);
+        halfAdder.setState(a, true);
+        assertTrue(a.getState(), "Component state updated");
+        assertEquals(true, halfAdder.outputStates().get(sum.getId()), "Sum of 1+0 after toggle");
+        halfAdder.setState(b, true);
+        assertEquals(false, halfAdder.outputStates().get(sum.getId()), "Sum of 1+1 after toggle");
+        assertEquals(true, halfAdder.outputStates().get(carry.getId()), "Carry of 1+1 after toggle");
+        
+        // A ring would propagate forever; it is left to the sequential simulator
+        Netlist.Builder ring = new Netlist.Builder();
+        int first = ring.add(GateOp.NOT);
+        ring.connect(ring.add(GateOp.NOT, first), first);
+        boolean rejected = false;
+        try {
+            new IncrementalSimulator(CompiledCircuit.compileSequential(ring.build()));
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assertTrue(rejected, "Feedback circuit rejected");
+    }
+    
+    static void testTruthTable() {
+        System.out.println("\n5. TESTING BIT-PARALLEL TRUTH TABLE:");
+        
+        // 4-bit ripple-carry adder: inputs a0..a3, b0..b3, cin; outputs s0..s3, cout
+        int bits = 4;
+        Netlist.Builder builder = new Netlist.Builder();
+        int[] a = new int[bits];
+        int[] b = new int[bits];
+        for (int i = 0; i < bits; i++) {
+            a[i] = builder.add(GateOp.INPUT);
+        }
+        for (int i = 0; i < bits; i++) {
+            b[i] = builder.add(GateOp.INPUT);
+        }
+        int carry = builder.add(GateOp.INPUT);
+        for (int i = 0; i < bits; i++) {
+            int x = builder.add(GateOp.XOR, a[i], b[i]);
+            builder.add(GateOp.OUTPUT, builder.add(GateOp.XOR, x, carry));
+            carry = builder.add(GateOp.OR, builder.add(GateOp.AND, a[i], b[i]), builder.add(GateOp.AND, x, carry));
+        }
+        builder.add(GateOp.OUTPUT, carry);
+        
+        TruthTable table = TruthTable.generate(CompiledCircuit.compile(builder.build()));
+        assertEquals(512L, table.rowCount(), "9 inputs give 512 rows");
+        assertEquals(5, table.outputCount(), "Adder has 5 outputs");
+        boolean correct = true;
+        for (long row = 0; row < table.rowCount(); row++) {
+            long expected = (row & 0xF) + ((row >> 4) & 0xF) + ((row >> 8) & 1);
+            for (int o = 0; o < 5; o++) {
+                correct &= table.get(row, o) == (((expected >> o) & 1) != 0);
+            }
+        }
+        assertTrue(correct, "Every row matches binary addition");
+        
+        // 20-input parity tree spread over many words and tasks
+        Netlist.Builder parity = new Netlist.Builder();
+        int acc = parity.add(GateOp.INPUT);
+        for (int i = 1; i < 20; i++) {
+            acc = parity.add(GateOp.XOR, acc, parity.add(GateOp.INPUT));
+        }
+        parity.add(GateOp.OUTPUT, acc);
+        TruthTable parityTable = TruthTable.generate(CompiledCircuit.compile(parity.build()));
+        assertEquals(1L << 19, parityTable.countHigh(0), "Half of all 2^20 rows have odd parity");
+        assertTrue(parityTable.get(0b111, 0) && !parityTable.get(0b11, 0), "Parity of individual rows");
+        
+        // Equivalence check: XOR vs OR differ first at row 3
+        Netlist.Builder xorCircuit = new Netlist.Builder();
+        xorCircuit.add(GateOp.OUTPUT, xorCircuit.add(GateOp.XOR, xorCircuit.add(GateOp.INPUT), xorCircuit.add(GateOp.INPUT)));
+        Netlist.Builder orCircuit = new Netlist.Builder();
+        orCircuit.add(GateOp.OUTPUT, orCircuit.add(GateOp.OR, orCircuit.add(GateOp.INPUT), orCircuit.add(GateOp.INPUT)));
+        TruthTable xorTable = TruthTable.generate(CompiledCircuit.compile(xorCircuit.build()));
+        TruthTable orTable = TruthTable.generate(CompiledCircuit.compile(orCircuit.build()));
+        assertEquals(3L, xorTable.firstMismatch(orTable), "XOR and OR first differ at row 3");
+        assertEquals(-1L, xorTable.firstMismatch(xorTable), "A table is equivalent to itself");
+    }
+    
+    static void testSequentialCircuits() {
+        System.out.println("\n6. TESTING CLOCKED SIMULATION WITH FEEDBACK:");
+        
+        // Cross-coupled NOR SR latch built from real components
+        LogicGateModel model = new LogicGateModel();
+        GateComponent s = new GateComponent(ComponentType.LOW_INPUT, 0, 0);
+        GateComponent r = new GateComponent(ComponentType.LOW_INPUT, 0, 100);
+        GateComponent nor1 = new GateComponent(ComponentType.NOR, 100, 0);
+        GateComponent nor2 = new GateComponent(ComponentType.NOR, 100, 100);
+        GateComponent q = new GateComponent(ComponentType.OUTPUT, 200, 0);
+        nor1.addInput(r);
+        nor1.addInput(nor2);
+        nor2.addInput(s);
+        nor2.addInput(nor1);
+        q.addInput(nor1);
+        for (GateComponent g : new GateComponent[] {s, r, nor1, nor2, q}) {
+            model.addComponent(g);
+        }
+        CompiledCircuit latchCircuit = CompiledCircuit.compileSequential(model);
+        assertEquals(1, latchCircuit.feedbackGates().length, "One feedback edge closes the latch loop");
+        
+        SequentialSimulator latch = new SequentialSimulator(latchCircuit);
+        latch.setInput(0, true);
+        assertTrue(latch.settle(), "Latch settles after SET");
+        assertTrue(latch.get(4), "SET drives Q HIGH");
+        latch.setInput(0, false);
+        latch.settle();
+        assertTrue(latch.get(4), "Q holds HIGH after SET is released");
+        latch.setInput(1, true);
+        latch.settle();
+        assertTrue(!latch.get(4), "RESET drives Q LOW");
+        latch.setInput(1, false);
+        latch.settle();
+        assertTrue(!latch.get(4), "Q holds LOW after RESET is released");
+        
+        // Gated D latch: Q follows D while CLK is HIGH and holds while LOW
+        Netlist.Builder builder = new Netlist.Builder();
+        int d = builder.add(GateOp.INPUT);
+        int clk = builder.add(GateOp.INPUT);
+        int n1 = builder.add(GateOp.NAND, d, clk);
+        int n2 = builder.add(GateOp.NAND, n1, clk);
+        int qGate = builder.add(GateOp.NAND, n1);
+        int qBar = builder.add(GateOp.NAND, n2, qGate);
+        builder.connect(qBar, qGate);
+        int out = builder.add(GateOp.OUTPUT, qGate);
+        SequentialSimulator dLatch = new SequentialSimulator(CompiledCircuit.compileSequential(builder.build()), clk);
+        dLatch.setInput(d, true);
+        assertTrue(dLatch.tick(), "Rising edge settles");
+        assertTrue(dLatch.get(out), "Q captures D=1 while CLK is HIGH");
+        dLatch.tick();
+        dLatch.setInput(d, false);
+        dLatch.settle();
+        assertTrue(dLatch.get(out), "Q holds while CLK is LOW");
+        assertEquals(0L, dLatch.run(1_000_000), "A million ticks settle without oscillation");
+        
+        // Ring oscillator: a NOT gate feeding itself never settles
+        Netlist.Builder ring = new Netlist.Builder();
+        int inverter = ring.add(GateOp.NOT);
+        ring.connect(inverter, inverter);
+        SequentialSimulator oscillator = new SequentialSimulator(CompiledCircuit.compileSequential(ring.build()));
+        assertTrue(oscillator.isOscillating(), "Ring oscillator is reported as oscillating");
+    }
+    
+    static void testSubCircuits() {
+        System.out.println("\n7. TESTING HIERARCHICAL SUB-CIRCUITS:");
+        
+        // Full adder definition: pins a, b, cin -> sum, cout
+        Netlist.Builder fa = new Netlist.Builder();
+        int a = fa.add(GateOp.INPUT);
+        int b = fa.add(GateOp.INPUT);
+        int cin = fa.add(GateOp.INPUT);
+        int x = fa.add(GateOp.XOR, a, b);
+        fa.add(GateOp.OUTPUT, fa.add(GateOp.XOR, x, cin));
+        fa.add(GateOp.OUTPUT, fa.add(GateOp.OR, fa.add(GateOp.AND, a, b), fa.add(GateOp.AND, x, cin)));
+        SubCircuitDefinition fullAdder = new SubCircuitDefinition("full-adder", CompiledCircuit.compile(fa.build()));
+        assertEquals(3, fullAdder.inputCount(), "Full adder declares 3 input pins");
+        assertEquals(2, fullAdder.outputCount(), "Full adder declares 2 output pins");
+        
+        // 32-bit ripple-carry adder from 32 instances
+        HierarchicalCircuit.Builder builder = new HierarchicalCircuit.Builder();
+        int[] as = new int[32];
+        int[] bs = new int[32];
+        for (int i = 0; i < 32; i++) {
+            as[i] = builder.add(GateOp.INPUT);
+        }
+        for (int i = 0; i < 32; i++) {
+            bs[i] = builder.add(GateOp.INPUT);
+        }
+        int carry = builder.add(GateOp.INPUT);
+        int[] sums = new int[33];
+        for (int i = 0; i < 32; i++) {
+            int[] outs = builder.addInstance(fullAdder, as[i], bs[i], carry);
+            sums[i] = builder.add(GateOp.OUTPUT, outs[0]);
+            carry = outs[1];
+        }
+        sums[32] = builder.add(GateOp.OUTPUT, carry);
+        HierarchicalCircuit adder = builder.build();
+        assertEquals(32, adder.instanceCount(), "32 instances share one definition");
+        
+        Random random = new Random(42);
+        boolean correct = true;
+        for (int trial = 0; trial < 200; trial++) {
+            long va = random.nextInt() & 0xFFFFFFFFL;
+            long vb = random.nextInt() & 0xFFFFFFFFL;
+            for (int i = 0; i < 32; i++) {
+                adder.setInput(as[i], (va >>> i & 1) != 0);
+                adder.setInput(bs[i], (vb >>> i & 1) != 0);
+            }
+            adder.evaluate();
+            long result = 0;
+            for (int i = 0; i <= 32; i++) {
+                if (adder.get(sums[i])) {
+                    result |= 1L << i;
+                }
+            }
+            correct &= result == va + vb;
+        }
+        assertTrue(correct, "200 random 32-bit additions are correct");
+        assertTrue(fullAdder.getEvaluations() <= 8, "Full adder simulated once per distinct pattern ("
+                + fullAdder.getEvaluations() + ")");
+        
+        // Nesting: a 4-bit adder of full-adder instances becomes a definition of its own
+        HierarchicalCircuit.Builder nibble = new HierarchicalCircuit.Builder();
+        int[] na = new int[4];
+        int[] nb = new int[4];
+        for (int i = 0; i < 4; i++) {
+            na[i] = nibble.add(GateOp.INPUT);
+        }
+        for (int i = 0; i < 4; i++) {
+            nb[i] = nibble.add(GateOp.INPUT);
+        }
+        int nc = nibble.add(GateOp.INPUT);
+        for (int i = 0; i < 4; i++) {
+            int[] outs = nibble.addInstance(fullAdder, na[i], nb[i], nc);
+            nibble.add(GateOp.OUTPUT, outs[0]);
+            nc = outs[1];
+        }
+        nibble.add(GateOp.OUTPUT, nc);
+        SubCircuitDefinition adder4 = new SubCircuitDefinition("adder-4", nibble.build());
+        assertEquals(9, adder4.inputCount(), "Nested definition exposes 9 input pins");
+        
+        // 0xB + 0x6 + carry 1 = 0x12
+        long pattern = 0xB | 0x6 << 4 | 1 << 8;
+        assertEquals(0x12L, adder4.evaluate(pattern), "Nested definition adds correctly");
+        
+        boolean rejected = false;
+        try {
+            new HierarchicalCircuit.Builder().addInstance(fullAdder, 0);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assertTrue(rejected, "Instance with wrong pin count is rejected");
+    }
+    
+    static void testBusCircuits() {
+        System.out.println("\n8. TESTING MULTI-BIT BUSES:");
+        
+        BusCircuit.Builder builder = new BusCircuit.Builder();
+        int a = builder.input(64);
+        int b = builder.input(64);
+        int and = builder.output(builder.gate(GateOp.AND, a, b));
+        int nand = builder.output(builder.gate(GateOp.NAND, a, b));
+        
+        // 8-bit bus: split into bits, swap the nibbles, merge back
+        int byteBus = builder.input(8);
+        int[] bits = builder.split(byteBus);
+        int swapped = builder.merge(builder.merge(bits[4], bits[5], bits[6], bits[7]), builder.slice(byteBus, 0, 4));
+        int notByte = builder.output(builder.gate(GateOp.NOT, swapped));
+        
+        BusCircuit circuit = builder.build();
+        assertEquals(13, circuit.cellCount(), "Both 64-bit gates and the byte datapath need only 13 cells");
+        
+        long va = 0x0123456789ABCDEFL;
+        long vb = 0xFF00FF00F0F0F0F0L;
+        circuit.set(a, va);
+        circuit.set(b, vb);
+        circuit.set(byteBus, 0x3C5L);
+        circuit.evaluate();
+        assertEquals(va & vb, circuit.get(and), "64-bit AND in one evaluation");
+        assertEquals(~(va & vb), circuit.get(nand), "64-bit NAND in one evaluation");
+        assertEquals(8, circuit.width(swapped), "Merged bus is 8 bits wide");
+        assertEquals(0xA3L, circuit.get(notByte), "Split, slice and merge swap nibbles; NOT masked to 8 bits");
+        
+        boolean rejected = false;
+        try {
+            BusCircuit.Builder mismatch = new BusCircuit.Builder();
+            mismatch.gate(GateOp.AND, mismatch.input(8), mismatch.input(16));
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assertTrue(rejected, "Gates over buses of different width are rejected");
+    }
+    
+    static void testNetlistOptimizer() {
+        System.out.println("\n9. TESTING NETLIST OPTIMIZER:");
+        
+        Netlist.Builder builder = new Netlist.Builder();
+        int a = builder.add(GateOp.INPUT);
+        int b = builder.add(GateOp.INPUT);
+        int c = builder.add(GateOp.INPUT);
+        int high = builder.add(GateOp.CONST_HIGH);
+        int ab = builder.add(GateOp.AND, a, b);
+        int ba = builder.add(GateOp.AND, b, a);
+        int either = builder.add(GateOp.OR, ab, ba);
+        int masked = builder.add(GateOp.AND, either, high);
+        int zero = builder.add(GateOp.XOR, c, c);
+        int merged = builder.add(GateOp.OR, masked, zero);
+        int notC = builder.add(GateOp.NOT, c);
+        int notNotC = builder.add(GateOp.NOT, notC);
+        int sum = builder.add(GateOp.XOR, merged, notNotC);
+        builder.add(GateOp.NAND, a, c);
+        int out = builder.add(GateOp.OUTPUT, sum);
+        int constOut = builder.add(GateOp.OUTPUT, zero);
+        Netlist original = builder.build();
+        
+        NetlistOptimizer.Result result = NetlistOptimizer.optimize(original);
+        Netlist reduced = result.netlist();
+        assertEquals(16, original.size(), "Original circuit has 16 gates");
+        assertEquals(8, reduced.size(), "Duplicates, identities and the dead NAND are removed");
+        assertEquals(-1L, TruthTable.generate(CompiledCircuit.compile(original))
+                .firstMismatch(TruthTable.generate(CompiledCircuit.compile(reduced))), "Optimized circuit is equivalent");
+        assertEquals(GateOp.CONST_LOW, reduced.op(reduced.input(result.gateFor(constOut), 0)),
+                "x XOR x folds to a constant LOW output");
+        assertEquals(-1, result.gateFor(zero), "Folded gates have no counterpart");
+        
+        // Treat c as a never-toggled HIGH input: sum collapses to NOT(a AND b)
+        BitSet variable = new BitSet();
+        variable.set(a);
+        variable.set(b);
+        builder.setInitial(c, true);
+        Netlist withConstant = builder.build();
+        NetlistOptimizer.Result folded = NetlistOptimizer.optimize(withConstant, variable);
+        CompiledCircuit before = CompiledCircuit.compile(withConstant);
+        CompiledCircuit after = CompiledCircuit.compile(folded.netlist());
+        boolean matches = true;
+        for (int row = 0; row < 4; row++) {
+            before.setInput(a, (row & 1) != 0);
+            before.setInput(b, (row & 2) != 0);
+            before.setInput(c, true);
+            after.setInput(folded.gateFor(a), (row & 1) != 0);
+            after.setInput(folded.gateFor(b), (row & 2) != 0);
+            before.evaluate();
+            after.evaluate();
+            matches &= before.get(out) == after.get(folded.gateFor(out));
+        }
+        assertTrue(matches, "Folding a constant input preserves outputs");
+        assertEquals(7, folded.netlist().size(), "Constant input is folded away");
+    }
+    
+    static void testBatchRunner() throws IOException {
+        System.out.println("\n10. TESTING BATCH STIMULUS RUNNER:");
+        
+        // Full adder: inputs a, b, cin; outputs sum, carry
+        Netlist.Builder builder = new Netlist.Builder();
+        int a = builder.add(GateOp.INPUT);
+        int b = builder.add(GateOp.INPUT);
+        int cin = builder.add(GateOp.INPUT);
+        int ab = builder.add(GateOp.XOR, a, b);
+        builder.add(GateOp.OUTPUT, builder.add(GateOp.XOR, ab, cin));
+        builder.add(GateOp.OUTPUT, builder.add(GateOp.OR, builder.add(GateOp.AND, a, b), builder.add(GateOp.AND, ab, cin)));
+        
+        int vectors = 5_000;
+        Random random = new Random(14);
+        StringBuilder csv = new StringBuilder("# a,b,cin\n");
+        StringBuilder expected = new StringBuilder();
+        byte[] packed = new byte[vectors];
+        for (int v = 0; v < vectors; v++) {
+            int bits = random.nextInt(8);
+            int total = (bits & 1) + (bits >> 1 & 1) + (bits >> 2 & 1);
+            csv.append(bits & 1).append(',').append(bits >> 1 & 1).append(", ").append(bits >> 2 & 1).append('\n');
+            expected.append(total & 1).append(',').append(total >> 1).append('\n');
+            packed[v] = (byte) bits;
+        }
+        
+        try (BatchRunner runner = new BatchRunner(CompiledCircuit.compile(builder.build()), 3)) {
+            StringWriter out = new StringWriter();
+            long count = runner.runCsv(new StringReader(csv.toString()), out);
+            assertEquals((long) vectors, count, "All vectors simulated");
+            assertEquals(expected.toString(), out.toString(), "CSV results match the full adder, in input order");
+            
+            ByteArrayOutputStream binary = new ByteArrayOutputStream();
+            runner.runBinary(new ByteArrayInputStream(packed), binary);
+            byte[] results = binary.toByteArray();
+            boolean matches = results.length == vectors;
+            for (int v = 0; v < vectors && matches; v++) {
+                int bits = packed[v];
+                int total = (bits & 1) + (bits >> 1 & 1) + (bits >> 2 & 1);
+                matches = results[v] == total;
+            }
+            assertTrue(matches, "Binary vectors produce one packed byte per result");
+            
+            boolean rejected = false;
+            try {
+                runner.runCsv(new StringReader("1,0,1\n1,0\n"), new StringWriter());
+            } catch (IOException e) {
+                rejected = e.getMessage().startsWith("Line 2");
+            }
+            assertTrue(rejected, "Short vector is rejected with its line number");
+        }
+        
+        // Without inputs every CSV line is blank, so none of them is a vector
+        Netlist.Builder constant = new Netlist.Builder();
+        constant.add(GateOp.OUTPUT, constant.add(GateOp.CONST_HIGH));
+        try (BatchRunner runner = new BatchRunner(CompiledCircuit.compile(constant.build()), 1)) {
+            assertEquals(0L, runner.runCsv(new StringReader("\n\n# none\n"), new StringWriter()),
+                    "Blank lines skipped for a circuit without inputs");
+        }
+    }
+    
+    static void testGeneratedEvaluator() {
+        System.out.println("\n11. TESTING GENERATED EVALUATOR:");
+        
+        // Random n-ary DAG, large enough to span several generated methods
+        Random random = new Random(15);
+        int[] ops = {GateOp.NOT, GateOp.AND, GateOp.OR, GateOp.NAND, GateOp.NOR, GateOp.XOR};
+        Netlist.Builder builder = new Netlist.Builder();
+        int inputs = 40;
+        for (int i = 0; i < inputs; i++) {
+            builder.add(GateOp.INPUT);
+        }
+        builder.add(GateOp.CONST_HIGH);
+        for (int g = 0; g < 3_000; g++) {
+            int op = ops[random.nextInt(ops.length)];
+            int gate = builder.add(op);
+            int fanIn = op == GateOp.NOT ? 1 : 2 + random.nextInt(3);
+            for (int i = 0; i < fanIn; i++) {
+                builder.connect(Math.max(0, gate - 1 - random.nextInt(200)), gate);
+            }
+        }
+        int size = builder.size();
+        for (int o = 0; o < 50; o++) {
+            builder.add(GateOp.OUTPUT, size - 1 - o * 37);
+        }
+        Netlist netlist = builder.build();
+        
+        int cachedBefore = GeneratedEvaluator.cachedClasses();
+        GeneratedEvaluator evaluator = GeneratedEvaluator.forNetlist(netlist);
+        assertTrue(evaluator.isGenerated(), "Circuit compiled to bytecode");
+        assertEquals(50, evaluator.outputCount(), "One output word per OUTPUT gate");
+        
+        long[] in = new long[inputs];
+        for (int i = 0; i < inputs; i++) {
+            in[i] = random.nextLong();
+        }
+        long[] out = new long[50];
+        evaluator.evaluate(in, out);
+        
+        CompiledCircuit circuit = CompiledCircuit.compile(netlist);
+        boolean matches = true;
+        for (int bit = 0; bit < 64 && matches; bit++) {
+            for (int i = 0; i < inputs; i++) {
+                circuit.setInput(i, (in[i] >>> bit & 1) != 0);
+            }
+            circuit.evaluate();
+            for (int o = 0; o < 50; o++) {
+                matches &= circuit.get(size + o) == ((out[o] >>> bit & 1) != 0);
+            }
+        }
+        assertTrue(matches, "Generated code matches the interpreter on all 64 vectors");
+        
+        GeneratedEvaluator again = GeneratedEvaluator.forNetlist(netlist);
+        long[] copyOut = new long[50];
+        evaluator.copy().evaluate(in, copyOut);
+        assertEquals(cachedBefore + 1, GeneratedEvaluator.cachedClasses(), "Same structure reuses the cached class");
+        assertTrue(again.isGenerated() && Arrays.equals(out, copyOut), "Copies compute the same outputs");
+        
+        // Wide gates: 40-input ANDs still fit the method budget, a 12000-input XOR does not
+        Netlist.Builder wide = new Netlist.Builder();
+        for (int i = 0; i < 12_000; i++) {
+            wide.add(GateOp.INPUT);
+        }
+        for (int g = 0; g < 400; g++) {
+            int gate = wide.add(GateOp.AND);
+            for (int i = 0; i < 40; i++) {
+                wide.connect(random.nextInt(12_000), gate);
+            }
+            wide.add(GateOp.OUTPUT, gate);
+        }
+        assertTrue(GeneratedEvaluator.forNetlist(wide.build()).isGenerated(), "Wide gates split across methods");
+        int xor = wide.add(GateOp.XOR);
+        for (int i = 0; i < 12_000; i++) {
+            wide.connect(i, xor);
+        }
+        wide.add(GateOp.OUTPUT, xor);
+        GeneratedEvaluator fallback = GeneratedEvaluator.forNetlist(wide.build());
+        long[] wideIn = new long[12_000];
+        wideIn[0] = -1L;
+        long[] wideOut = new long[401];
+        fallback.evaluate(wideIn, wideOut);
+        assertTrue(!fallback.isGenerated() && wideOut[400] == -1L, "Oversized gate falls back to the interpreter");
+    }
+    
+    static void testSimulationMetrics() throws Exception {
+        System.out.println("\n12. TESTING SIMULATION INSTRUMENTATION:");
+        
+        // Chain of 10 NOT gates after one input
+        Netlist.Builder builder = new Netlist.Builder();
+        int previous = builder.add(GateOp.INPUT);
+        for (int i = 0; i < 10; i++) {
+            previous = builder.add(GateOp.NOT, previous);
+        }
+        builder.add(GateOp.OUTPUT, previous);
+        IncrementalSimulator simulator = new IncrementalSimulator(CompiledCircuit.compile(builder.build()));
+        
+        simulator.setInput(0, true);
+        assertEquals(0, simulator.lastDepth(), "Depth is not tracked without metrics");
+        
+        SimulationMetrics metrics = new SimulationMetrics();
+        simulator.setMetrics(metrics);
+        for (int i = 0; i < 4; i++) {
+            simulator.setInput(0, i % 2 != 0);
+            metrics.recordRun(simulator.lastEvaluations(), simulator.changedCount(), simulator.lastDepth(), 1_000);
+        }
+        assertEquals(11, simulator.lastDepth(), "Propagation depth reaches the output");
+        assertEquals(4L, metrics.gateEvaluations(5), "Each update evaluates the chain once");
+        assertEquals(4L, metrics.gateToggles(11), "Output toggles on every update");
+        assertEquals(44L, metrics.getGateEvaluations(), "Run totals add up");
+        assertEquals(4L, metrics.getRuns(), "Runs counted");
+        
+        metrics.register("test");
+        ObjectName name = new ObjectName("gateo:type=SimulationMetrics,name=\"test\"");
+        Object runs = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Runs");
+        assertEquals(4L, runs, "Metrics readable over JMX");
+        String[] hottest = (String[]) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "HottestGates");
+        assertEquals(10, hottest.length, "Hottest gates capped at ten");
+        metrics.unregister();
+        assertTrue(!ManagementFactory.getPlatformMBeanServer().isRegistered(name), "Unregistered");
+    }
+    
+    static void testParallelEvaluator() {
+        System.out.println("\n13. TESTING PARALLEL EVALUATION:");
+        
+        Random random = new Random(19);
+        int[] ops = {GateOp.NOT, GateOp.AND, GateOp.OR, GateOp.NAND, GateOp.NOR, GateOp.XOR};
+        Netlist.Builder builder = new Netlist.Builder();
+        // 300 small disjoint blocks
+        for (int b = 0; b < 300; b++) {
+            int base = builder.add(GateOp.INPUT);
+            builder.add(GateOp.INPUT);
+            int gates = 5 + random.nextInt(60);
+            for (int g = 0; g < gates; g++) {
+                int op = ops[random.nextInt(ops.length)];
+                int gate = builder.add(op);
+                int fanIn = op == GateOp.NOT ? 1 : 2;
+                for (int i = 0; i < fanIn; i++) {
+                    builder.connect(base + random.nextInt(gate - base), gate);
+                }
+            }
+            builder.add(GateOp.OUTPUT, builder.size() - 1);
+        }
+        // One large block with levels wide enough to be split across threads
+        int base = builder.size();
+        for (int i = 0; i < 5_000; i++) {
+            builder.add(GateOp.INPUT);
+        }
+        for (int g = 0; g < 40_000; g++) {
+            int op = ops[random.nextInt(ops.length)];
+            int gate = builder.add(op);
+            int fanIn = op == GateOp.NOT ? 1 : 2 + random.nextInt(2);
+            for (int i = 0; i < fanIn; i++) {
+                builder.connect(base + random.nextInt(gate - base), gate);
+            }
+        }
+        Netlist netlist = builder.build();
+        
+        CompiledCircuit sequential = CompiledCircuit.compile(netlist);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ParallelEvaluator parallel = new ParallelEvaluator(CompiledCircuit.compile(netlist), pool);
+        // Unused inputs form partitions of their own
+        assertTrue(parallel.partitionCount() >= 301, "Disjoint blocks kept apart");
+        assertTrue(parallel.largestPartition() > 40_000, "Large block kept together");
+        
+        boolean matches = true;
+        for (int round = 0; round < 5; round++) {
+            for (int g = 0; g < netlist.size(); g++) {
+                if (netlist.op(g) == GateOp.INPUT) {
+                    boolean state = random.nextBoolean();
+                    sequential.setInput(g, state);
+                    parallel.setInput(g, state);
+                }
+            }
+            sequential.evaluate();
+            parallel.evaluate();
+            for (int g = 0; g < netlist.size(); g++) {
+                matches &= sequential.get(g) == parallel.get(g);
+            }
+        }
+        assertTrue(matches, "Every gate matches sequential evaluation");
+        
+        Netlist.Builder ring = new Netlist.Builder();
+        int first = ring.add(GateOp.NOT);
+        ring.connect(ring.add(GateOp.NOT, first), first);
+        boolean rejected = false;
+        try {
+            new ParallelEvaluator(CompiledCircuit.compileSequential(ring.build()), pool);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        pool.shutdown();
+        assertTrue(rejected, "Feedback circuit rejected");
+    }
+    
+    static void testLazyLayout() {
+        System.out.println("\n14. TESTING LAZY LAYOUT:");
+        
+        // 1000 independent input -> NOT -> OUTPUT rows: three columns, 1000 rows each
+        Netlist.Builder builder = new Netlist.Builder();
+        for (int i = 0; i < 1000; i++) {
+            int input = builder.add(GateOp.INPUT);
+            builder.add(GateOp.OUTPUT, builder.add(GateOp.NOT, input));
+        }
+        Netlist netlist = builder.build();
+        LazyLayout layout = new LazyLayout(netlist);
+        assertEquals(0, layout.materializedCount(), "Nothing materialized up front");
+        assertEquals(new Rectangle(0, 0, 300, 60_000), layout.extent(), "Extent covers three columns");
+        
+        // A viewport over the first two columns and ten rows
+        Rectangle viewport = new Rectangle(0, 0, 200, 600);
+        assertEquals(20, layout.materialize(viewport).size(), "Only visible gates created");
+        assertEquals(10, layout.model().getWires().size(), "Wires between visible gates added");
+        assertEquals(0, layout.materialize(viewport).size(), "Viewed region not materialized twice");
+        assertTrue(layout.component(1) != null && layout.component(2) == null, "Outputs still pending");
+        
+        layout.materialize(new Rectangle(200, 0, 100, 600));
+        assertEquals(20, layout.model().getWires().size(), "Wires to earlier regions added");
+        GateComponent output = layout.component(2);
+        assertEquals(new Rectangle(200, 0, 60, 40).getLocation(), output.getBounds().getLocation(), "Output placed in its column");
+        assertTrue(output.calculateOutput(), "Materialized gates simulate: NOT LOW is HIGH");
+        
+        layout.materialize(layout.extent());
+        assertEquals(3000, layout.materializedCount(), "Everything materialized");
+        assertEquals(netlist.edgeCount(), layout.model().getWires().size(), "One wire per edge");
+    }
+    
+    static void testCompactStoreConversion() {
+        System.out.println("\n15. TESTING COMPACT STORE CONVERSION:");
+        
+        CompactCircuitStore store = new CompactCircuitStore();
+        int high = store.addGate(ComponentType.HIGH_INPUT, 0, 0, 60, 40);
+        int low = store.addGate(ComponentType.LOW_INPUT, 0, 100, 60, 40);
+        int or = store.addGate(ComponentType.OR, 100, 50, 60, 40);
+        store.connect(high, or);
+        store.connect(low, or);
+        store.connect(or, store.addGate(ComponentType.BULB, 200, 50, 60, 40));
+        
+        Netlist netlist = Netlist.fromStore(store);
+        assertTrue(netlist.initialState(high) && !netlist.hasComponents(), "Netlist built straight from the columns");
+        CompiledCircuit circuit = CompiledCircuit.compile(netlist);
+        circuit.evaluate();
+        assertTrue(circuit.get(3), "Store simulates HIGH OR LOW");
+        
+        CompactCircuitStore roundTrip = netlist.toStore(new int[4], new int[4], 60, 40);
+        assertEquals(3, roundTrip.edgeCount(), "Netlist copied back into a store");
+        assertEquals(ComponentType.HIGH_INPUT, roundTrip.type(0), "Input state survives the round trip");
+    }
+}
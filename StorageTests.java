@@ -0,0 +1,313 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Random;
+
+import model.ComponentType;
+import model.ConnectionWire;
+import model.GateComponent;
+import model.LogicGateModel;
+import simulation.CompiledCircuit;
+import simulation.GateOp;
+import simulation.Netlist;
+import storage.BlifFile;
+import storage.CircuitFile;
+import storage.MappedCircuit;
+
+public class StorageTests {
+    
+    public static void assertEquals(Object expected, Object actual, String testName) {
+        if (!expected.equals(actual)) {
+            throw new AssertionError(testName + " FAILED: Expected " + expected + " but got " + actual);
+        }
+        System.out.println("✓ " + testName);
+    }
+    
+    public static void assertTrue(boolean condition, String testName) {
+        if (!condition) {
+            throw new AssertionError(testName + " FAILED");
+        }
+        System.out.println("✓ " + testName);
+    }
+    
+    public static void main(String[] args) {
+        System.out.println("=== CIRCUIT STORAGE TESTS ===\n");
+        
+        try {
+            testBinaryRoundTrip();
+            testNetlistWithoutComponents();
+            testSerializedImport();
+            testCorruptFile();
+            testBlif();
+            
+            System.out.println("\n✅ ALL STORAGE TESTS PASSED!");
+            
+        } catch (AssertionError e) {
+            System.out.println("\n❌ TEST FAILED: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("\n❌ UNEXPECTED ERROR: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    static LogicGateModel halfAdder() {
+        LogicGateModel model = new LogicGateModel();
+        GateComponent a = new GateComponent(ComponentType.HIGH_INPUT, 0, 0);
+        GateComponent b = new GateComponent(ComponentType.LOW_INPUT, 0, 50);
+        GateComponent xor = new GateComponent(ComponentType.XOR, 100, 0);
+        GateComponent and = new GateComponent(ComponentType.AND, 100, 50);
+        GateComponent sum = new GateComponent(ComponentType.OUTPUT, 200, 0);
+        GateComponent carry = new GateComponent(ComponentType.BULB, 200, 50);
+        GateComponent[] all = {a, b, xor, and, sum, carry};
+        for (GateComponent g : all) {
+            model.addComponent(g);
+        }
+        xor.addInput(a);
+        xor.addInput(b);
+        and.addInput(a);
+        and.addInput(b);
+        sum.addInput(xor);
+        carry.addInput(and);
+        model.addWire(new ConnectionWire(a, xor));
+        model.addWire(new ConnectionWire(b, xor));
+        model.addWire(new ConnectionWire(a, and));
+        model.addWire(new ConnectionWire(b, and));
+        model.addWire(new ConnectionWire(xor, sum));
+        model.addWire(new ConnectionWire(and, carry));
+        return model;
+    }
+    
+    static void testBinaryRoundTrip() throws Exception {
+        System.out.println("1. TESTING BINARY ROUND TRIP:");
+        
+        LogicGateModel model = halfAdder();
+        Path file = Files.createTempFile("circuit", ".gate");
+        try {
+            CircuitFile.save(model, file);
+            assertTrue(!CircuitFile.isSerialized(file), "Binary file is not a serialization stream");
+            
+            LogicGateModel loaded = CircuitFile.load(file);
+            assertEquals(6, loaded.getComponents().size(), "All components restored");
+            assertEquals(6, loaded.getWires().size(), "All wires restored");
+            for (int i = 0; i < 6; i++) {
+                GateComponent before = model.getComponents().get(i);
+                GateComponent after = loaded.getComponents().get(i);
+                assertTrue(before.getType() == after.getType()
+                        && before.getBounds().x == after.getBounds().x
+                        && before.getBounds().y == after.getBounds().y
+                        && before.getState() == after.getState()
+                        && before.getInputs().size() == after.getInputs().size(),
+                        "Component " + i + " (" + before.getType() + ") restored");
+            }
+            GateComponent sum = loaded.getComponents().get(4);
+            GateComponent carry = loaded.getComponents().get(5);
+            assertTrue(sum.calculateOutput() && !carry.calculateOutput(), "Restored circuit computes 1+0");
+            
+            // An input drawn without a wire and a wire feeding no input both survive as they were
+            LogicGateModel odd = new LogicGateModel();
+            GateComponent high = new GateComponent(ComponentType.HIGH_INPUT, 0, 0);
+            GateComponent not = new GateComponent(ComponentType.NOT, 100, 0);
+            GateComponent out = new GateComponent(ComponentType.OUTPUT, 200, 0);
+            odd.addComponent(high);
+            odd.addComponent(not);
+            odd.addComponent(out);
+            not.addInput(high);
+            odd.addWire(new ConnectionWire(not, out));
+            CircuitFile.save(odd, file);
+            LogicGateModel oddLoaded = CircuitFile.load(file);
+            assertTrue(oddLoaded.getComponents().get(1).getInputs().size() == 1
+                    && oddLoaded.getComponents().get(2).getInputs().isEmpty()
+                    && oddLoaded.getWires().size() == 1
+                    && oddLoaded.getWires().get(0).getTarget() == oddLoaded.getComponents().get(2),
+                    "Unwired inputs and bare wires kept apart");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    static void testNetlistWithoutComponents() throws Exception {
+        System.out.println("\n2. TESTING NETLIST DECODING WITHOUT COMPONENTS:");
+        
+        Path file = Files.createTempFile("circuit", ".gate");
+        try {
+            CircuitFile.save(halfAdder(), file);
+            MappedCircuit mapped = CircuitFile.map(file);
+            assertEquals(6, mapped.getGateCount(), "Header gate count");
+            assertEquals(6, mapped.getEdgeCount(), "Header input count");
+            
+            Netlist netlist = mapped.toNetlist();
+            assertTrue(!netlist.hasComponents(), "No component objects created");
+            CompiledCircuit circuit = CompiledCircuit.compile(netlist);
+            circuit.evaluate();
+            assertTrue(circuit.get(4) && !circuit.get(5), "Simulation runs straight from the mapped file");
+            
+            int[] x = new int[6];
+            int[] y = new int[6];
+            mapped.readPositions(x, y);
+            assertTrue(x[4] == 200 && y[5] == 50, "Positions decoded on demand");
+            
+            assertEquals(6, CircuitFile.read(file).toNetlist().edgeCount(), "Heap-read file decodes the same netlist");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    static void testSerializedImport() throws Exception {
+        System.out.println("\n3. TESTING SERIALIZED MODEL IMPORT:");
+        
+        Path legacy = Files.createTempFile("circuit", ".ser");
+        Path binary = Files.createTempFile("circuit", ".gate");
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(legacy))) {
+                out.writeObject(halfAdder());
+            }
+            assertTrue(CircuitFile.isSerialized(legacy), "Serialized file detected");
+            assertEquals(6, CircuitFile.load(legacy).getComponents().size(), "Serialized file still loads");
+            
+            CircuitFile.convertSerialized(legacy, binary);
+            assertEquals(6, CircuitFile.map(binary).getGateCount(), "Serialized file converted to binary");
+        } finally {
+            Files.deleteIfExists(legacy);
+            Files.deleteIfExists(binary);
+        }
+    }
+    
+    static void testCorruptFile() throws Exception {
+        System.out.println("\n4. TESTING CORRUPT FILE REJECTION:");
+        
+        Path file = Files.createTempFile("circuit", ".gate");
+        try {
+            Files.write(file, new byte[] {'N', 'O', 'P', 'E'});
+            boolean rejected = false;
+            try {
+                CircuitFile.map(file);
+            } catch (IOException e) {
+                rejected = true;
+            }
+            assertTrue(rejected, "File without header is rejected");
+            
+            // Valid file whose header claims a billion gates
+            CircuitFile.save(halfAdder(), file);
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[8] = 0x40;
+            Files.write(file, bytes);
+            String message = null;
+            try {
+                CircuitFile.map(file).toNetlist();
+            } catch (IOException e) {
+                message = e.getMessage();
+            }
+            assertTrue(message != null && message.contains("exceed"), "Counts larger than their sections rejected");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    static Netlist blif(String text) throws IOException {
+        return BlifFile.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+    
+    /** Output values of a netlist for the inputs set from the bits of {@code vector}. */
+    static long outputs(Netlist netlist, long vector) {
+        CompiledCircuit circuit = CompiledCircuit.compile(netlist);
+        int input = 0;
+        for (int g = 0; g < netlist.size(); g++) {
+            if (netlist.op(g) == GateOp.INPUT) {
+                circuit.setInput(g, (vector >>> input++ & 1) != 0);
+            }
+        }
+        circuit.evaluate();
+        long result = 0;
+        int output = 0;
+        for (int g = 0; g < netlist.size(); g++) {
+            if (netlist.op(g) == GateOp.OUTPUT) {
+                result |= (circuit.get(g) ? 1L : 0L) << output++;
+            }
+        }
+        return result;
+    }
+    
+    static void testBlif() throws Exception {
+        System.out.println("\n5. TESTING BLIF IMPORT/EXPORT:");
+        
+        String text = ".model mixed  # comment\n"
+                + ".inputs s a \\\n  b\n"
+                + ".outputs mux xnor nand3 any one buf\n"
+                + ".names buf_src buf\n1 1\n"          // buffer, used before its driver
+                + ".names a b buf_src\n11 1\n"         // AND
+                + ".names s a b mux\n01- 1\n1-1 1\n"  // no single gate: sum of products
+                + ".names a b xnor\n00 1\n11 1\n"
+                + ".names s a b nand3\n111 0\n"
+                + ".names s a b any\n1-- 1\n-1- 1\n--1 1\n"
+                + ".names one\n1\n"
+                + ".end\n";
+        Netlist netlist = blif(text);
+        boolean matches = true;
+        boolean binary = true;
+        for (int v = 0; v < 8; v++) {
+            boolean s = (v & 1) != 0;
+            boolean a = (v & 2) != 0;
+            boolean b = (v & 4) != 0;
+            boolean[] expected = {s ? b : a, a == b, !(s && a && b), s || a || b, true, a && b};
+            long actual = outputs(netlist, v);
+            for (int o = 0; o < expected.length; o++) {
+                matches &= ((actual >>> o & 1) != 0) == expected[o];
+            }
+        }
+        for (int g = 0; g < netlist.size(); g++) {
+            binary &= netlist.inputCount(g) <= 2;
+        }
+        assertTrue(matches, "Covers imported with the right functions");
+        assertTrue(binary, "Wide covers split into two-input gates");
+        
+        // Round trip of a random n-ary netlist through the writer
+        Random random = new Random(20);
+        int[] ops = {GateOp.NOT, GateOp.AND, GateOp.OR, GateOp.NAND, GateOp.NOR, GateOp.XOR};
+        Netlist.Builder builder = new Netlist.Builder();
+        for (int i = 0; i < 24; i++) {
+            builder.add(GateOp.INPUT);
+        }
+        builder.add(GateOp.CONST_HIGH);
+        for (int g = 0; g < 2_000; g++) {
+            int op = ops[random.nextInt(ops.length)];
+            int gate = builder.add(op);
+            int fanIn = op == GateOp.NOT ? 1 : 1 + random.nextInt(op == GateOp.XOR ? 12 : 5);
+            for (int i = 0; i < fanIn; i++) {
+                builder.connect(Math.max(0, gate - 1 - random.nextInt(100)), gate);
+            }
+        }
+        int size = builder.size();
+        for (int o = 0; o < 40; o++) {
+            builder.add(GateOp.OUTPUT, size - 1 - o * 13);
+        }
+        Netlist original = builder.build();
+        StringWriter written = new StringWriter();
+        BlifFile.write(original, written, "random");
+        Netlist imported = blif(written.toString());
+        boolean same = true;
+        for (int round = 0; round < 20; round++) {
+            long vector = random.nextLong();
+            same &= outputs(original, vector) == outputs(imported, vector);
+        }
+        assertTrue(same, "Written netlist reads back with the same outputs");
+        
+        boolean latch = false;
+        try {
+            blif(".model m\n.inputs d\n.outputs q\n.latch d q 0\n.end\n");
+        } catch (IOException e) {
+            latch = e.getMessage().startsWith("Line 4");
+        }
+        assertTrue(latch, "Latches rejected with the line number");
+        boolean undriven = false;
+        try {
+            blif(".model m\n.inputs a\n.outputs y\n.names a x y\n11 1\n.end\n");
+        } catch (IOException e) {
+            undriven = e.getMessage().contains("x");
+        }
+        assertTrue(undriven, "Undriven signals rejected");
+    }
+}
@@ -0,0 +1,159 @@
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import model.ComponentType;
+import model.ConnectionWire;
+import model.GateComponent;
+import model.LogicGateModel;
+import model.SpatialIndex;
+import model.ModelIndex;
+import simulation.IncrementalSimulator;
+import simulation.SimulationMetrics;
+import view.DirtyRegionTracker;
+import view.GlyphCache;
+import view.HeatMapOverlay;
+
+public class ViewTests {
+    
+    public static void assertEquals(Object expected, Object actual, String testName) {
+        if (!expected.equals(actual)) {
+            throw new AssertionError(testName + " FAILED: Expected " + expected + " but got " + actual);
+        }
+        System.out.println("✓ " + testName);
+    }
+    
+    public static void assertTrue(boolean condition, String testName) {
+        if (!condition) {
+            throw new AssertionError(testName + " FAILED");
+        }
+        System.out.println("✓ " + testName);
+    }
+    
+    public static void main(String[] args) {
+        System.out.println("=== VIEW SUPPORT TESTS ===\n");
+        
+        try {
+            testDirtyRegions();
+            testGlyphCache();
+            testHeatMap();
+            
+            System.out.println("\n✅ ALL VIEW TESTS PASSED!");
+            
+        } catch (AssertionError e) {
+            System.out.println("\n❌ TEST FAILED: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("\n❌ UNEXPECTED ERROR: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    static void testDirtyRegions() {
+        System.out.println("1. TESTING DIRTY REGION TRACKING:");
+        
+        DirtyRegionTracker tracker = new DirtyRegionTracker();
+        tracker.mark(new Rectangle(0, 0, 50, 50));
+        tracker.mark(new Rectangle(40, 40, 50, 50));
+        tracker.mark(new Rectangle(2000, 2000, 10, 10));
+        List<Rectangle> regions = tracker.drain();
+        assertEquals(2, regions.size(), "Overlapping regions merged, distant region kept apart");
+        assertTrue(tracker.isEmpty(), "Drain clears pending regions");
+        
+        for (int i = 0; i < 100; i++) {
+            tracker.mark(new Rectangle(i * 1000, 0, 10, 10));
+        }
+        assertEquals(1, tracker.drain().size(), "Too many regions collapse into one");
+        
+        // Only the toggled cone of the circuit becomes dirty
+        LogicGateModel model = new LogicGateModel();
+        ModelIndex index = new ModelIndex(model);
+        GateComponent a = new GateComponent(ComponentType.LOW_INPUT, 0, 0);
+        GateComponent not = new GateComponent(ComponentType.NOT, 100, 0);
+        GateComponent out = new GateComponent(ComponentType.OUTPUT, 200, 0);
+        GateComponent other = new GateComponent(ComponentType.HIGH_INPUT, 3000, 3000);
+        index.addComponent(a);
+        index.addComponent(not);
+        index.addComponent(out);
+        index.addComponent(other);
+        not.addInput(a);
+        out.addInput(not);
+        index.addWire(new ConnectionWire(a, not));
+        index.addWire(new ConnectionWire(not, out));
+        
+        IncrementalSimulator simulator = IncrementalSimulator.forModel(model);
+        simulator.setState(a, true);
+        tracker.markChanged(simulator, index);
+        regions = tracker.drain();
+        boolean touchesOther = false;
+        boolean coversOutput = false;
+        for (Rectangle r : regions) {
+            touchesOther |= r.intersects(other.getBounds());
+            coversOutput |= r.contains(out.getBounds());
+        }
+        assertTrue(coversOutput, "Changed output is repainted");
+        assertTrue(!touchesOther, "Unchanged component is not repainted");
+    }
+    
+    static void testGlyphCache() {
+        System.out.println("\n2. TESTING GLYPH CACHE:");
+        
+        int[] renders = {0};
+        GlyphCache cache = new GlyphCache((g, type, state, width, height) -> {
+            renders[0]++;
+            g.drawRect(0, 0, width - 1, height - 1);
+        });
+        BufferedImage first = cache.sprite(ComponentType.AND, false, 60, 40, 1.0);
+        BufferedImage again = cache.sprite(ComponentType.AND, false, 60, 40, 1.0);
+        assertTrue(first == again, "Sprite reused for same type, state and zoom");
+        assertEquals(60, first.getWidth(), "Sprite sized for zoom 1");
+        
+        cache.sprite(ComponentType.AND, false, 60, 40, 1.01);
+        assertEquals(1, renders[0], "Nearby zoom shares the quantized sprite");
+        
+        BufferedImage zoomed = cache.sprite(ComponentType.AND, false, 60, 40, 2.0);
+        assertEquals(120, zoomed.getWidth(), "Sprite rendered at zoom 2");
+        cache.sprite(ComponentType.AND, true, 60, 40, 1.0);
+        assertEquals(3, cache.size(), "Separate sprites per zoom and state");
+        
+        // Between steps the sprite is fitted to the continuous-zoom bounds
+        GlyphCache filled = new GlyphCache((g, type, state, width, height) -> g.fillRect(0, 0, width, height));
+        BufferedImage screen = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = screen.createGraphics();
+        filled.draw(g, new GateComponent(ComponentType.AND, 0, 0), 1.05);
+        g.dispose();
+        assertTrue(screen.getRGB(62, 41) != 0 && screen.getRGB(63, 0) == 0 && screen.getRGB(0, 42) == 0,
+                "Glyph covers exactly 63x42 at zoom 1.05");
+    }
+    
+    static void testHeatMap() {
+        System.out.println("\n3. TESTING HEAT MAP OVERLAY:");
+        
+        LogicGateModel model = new LogicGateModel();
+        GateComponent a = new GateComponent(ComponentType.LOW_INPUT, 0, 0);
+        GateComponent not = new GateComponent(ComponentType.NOT, 100, 0);
+        GateComponent quiet = new GateComponent(ComponentType.HIGH_INPUT, 200, 0);
+        model.addComponent(a);
+        model.addComponent(not);
+        model.addComponent(quiet);
+        not.addInput(a);
+        model.addWire(new ConnectionWire(a, not));
+        
+        SimulationMetrics metrics = new SimulationMetrics();
+        IncrementalSimulator simulator = IncrementalSimulator.forModel(model);
+        simulator.setMetrics(metrics);
+        for (int i = 0; i < 6; i++) {
+            simulator.setState(a, i % 2 == 0);
+        }
+        assertEquals(6L, metrics.gateToggles(1), "NOT gate toggled on every update");
+        
+        BufferedImage image = new BufferedImage(300, 50, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setClip(0, 0, 300, 50);
+        new HeatMapOverlay(metrics, SpatialIndex.of(model)).paint(g, 1.0);
+        g.dispose();
+        int hot = image.getRGB(130, 20);
+        assertTrue((hot >>> 24) > 0 && (hot >> 16 & 0xFF) == 255, "Hottest gate painted red");
+        assertEquals(0, image.getRGB(230, 20) >>> 24, "Gate that never toggled stays clear");
+    }
+}
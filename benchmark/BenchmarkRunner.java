@@ -0,0 +1,140 @@
+package benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal measurement harness: warm-up, timed iterations, latency percentiles
+ * and allocated bytes per operation (via the HotSpot thread allocation
+ * counter). Results can be appended to a CSV file so runs can be compared.
+ */
+public final class BenchmarkRunner {
+    
+    /** One benchmarked call; the return value is consumed so the JIT cannot drop the work. */
+    public interface Operation {
+        long run() throws Exception;
+    }
+    
+    /** Prepares fresh state before each timed call, outside the measurement. */
+    public interface Setup {
+        void run() throws Exception;
+    }
+    
+    public static final class Result {
+        public final String name;
+        public final long operations;
+        public final double opsPerSecond;
+        public final double p50Micros;
+        public final double p99Micros;
+        public final double bytesPerOp;
+        
+        Result(String name, long operations, double opsPerSecond, double p50Micros, double p99Micros,
+                double bytesPerOp) {
+            this.name = name;
+            this.operations = operations;
+            this.opsPerSecond = opsPerSecond;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+    
+    private static volatile long sink;
+    
+    private final int warmupIterations;
+    private final int measureIterations;
+    private final List<Result> results = new ArrayList<>();
+    private final com.sun.management.ThreadMXBean threads;
+    
+    public BenchmarkRunner(int warmupIterations, int measureIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threads = bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+    
+    public Result measure(String name, Operation operation) throws Exception {
+        return measure(name, 1, null, operation);
+    }
+    
+    /**
+     * @param opsPerCall how many logical operations one call performs, so
+     *        batched micro-operations report per-operation numbers
+     */
+    public Result measure(String name, int opsPerCall, Setup setup, Operation operation) throws Exception {
+        long consumed = 0;
+        for (int i = 0; i < warmupIterations; i++) {
+            if (setup != null) {
+                setup.run();
+            }
+            consumed += operation.run();
+        }
+        
+        long[] samples = new long[measureIterations];
+        long allocated = 0;
+        long total = 0;
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < measureIterations; i++) {
+            if (setup != null) {
+                setup.run();
+            }
+            long bytesBefore = threads != null ? threads.getThreadAllocatedBytes(threadId) : 0;
+            long start = System.nanoTime();
+            consumed += operation.run();
+            long elapsed = System.nanoTime() - start;
+            if (threads != null) {
+                allocated += threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+            }
+            samples[i] = elapsed;
+            total += elapsed;
+        }
+        sink += consumed;
+        
+        Arrays.sort(samples);
+        long operations = (long) measureIterations * opsPerCall;
+        Result result = new Result(name, operations,
+                operations / (total / 1e9),
+                samples[samples.length / 2] / 1e3 / opsPerCall,
+                samples[Math.min(samples.length - 1, (int) (samples.length * 0.99))] / 1e3 / opsPerCall,
+                threads != null ? (double) allocated / operations : Double.NaN);
+        results.add(result);
+        print(result);
+        return result;
+    }
+    
+    public static void printHeader() {
+        System.out.printf("%-48s %14s %12s %12s %14s%n", "Benchmark", "ops/s", "p50 us/op", "p99 us/op", "alloc B/op");
+    }
+    
+    private static void print(Result r) {
+        System.out.printf("%-48s %14.1f %12.3f %12.3f %14.1f%n",
+                r.name, r.opsPerSecond, r.p50Micros, r.p99Micros, r.bytesPerOp);
+    }
+    
+    /** Appends all results to a CSV file, writing the header if the file is new. */
+    public void writeCsv(String path, String label) throws IOException {
+        File file = new File(path);
+        boolean header = !file.exists() || file.length() == 0;
+        try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+            if (header) {
+                out.println("run,benchmark,ops_per_s,p50_us,p99_us,alloc_bytes_per_op");
+            }
+            for (Result r : results) {
+                out.printf("%s,%s,%.1f,%.3f,%.3f,%.1f%n",
+                        label, r.name, r.opsPerSecond, r.p50Micros, r.p99Micros, r.bytesPerOp);
+            }
+        }
+    }
+    
+    public List<Result> results() {
+        return results;
+    }
+}
@@ -0,0 +1,121 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import simulation.GateOp;
+import simulation.Netlist;
+
+/**
+ * Synthetic circuits for benchmarks. Everything is built as a {@link Netlist}
+ * so million-gate circuits can be generated quickly; use
+ * {@link Netlist#toModel()} when component objects are needed.
+ */
+public final class CircuitGenerator {
+    
+    private CircuitGenerator() {
+    }
+    
+    /** Ripple-carry adder: inputs a0..a(n-1), b0..b(n-1), cin; outputs s0..s(n-1), cout. */
+    public static Netlist rippleCarryAdder(int bits) {
+        Netlist.Builder builder = new Netlist.Builder();
+        int[] a = inputs(builder, bits);
+        int[] b = inputs(builder, bits);
+        int carry = builder.add(GateOp.INPUT);
+        for (int i = 0; i < bits; i++) {
+            int[] sc = fullAdder(builder, a[i], b[i], carry);
+            builder.add(GateOp.OUTPUT, sc[0]);
+            carry = sc[1];
+        }
+        builder.add(GateOp.OUTPUT, carry);
+        return builder.build();
+    }
+    
+    /** Unsigned array multiplier: inputs a0..a(n-1), b0..b(n-1); outputs p0..p(2n-1). */
+    public static Netlist arrayMultiplier(int bits) {
+        Netlist.Builder builder = new Netlist.Builder();
+        int[] a = inputs(builder, bits);
+        int[] b = inputs(builder, bits);
+        
+        // Accumulated product bits; -1 means the bit is still constant LOW
+        int[] acc = new int[2 * bits];
+        Arrays.fill(acc, -1);
+        for (int j = 0; j < bits; j++) {
+            int carry = -1;
+            for (int i = 0; i < bits; i++) {
+                int pp = builder.add(GateOp.AND, a[i], b[j]);
+                int[] sc = add(builder, pp, acc[i + j], carry);
+                acc[i + j] = sc[0];
+                carry = sc[1];
+            }
+            acc[j + bits] = carry;
+        }
+        for (int bit : acc) {
+            if (bit >= 0) {
+                builder.add(GateOp.OUTPUT, bit);
+            }
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Random two-input DAG. Each gate draws its inputs from the previous
+     * {@code window} nets, which keeps locality and depth realistic; the last
+     * {@code outputs} gates drive OUTPUT probes.
+     */
+    public static Netlist randomDag(int gates, int inputs, int outputs, int window, long seed) {
+        Random random = new Random(seed);
+        int[] ops = {GateOp.NOT, GateOp.AND, GateOp.OR, GateOp.NAND, GateOp.NOR, GateOp.XOR};
+        Netlist.Builder builder = new Netlist.Builder();
+        for (int i = 0; i < inputs; i++) {
+            builder.setInitial(builder.add(GateOp.INPUT), random.nextBoolean());
+        }
+        for (int g = 0; g < gates; g++) {
+            int n = builder.size();
+            int lowest = Math.max(0, n - window);
+            int op = ops[random.nextInt(ops.length)];
+            int first = lowest + random.nextInt(n - lowest);
+            if (op == GateOp.NOT) {
+                builder.add(op, first);
+            } else {
+                builder.add(op, first, lowest + random.nextInt(n - lowest));
+            }
+        }
+        int last = builder.size();
+        for (int o = Math.max(inputs, last - outputs); o < last; o++) {
+            builder.add(GateOp.OUTPUT, o);
+        }
+        return builder.build();
+    }
+    
+    private static int[] inputs(Netlist.Builder builder, int count) {
+        int[] nets = new int[count];
+        for (int i = 0; i < count; i++) {
+            nets[i] = builder.add(GateOp.INPUT);
+        }
+        return nets;
+    }
+    
+    /** Adds up to three bits, where -1 stands for a constant LOW. */
+    private static int[] add(Netlist.Builder builder, int a, int b, int c) {
+        if (b < 0) {
+            b = c;
+            c = -1;
+        }
+        if (b < 0) {
+            return new int[] {a, -1};
+        }
+        return c < 0 ? halfAdder(builder, a, b) : fullAdder(builder, a, b, c);
+    }
+    
+    private static int[] halfAdder(Netlist.Builder builder, int a, int b) {
+        return new int[] {builder.add(GateOp.XOR, a, b), builder.add(GateOp.AND, a, b)};
+    }
+    
+    private static int[] fullAdder(Netlist.Builder builder, int a, int b, int c) {
+        int x = builder.add(GateOp.XOR, a, b);
+        int sum = builder.add(GateOp.XOR, x, c);
+        int carry = builder.add(GateOp.OR, builder.add(GateOp.AND, a, b), builder.add(GateOp.AND, x, c));
+        return new int[] {sum, carry};
+    }
+}
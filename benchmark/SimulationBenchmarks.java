@@ -0,0 +1,208 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.ComponentType;
+import model.ConnectionWire;
+import model.GateComponent;
+import model.LogicGateModel;
+import simulation.CompiledCircuit;
+import simulation.GateOp;
+import simulation.GeneratedEvaluator;
+import simulation.IncrementalSimulator;
+import simulation.Netlist;
+import simulation.ParallelEvaluator;
+import storage.CircuitFile;
+
+/**
+ * Benchmarks for the model, the simulators and model serialization
+ * (Java serialization and the binary circuit format).
+ *
+ * Usage: {@code java benchmark.SimulationBenchmarks [--quick] [--csv file] [--label name]}.
+ * {@code --quick} skips the million-gate circuits; {@code --csv} appends the
+ * results so numbers from different commits can be compared.
+ */
+public class SimulationBenchmarks {
+    
+    public static void main(String[] args) throws Exception {
+        boolean quick = false;
+        String csv = null;
+        String label = String.valueOf(System.currentTimeMillis());
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--quick")) {
+                quick = true;
+            } else if (args[i].equals("--csv")) {
+                csv = args[++i];
+            } else if (args[i].equals("--label")) {
+                label = args[++i];
+            }
+        }
+        
+        BenchmarkRunner runner = new BenchmarkRunner(quick ? 3 : 10, quick ? 10 : 50);
+        BenchmarkRunner.printHeader();
+        
+        simulationBenchmarks(runner, "adder-64", CircuitGenerator.rippleCarryAdder(64), true);
+        simulationBenchmarks(runner, "adder-1024", CircuitGenerator.rippleCarryAdder(1024), true);
+        simulationBenchmarks(runner, "multiplier-16", CircuitGenerator.arrayMultiplier(16), false);
+        simulationBenchmarks(runner, "multiplier-64", CircuitGenerator.arrayMultiplier(64), false);
+        simulationBenchmarks(runner, "dag-1k", CircuitGenerator.randomDag(1_000, 32, 32, 256, 1), false);
+        simulationBenchmarks(runner, "dag-100k", CircuitGenerator.randomDag(100_000, 256, 256, 1024, 2), false);
+        if (!quick) {
+            simulationBenchmarks(runner, "dag-1m", CircuitGenerator.randomDag(1_000_000, 1024, 1024, 4096, 3), false);
+        }
+        
+        modelBenchmarks(runner, 1_000);
+        modelBenchmarks(runner, 10_000);
+        
+        serializationBenchmarks(runner, "adder-256", CircuitGenerator.rippleCarryAdder(256).toModel());
+        serializationBenchmarks(runner, "dag-10k", CircuitGenerator.randomDag(10_000, 64, 64, 16, 4).toModel());
+        
+        if (csv != null) {
+            runner.writeCsv(csv, label);
+        }
+    }
+    
+    static void simulationBenchmarks(BenchmarkRunner runner, String name, Netlist netlist,
+            boolean recursive) throws Exception {
+        runner.measure(name + " compile", () -> CompiledCircuit.compile(netlist).depth());
+        
+        CompiledCircuit circuit = CompiledCircuit.compile(netlist);
+        runner.measure(name + " compiled evaluate", () -> {
+            circuit.evaluate();
+            return circuit.get(netlist.size() - 1) ? 1 : 0;
+        });
+        
+        ParallelEvaluator parallel = new ParallelEvaluator(CompiledCircuit.compile(netlist));
+        runner.measure(name + " parallel evaluate", () -> {
+            parallel.evaluate();
+            return parallel.get(netlist.size() - 1) ? 1 : 0;
+        });
+        
+        runner.measure(name + " generated evaluator setup (cached)", () -> GeneratedEvaluator.forNetlist(netlist).outputCount());
+        
+        GeneratedEvaluator generated = GeneratedEvaluator.forNetlist(netlist);
+        long[] in = new long[generated.inputCount()];
+        long[] out = new long[generated.outputCount()];
+        Arrays.fill(in, 0x5555555555555555L);
+        runner.measure(name + (generated.isGenerated() ? " generated" : " interpreted") + " evaluate (64 vectors)", () -> {
+            generated.evaluate(in, out);
+            return out.length == 0 ? 0 : out[0];
+        });
+        
+        IncrementalSimulator incremental = new IncrementalSimulator(CompiledCircuit.compile(netlist));
+        boolean[] state = {false};
+        runner.measure(name + " incremental toggle", () -> {
+            state[0] = !state[0];
+            incremental.setInput(0, state[0]);
+            return incremental.lastEvaluations();
+        });
+        
+        // calculateOutput() re-walks shared fan-in, so only circuits without
+        // reconvergent paths finish in reasonable time
+        if (recursive) {
+            LogicGateModel model = netlist.toModel();
+            List<GateComponent> outputs = new ArrayList<>();
+            for (GateComponent component : model.getComponents()) {
+                if (GateOp.of(component.getType()) == GateOp.OUTPUT) {
+                    outputs.add(component);
+                }
+            }
+            runner.measure(name + " calculateOutput (all outputs)", () -> {
+                long high = 0;
+                for (GateComponent output : outputs) {
+                    high += output.calculateOutput() ? 1 : 0;
+                }
+                return high;
+            });
+        }
+    }
+    
+    static void modelBenchmarks(BenchmarkRunner runner, int size) throws Exception {
+        GateComponent[][] components = new GateComponent[1][];
+        ConnectionWire[][] wires = new ConnectionWire[1][];
+        LogicGateModel[] model = new LogicGateModel[1];
+        
+        BenchmarkRunner.Setup fresh = () -> {
+            components[0] = new GateComponent[size];
+            wires[0] = new ConnectionWire[size - 1];
+            for (int i = 0; i < size; i++) {
+                components[0][i] = new GateComponent(i == 0 ? ComponentType.HIGH_INPUT : ComponentType.NOT,
+                        (i % 100) * 100, (i / 100) * 60);
+            }
+            for (int i = 1; i < size; i++) {
+                wires[0][i - 1] = new ConnectionWire(components[0][i - 1], components[0][i]);
+            }
+            model[0] = new LogicGateModel();
+        };
+        BenchmarkRunner.Setup populated = () -> {
+            fresh.run();
+            for (GateComponent component : components[0]) {
+                model[0].addComponent(component);
+            }
+            for (ConnectionWire wire : wires[0]) {
+                model[0].addWire(wire);
+            }
+        };
+        
+        runner.measure("model addComponent n=" + size, size, fresh, () -> {
+            for (GateComponent component : components[0]) {
+                model[0].addComponent(component);
+            }
+            return model[0].getComponents().size();
+        });
+        runner.measure("model addWire n=" + size, size - 1, () -> {
+            fresh.run();
+            for (GateComponent component : components[0]) {
+                model[0].addComponent(component);
+            }
+        }, () -> {
+            for (ConnectionWire wire : wires[0]) {
+                model[0].addWire(wire);
+            }
+            return model[0].getWires().size();
+        });
+        runner.measure("model removeComponent n=" + size, size, populated, () -> {
+            for (GateComponent component : components[0]) {
+                model[0].removeComponent(component);
+            }
+            return model[0].getComponents().size();
+        });
+    }
+    
+    static void serializationBenchmarks(BenchmarkRunner runner, String name, LogicGateModel model) throws Exception {
+        byte[][] saved = new byte[1][];
+        runner.measure(name + " serialize", () -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(model);
+            }
+            saved[0] = bytes.toByteArray();
+            return saved[0].length;
+        });
+        runner.measure(name + " deserialize", () -> {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(saved[0]))) {
+                return ((LogicGateModel) in.readObject()).getComponents().size();
+            }
+        });
+        
+        Path file = Files.createTempFile("benchmark", ".gate");
+        try {
+            runner.measure(name + " binary save", () -> {
+                CircuitFile.save(model, file);
+                return Files.size(file);
+            });
+            runner.measure(name + " binary map + netlist", () -> CircuitFile.map(file).toNetlist().size());
+            runner.measure(name + " binary load model", () -> CircuitFile.map(file).toModel().getComponents().size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,677 @@
+package controller;
+
+import java.awt.Rectangle;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.ComponentType;
+import model.ConnectionWire;
+import model.GateComponent;
+import model.LogicGateModel;
+import model.ModelIndex;
+import model.Wiring;
+import storage.CircuitFile;
+
+/**
+ * Undo/redo for board edits, recorded as small commands instead of model
+ * snapshots.
+ *
+ * Each command keeps references to the components and wires it touched plus
+ * the few ints needed to invert it (input positions, old coordinates, old
+ * state), so an undo step costs a few dozen bytes regardless of board size;
+ * removed components are kept alive by the command rather than copied.
+ * Consecutive moves of one component coalesce into a single step until
+ * {@link #endDrag()}, edits between {@link #beginGroup()} and
+ * {@link #endGroup()} undo as one step, and history is capped at a fixed
+ * number of steps, dropping the oldest.
+ *
+ * Edits must go through this class (and hence {@link ModelIndex}) on the EDT.
+ * The caller still creates {@link ConnectionWire}s itself, normally with
+ * {@link Wiring#connect}, before calling {@link #addWire}.
+ *
+ * Autosave: {@link #startAutosave} writes a full checkpoint once and then
+ * appends every applied change, including undos and redos, to a log file.
+ * {@link #recover} loads the checkpoint and replays the log. The log refers to
+ * components by a dense log id: checkpointed components are numbered in
+ * {@link LogicGateModel#getComponents()} order and every component added
+ * afterwards (including one restored by undo) takes the next number, which
+ * replay reproduces by numbering the components it creates the same way.
+ */
+public class EditJournal {
+    
+    public static final int DEFAULT_CAPACITY = 1_000;
+    
+    /** Log file header: "GJNL". */
+    public static final int LOG_MAGIC = 0x474A4E4C;
+    public static final int LOG_VERSION = 2;
+    
+    // Log record opcodes
+    private static final int ADD_COMPONENT = 1;
+    private static final int REMOVE_COMPONENT = 2;
+    private static final int ADD_WIRE = 3;
+    private static final int REMOVE_WIRE = 4;
+    private static final int MOVE = 5;
+    private static final int SET_STATE = 6;
+    
+    private final ModelIndex index;
+    private final int capacity;
+    private final Deque<Edit> undo = new ArrayDeque<>();
+    private final Deque<Edit> redo = new ArrayDeque<>();
+    private Group group;
+    private int groupDepth;
+    private Move drag;
+    
+    private DataOutputStream log;
+    private final Map<GateComponent, Integer> logIds = new IdentityHashMap<>();
+    private int nextLogId;
+    private GateComponent pendingMove;
+    private IOException autosaveError;
+    
+    public EditJournal(ModelIndex index) {
+        this(index, DEFAULT_CAPACITY);
+    }
+    
+    public EditJournal(ModelIndex index, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.index = index;
+        this.capacity = capacity;
+    }
+    
+    public void addComponent(GateComponent component) {
+        record(new AddComponent(component));
+    }
+    
+    /** Removes a component with its wires; undo restores both and the inputs they fed. */
+    public void removeComponent(GateComponent component) {
+        record(new RemoveComponent(component));
+    }
+    
+    /**
+     * Adds a wire whose target input has already been connected (or, if the
+     * target had no free input, connects it at the end).
+     */
+    public void addWire(ConnectionWire wire) {
+        List<GateComponent> inputs = wire.getTarget().getInputs();
+        int position = inputs.lastIndexOf(wire.getSource());
+        if (position >= 0) {
+            inputs.remove(position);
+        } else {
+            position = inputs.size();
+        }
+        record(new AddWire(wire, position));
+    }
+    
+    public void removeWire(ConnectionWire wire) {
+        record(new RemoveWire(wire, wire.getTarget().getInputs().indexOf(wire.getSource())));
+    }
+    
+    /**
+     * Moves a component. Successive moves of the same component are merged
+     * into one undo step until {@link #endDrag()} or any other edit.
+     */
+    public void move(GateComponent component, int x, int y) {
+        if (drag != null && drag.component == component && undo.peekLast() == drag && group == null) {
+            drag.toX = x;
+            drag.toY = y;
+            moveTo(component, x, y);
+            return;
+        }
+        Move move = new Move(component, x, y);
+        record(move);
+        drag = move;
+    }
+    
+    /** Ends move coalescing, e.g. on mouse release. */
+    public void endDrag() {
+        drag = null;
+        flushPendingMove();
+    }
+    
+    public void setInputState(GateComponent component, boolean state) {
+        if (component.getState() != state) {
+            record(new SetState(component, state));
+        }
+    }
+    
+    /** Starts a compound edit, e.g. deleting a selection; groups may nest. */
+    public void beginGroup() {
+        if (groupDepth++ == 0) {
+            group = new Group();
+            drag = null;
+        }
+    }
+    
+    public void endGroup() {
+        if (groupDepth == 0) {
+            throw new IllegalStateException("endGroup() without beginGroup()");
+        }
+        if (--groupDepth == 0) {
+            Group finished = group;
+            group = null;
+            if (!finished.edits.isEmpty()) {
+                push(finished);
+            }
+        }
+    }
+    
+    private void record(Edit edit) {
+        drag = null;
+        edit.apply(this);
+        if (group != null) {
+            group.edits.add(edit);
+        } else {
+            push(edit);
+        }
+    }
+    
+    private void push(Edit edit) {
+        undo.addLast(edit);
+        if (undo.size() > capacity) {
+            undo.removeFirst();
+        }
+        redo.clear();
+    }
+    
+    public boolean canUndo() {
+        return !undo.isEmpty() && group == null;
+    }
+    
+    public boolean canRedo() {
+        return !redo.isEmpty() && group == null;
+    }
+    
+    public boolean undo() {
+        if (!canUndo()) {
+            return false;
+        }
+        drag = null;
+        Edit edit = undo.removeLast();
+        edit.revert(this);
+        redo.addLast(edit);
+        flushPendingMove();
+        return true;
+    }
+    
+    public boolean redo() {
+        if (!canRedo()) {
+            return false;
+        }
+        drag = null;
+        Edit edit = redo.removeLast();
+        edit.apply(this);
+        undo.addLast(edit);
+        flushPendingMove();
+        return true;
+    }
+    
+    public int undoSize() {
+        return undo.size();
+    }
+    
+    public int redoSize() {
+        return redo.size();
+    }
+    
+    public void clear() {
+        undo.clear();
+        redo.clear();
+        drag = null;
+    }
+    
+    /**
+     * Saves the model to {@code checkpoint} and starts appending changes to
+     * {@code logFile}, replacing any previous log. Call again to compact.
+     */
+    public void startAutosave(Path checkpoint, Path logFile) throws IOException {
+        stopAutosave();
+        CircuitFile.save(index.getModel(), checkpoint);
+        logIds.clear();
+        nextLogId = 0;
+        for (GateComponent component : index.getModel().getComponents()) {
+            logIds.put(component, nextLogId++);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logFile)));
+        out.writeInt(LOG_MAGIC);
+        out.writeByte(LOG_VERSION);
+        out.flush();
+        log = out;
+        autosaveError = null;
+    }
+    
+    public void stopAutosave() throws IOException {
+        flushPendingMove();
+        logIds.clear();
+        if (log != null) {
+            DataOutputStream out = log;
+            log = null;
+            out.close();
+        }
+    }
+    
+    /** Returns the write error that stopped autosave, or null. Editing is never blocked by the log. */
+    public IOException getAutosaveError() {
+        return autosaveError;
+    }
+    
+    /** Loads a checkpoint and replays the change log written after it. */
+    public static LogicGateModel recover(Path checkpoint, Path logFile) throws IOException {
+        LogicGateModel model = CircuitFile.load(checkpoint);
+        ModelIndex index = new ModelIndex(model);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+            if (in.readInt() != LOG_MAGIC) {
+                throw new IOException("Not an edit log: " + logFile);
+            }
+            int version = in.readUnsignedByte();
+            if (version != LOG_VERSION) {
+                throw new IOException("Unsupported edit log version " + version);
+            }
+            // Log ids: checkpoint order, then one per replayed ADD_COMPONENT
+            List<GateComponent> components = new ArrayList<>(model.getComponents());
+            while (true) {
+                int op;
+                try {
+                    op = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    replay(op, in, index, components);
+                } catch (EOFException e) {
+                    // Torn final record from a crash mid-write; everything before it is intact
+                    break;
+                }
+            }
+        }
+        return model;
+    }
+    
+    private static void replay(int op, DataInputStream in, ModelIndex index, List<GateComponent> components)
+            throws IOException {
+        switch (op) {
+            case ADD_COMPONENT: {
+                ComponentType type = ComponentType.valueOf(in.readUTF());
+                int x = in.readInt();
+                int y = in.readInt();
+                boolean state = in.readBoolean();
+                GateComponent component = new GateComponent(type, x, y);
+                component.setState(state);
+                index.addComponent(component);
+                components.add(component);
+                break;
+            }
+            case REMOVE_COMPONENT:
+                index.removeComponent(components.get(in.readInt()));
+                break;
+            case ADD_WIRE: {
+                GateComponent source = components.get(in.readInt());
+                GateComponent target = components.get(in.readInt());
+                index.addWire(Wiring.connect(source, target, in.readInt()));
+                break;
+            }
+            case REMOVE_WIRE: {
+                GateComponent source = components.get(in.readInt());
+                GateComponent target = components.get(in.readInt());
+                for (ConnectionWire wire : index.getOutgoingWires(source)) {
+                    if (wire.getTarget() == target) {
+                        index.removeWire(wire);
+                        break;
+                    }
+                }
+                break;
+            }
+            case MOVE:
+                setLocation(components.get(in.readInt()), in.readInt(), in.readInt());
+                break;
+            case SET_STATE:
+                components.get(in.readInt()).setState(in.readBoolean());
+                break;
+            default:
+                throw new IOException("Corrupt edit log: unknown record " + op);
+        }
+    }
+    
+    // Primitive changes shared by apply and revert; each one is logged
+    
+    private interface LogRecord {
+        void write(DataOutputStream out) throws IOException;
+    }
+    
+    private void log(LogRecord record) {
+        if (log == null) {
+            return;
+        }
+        if (pendingMove != null) {
+            GateComponent moved = pendingMove;
+            pendingMove = null;
+            Rectangle bounds = moved.getBounds();
+            int id = logIdOf(moved);
+            log(out -> {
+                out.writeByte(MOVE);
+                out.writeInt(id);
+                out.writeInt(bounds.x);
+                out.writeInt(bounds.y);
+            });
+            if (log == null) {
+                return;
+            }
+        }
+        try {
+            record.write(log);
+            log.flush();
+        } catch (IOException e) {
+            autosaveError = e;
+            try {
+                log.close();
+            } catch (IOException ignored) {
+                // Already failing
+            }
+            log = null;
+        }
+    }
+    
+    private void flushPendingMove() {
+        if (pendingMove != null) {
+            log(out -> { });
+        }
+    }
+    
+    private int logIdOf(GateComponent component) {
+        return logIds.get(component);
+    }
+    
+    private void insertComponent(GateComponent component) {
+        index.addComponent(component);
+        if (log != null) {
+            logIds.put(component, nextLogId++);
+            Rectangle bounds = component.getBounds();
+            log(out -> {
+                out.writeByte(ADD_COMPONENT);
+                out.writeUTF(component.getType().name());
+                out.writeInt(bounds.x);
+                out.writeInt(bounds.y);
+                out.writeBoolean(component.getState());
+            });
+        }
+    }
+    
+    private void deleteComponent(GateComponent component) {
+        if (log != null) {
+            int id = logIdOf(component);
+            log(out -> {
+                out.writeByte(REMOVE_COMPONENT);
+                out.writeInt(id);
+            });
+        }
+        index.removeComponent(component);
+        logIds.remove(component);
+    }
+    
+    /**
+     * Adds a wire to the index, first inserting its source into the target's
+     * inputs at {@code position} unless that input is still connected.
+     */
+    private void connect(ConnectionWire wire, int position, boolean insertInput) {
+        List<GateComponent> inputs = wire.getTarget().getInputs();
+        if (insertInput) {
+            inputs.add(Math.min(position, inputs.size()), wire.getSource());
+        }
+        index.addWire(wire);
+        if (log != null) {
+            int source = logIdOf(wire.getSource());
+            int target = logIdOf(wire.getTarget());
+            log(out -> {
+                out.writeByte(ADD_WIRE);
+                out.writeInt(source);
+                out.writeInt(target);
+                out.writeInt(position);
+            });
+        }
+    }
+    
+    private void disconnect(ConnectionWire wire) {
+        if (log != null) {
+            int source = logIdOf(wire.getSource());
+            int target = logIdOf(wire.getTarget());
+            log(out -> {
+                out.writeByte(REMOVE_WIRE);
+                out.writeInt(source);
+                out.writeInt(target);
+            });
+        }
+        index.removeWire(wire);
+    }
+    
+    /** Moves a component; the log record is deferred so a drag writes one record. */
+    private void moveTo(GateComponent component, int x, int y) {
+        setLocation(component, x, y);
+        if (log != null) {
+            if (pendingMove != null && pendingMove != component) {
+                flushPendingMove();
+            }
+            pendingMove = component;
+        }
+    }
+    
+    private void changeState(GateComponent component, boolean state) {
+        component.setState(state);
+        if (log != null) {
+            int id = logIdOf(component);
+            log(out -> {
+                out.writeByte(SET_STATE);
+                out.writeInt(id);
+                out.writeBoolean(state);
+            });
+        }
+    }
+    
+    private static void setLocation(GateComponent component, int x, int y) {
+        component.getBounds().setLocation(x, y);
+    }
+    
+    /**
+     * Returns where each wire's source sits in its target's inputs, matching
+     * repeated sources (the same gate wired twice) to successive occurrences.
+     */
+    private static int[] inputPositions(List<ConnectionWire> wires) {
+        int[] positions = new int[wires.size()];
+        for (int w = 0; w < wires.size(); w++) {
+            ConnectionWire wire = wires.get(w);
+            int occurrence = 0;
+            for (int earlier = 0; earlier < w; earlier++) {
+                ConnectionWire other = wires.get(earlier);
+                if (other.getSource() == wire.getSource() && other.getTarget() == wire.getTarget()) {
+                    occurrence++;
+                }
+            }
+            List<GateComponent> inputs = wire.getTarget().getInputs();
+            int position = -1;
+            for (int i = 0; i < inputs.size() && occurrence >= 0; i++) {
+                if (inputs.get(i) == wire.getSource()) {
+                    position = i;
+                    occurrence--;
+                }
+            }
+            positions[w] = occurrence < 0 ? position : inputs.size();
+        }
+        return positions;
+    }
+    
+    private abstract static class Edit {
+        /** Performs (or redoes) the edit. */
+        abstract void apply(EditJournal journal);
+        
+        abstract void revert(EditJournal journal);
+    }
+    
+    private static final class AddComponent extends Edit {
+        private final GateComponent component;
+        
+        AddComponent(GateComponent component) {
+            this.component = component;
+        }
+        
+        @Override
+        void apply(EditJournal journal) {
+            journal.insertComponent(component);
+        }
+        
+        @Override
+        void revert(EditJournal journal) {
+            journal.deleteComponent(component);
+        }
+    }
+    
+    private static final class RemoveComponent extends Edit {
+        private final GateComponent component;
+        private List<ConnectionWire> incoming;
+        private int[] incomingPositions;
+        private List<ConnectionWire> outgoing;
+        private int[] outgoingPositions;
+        
+        RemoveComponent(GateComponent component) {
+            this.component = component;
+        }
+        
+        @Override
+        void apply(EditJournal journal) {
+            if (incoming == null) {
+                incoming = new ArrayList<>(journal.index.getIncomingWires(component));
+                incomingPositions = inputPositions(incoming);
+                outgoing = new ArrayList<>(journal.index.getOutgoingWires(component));
+                outgoingPositions = inputPositions(outgoing);
+            }
+            journal.deleteComponent(component);
+        }
+        
+        @Override
+        void revert(EditJournal journal) {
+            journal.insertComponent(component);
+            // The component's own inputs were never disconnected; its targets' were
+            for (int w = 0; w < incoming.size(); w++) {
+                journal.connect(incoming.get(w), incomingPositions[w], false);
+            }
+            for (int w = 0; w < outgoing.size(); w++) {
+                journal.connect(outgoing.get(w), outgoingPositions[w], true);
+            }
+        }
+    }
+    
+    private static final class AddWire extends Edit {
+        private final ConnectionWire wire;
+        private final int position;
+        
+        AddWire(ConnectionWire wire, int position) {
+            this.wire = wire;
+            this.position = position;
+        }
+        
+        @Override
+        void apply(EditJournal journal) {
+            journal.connect(wire, position, true);
+        }
+        
+        @Override
+        void revert(EditJournal journal) {
+            journal.disconnect(wire);
+        }
+    }
+    
+    private static final class RemoveWire extends Edit {
+        private final ConnectionWire wire;
+        private final int position;
+        
+        RemoveWire(ConnectionWire wire, int position) {
+            this.wire = wire;
+            this.position = position;
+        }
+        
+        @Override
+        void apply(EditJournal journal) {
+            journal.disconnect(wire);
+        }
+        
+        @Override
+        void revert(EditJournal journal) {
+            journal.connect(wire, position, true);
+        }
+    }
+    
+    private static final class Move extends Edit {
+        private final GateComponent component;
+        private final int fromX;
+        private final int fromY;
+        private int toX;
+        private int toY;
+        
+        Move(GateComponent component, int x, int y) {
+            this.component = component;
+            Rectangle bounds = component.getBounds();
+            this.fromX = bounds.x;
+            this.fromY = bounds.y;
+            this.toX = x;
+            this.toY = y;
+        }
+        
+        @Override
+        void apply(EditJournal journal) {
+            journal.moveTo(component, toX, toY);
+        }
+        
+        @Override
+        void revert(EditJournal journal) {
+            journal.moveTo(component, fromX, fromY);
+        }
+    }
+    
+    private static final class SetState extends Edit {
+        private final GateComponent component;
+        private final boolean state;
+        
+        SetState(GateComponent component, boolean state) {
+            this.component = component;
+            this.state = state;
+        }
+        
+        @Override
+        void apply(EditJournal journal) {
+            journal.changeState(component, state);
+        }
+        
+        @Override
+        void revert(EditJournal journal) {
+            journal.changeState(component, !state);
+        }
+    }
+    
+    private static final class Group extends Edit {
+        private final List<Edit> edits = new ArrayList<>();
+        
+        @Override
+        void apply(EditJournal journal) {
+            for (Edit edit : edits) {
+                edit.apply(journal);
+            }
+        }
+        
+        @Override
+        void revert(EditJournal journal) {
+            for (int i = edits.size() - 1; i >= 0; i--) {
+                edits.get(i).revert(journal);
+            }
+        }
+    }
+}
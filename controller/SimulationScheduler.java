@@ -0,0 +1,295 @@
+package controller;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+
+import model.GateComponent;
+import model.LogicGateModel;
+import simulation.CompiledCircuit;
+import simulation.GateOp;
+import simulation.IncrementalSimulator;
+import simulation.Netlist;
+import simulation.SequentialSimulator;
+import simulation.SimulationMetrics;
+
+/**
+ * Runs circuit evaluation on a dedicated worker thread instead of the EDT.
+ *
+ * Concurrency contract: the {@link LogicGateModel} and its components are
+ * only read or modified on the EDT. After a structural edit the controller
+ * calls {@link #modelChanged()}, which copies the wire graph into an
+ * immutable {@link Netlist} and tags it with a new version; after an input
+ * toggle it calls {@link #inputsChanged()}, which copies just the input
+ * states. The worker only ever sees these copies, never the live model.
+ *
+ * Requests are coalesced: while the worker is busy, any number of toggles
+ * collapse into one run with the latest state. Results are published to the
+ * {@link Listener} on the EDT at most once per frame interval, always with
+ * the newest snapshot; snapshots from an older model version are dropped.
+ */
+public class SimulationScheduler {
+    
+    /** Receives results on the Event Dispatch Thread. */
+    public interface Listener {
+        void simulationUpdated(Snapshot snapshot);
+    }
+    
+    /** Immutable result of one simulation run. */
+    public static final class Snapshot {
+        private final long modelVersion;
+        private final Map<String, Boolean> outputStates;
+        private final long elapsedNanos;
+        
+        Snapshot(long modelVersion, Map<String, Boolean> outputStates, long elapsedNanos) {
+            this.modelVersion = modelVersion;
+            this.outputStates = outputStates;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        public long getModelVersion() {
+            return modelVersion;
+        }
+        
+        /** Output state per OUTPUT/BULB component id; unmodifiable. */
+        public Map<String, Boolean> getOutputStates() {
+            return outputStates;
+        }
+        
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+    
+    /** Model structure captured on the EDT. */
+    private static final class Structure {
+        final long version;
+        final Netlist netlist;
+        final int[] inputGates;
+        final String[] outputIds;
+        final int[] outputGates;
+        
+        Structure(long version, Netlist netlist, int[] inputGates, String[] outputIds, int[] outputGates) {
+            this.version = version;
+            this.netlist = netlist;
+            this.inputGates = inputGates;
+            this.outputIds = outputIds;
+            this.outputGates = outputGates;
+        }
+    }
+    
+    /** One unit of work: a structure plus the input states to apply. */
+    private static final class Request {
+        final Structure structure;
+        final boolean[] inputStates;
+        
+        Request(Structure structure, boolean[] inputStates) {
+            this.structure = structure;
+            this.inputStates = inputStates;
+        }
+    }
+    
+    public static final long DEFAULT_FRAME_MILLIS = 16;
+    
+    private final LogicGateModel model;
+    private final Listener listener;
+    private final long frameNanos;
+    private final ScheduledExecutorService worker;
+    
+    private final AtomicReference<Request> pending = new AtomicReference<>();
+    private final AtomicBoolean runScheduled = new AtomicBoolean();
+    private final AtomicReference<Snapshot> unpublished = new AtomicReference<>();
+    private final AtomicBoolean publishScheduled = new AtomicBoolean();
+    private final AtomicLong runs = new AtomicLong();
+    private volatile long lastPublishNanos;
+    private volatile long modelVersion;
+    private volatile SimulationMetrics metrics;
+    
+    // EDT-confined
+    private Structure structure;
+    private GateComponent[] inputComponents;
+    
+    // Worker-confined
+    private Structure simulatedStructure;
+    private IncrementalSimulator incremental;
+    private SequentialSimulator sequential;
+    private SimulationMetrics attachedMetrics;
+    
+    public SimulationScheduler(LogicGateModel model, Listener listener) {
+        this(model, listener, DEFAULT_FRAME_MILLIS);
+    }
+    
+    public SimulationScheduler(LogicGateModel model, Listener listener, long frameMillis) {
+        this.model = model;
+        this.listener = listener;
+        this.frameNanos = TimeUnit.MILLISECONDS.toNanos(frameMillis);
+        this.worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "simulation-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /** Call on the EDT after adding or removing components or wires. */
+    public void modelChanged() {
+        Netlist netlist = Netlist.fromModel(model);
+        int n = netlist.size();
+        int inputCount = 0;
+        int outputCount = 0;
+        for (int g = 0; g < n; g++) {
+            if (netlist.op(g) == GateOp.INPUT) {
+                inputCount++;
+            } else if (netlist.op(g) == GateOp.OUTPUT) {
+                outputCount++;
+            }
+        }
+        int[] inputGates = new int[inputCount];
+        int[] outputGates = new int[outputCount];
+        String[] outputIds = new String[outputCount];
+        GateComponent[] inputs = new GateComponent[inputCount];
+        inputCount = 0;
+        outputCount = 0;
+        for (int g = 0; g < n; g++) {
+            if (netlist.op(g) == GateOp.INPUT) {
+                inputs[inputCount] = netlist.component(g);
+                inputGates[inputCount++] = g;
+            } else if (netlist.op(g) == GateOp.OUTPUT) {
+                outputIds[outputCount] = netlist.component(g).getId();
+                outputGates[outputCount++] = g;
+            }
+        }
+        modelVersion++;
+        structure = new Structure(modelVersion, netlist, inputGates, outputIds, outputGates);
+        inputComponents = inputs;
+        inputsChanged();
+    }
+    
+    /** Call on the EDT after input states were toggled. */
+    public void inputsChanged() {
+        if (structure == null) {
+            modelChanged();
+            return;
+        }
+        boolean[] states = new boolean[inputComponents.length];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = inputComponents[i].getState();
+        }
+        pending.set(new Request(structure, states));
+        if (runScheduled.compareAndSet(false, true)) {
+            worker.execute(this::run);
+        }
+    }
+    
+    private void run() {
+        runScheduled.set(false);
+        Request request = pending.getAndSet(null);
+        if (request == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        Structure s = request.structure;
+        SimulationMetrics metrics = this.metrics;
+        boolean justBuilt = s != simulatedStructure;
+        if (justBuilt) {
+            incremental = null;
+            sequential = null;
+            attachedMetrics = null;
+            try {
+                incremental = IncrementalSimulator.seeded(CompiledCircuit.compile(s.netlist),
+                        s.inputGates, request.inputStates);
+            } catch (IllegalStateException e) {
+                // Feedback loops: settle with the sequential simulator instead
+                sequential = new SequentialSimulator(CompiledCircuit.compileSequential(s.netlist));
+            }
+            simulatedStructure = s;
+        }
+        if (metrics != attachedMetrics) {
+            if (incremental != null) {
+                incremental.setMetrics(metrics);
+            } else if (metrics != null) {
+                metrics.bind(s.netlist);
+            }
+            attachedMetrics = metrics;
+        }
+        long evaluations = 0;
+        long toggles = 0;
+        int depth = 0;
+        if (incremental != null && justBuilt) {
+            // Seeded with this request's inputs and evaluated once; nothing to propagate
+            evaluations = s.netlist.size();
+            depth = incremental.circuit().depth();
+        }
+        for (int i = 0; i < s.inputGates.length; i++) {
+            if (sequential != null) {
+                sequential.setInput(s.inputGates[i], request.inputStates[i]);
+            } else if (!justBuilt) {
+                incremental.setInput(s.inputGates[i], request.inputStates[i]);
+                if (metrics != null) {
+                    evaluations += incremental.lastEvaluations();
+                    toggles += incremental.changedCount();
+                    depth = Math.max(depth, incremental.lastDepth());
+                }
+            }
+        }
+        if (sequential != null) {
+            sequential.settle();
+            // No per-gate counts on this path; a sweep evaluates every gate
+            evaluations = (long) sequential.getLastSweeps() * s.netlist.size();
+            depth = sequential.getLastSweeps();
+        }
+        Map<String, Boolean> outputs = new LinkedHashMap<>(s.outputGates.length * 2);
+        for (int o = 0; o < s.outputGates.length; o++) {
+            int gate = s.outputGates[o];
+            outputs.put(s.outputIds[o], incremental != null ? incremental.get(gate) : sequential.get(gate));
+        }
+        runs.incrementAndGet();
+        long elapsed = System.nanoTime() - start;
+        if (metrics != null) {
+            metrics.recordRun(evaluations, toggles, depth, elapsed);
+        }
+        unpublished.set(new Snapshot(s.version, Collections.unmodifiableMap(outputs), elapsed));
+        schedulePublish();
+    }
+    
+    private void schedulePublish() {
+        if (!publishScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = Math.max(0, lastPublishNanos + frameNanos - System.nanoTime());
+        worker.schedule(() -> SwingUtilities.invokeLater(this::publish), delay, TimeUnit.NANOSECONDS);
+    }
+    
+    private void publish() {
+        publishScheduled.set(false);
+        lastPublishNanos = System.nanoTime();
+        Snapshot snapshot = unpublished.getAndSet(null);
+        if (snapshot != null && snapshot.modelVersion == modelVersion) {
+            listener.simulationUpdated(snapshot);
+        }
+    }
+    
+    /** Returns the number of simulation runs performed so far. */
+    public long getRunCount() {
+        return runs.get();
+    }
+    
+    /**
+     * Turns instrumentation on with the given metrics, or off with
+     * {@code null}; takes effect from the next run.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+}
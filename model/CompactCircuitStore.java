@@ -0,0 +1,352 @@
+package model;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Struct-of-arrays storage for very large circuits.
+ *
+ * A {@link GateComponent} carries a UUID string, a colour, a Rectangle and an
+ * input list, several hundred bytes per gate. Here a gate is a dense int:
+ * its type is a byte, its state a bit, its geometry sits in int/short
+ * columns and all inputs share one CSR adjacency array, about 25 bytes per
+ * two-input gate. UUIDs are only created for gates whose id is asked for,
+ * and {@link Gate} objects are throwaway flyweight views over the columns.
+ *
+ * Gates are only ever appended, and connections are buffered and folded into
+ * the CSR arrays on the next read. Convert with {@link #fromModel} and
+ * {@link #toModel()} at the boundary with the editor; the simulation netlist
+ * converts to and from the store through its public accessors.
+ */
+public final class CompactCircuitStore {
+    
+    private static final ComponentType[] TYPES = ComponentType.values();
+    
+    private int size;
+    private byte[] types;
+    private final BitSet states = new BitSet();
+    private int[] x;
+    private int[] y;
+    private short[] width;
+    private short[] height;
+    
+    // CSR adjacency over the first csrGates gates, rebuilt lazily after connect();
+    // inputStart has spare capacity so appended gates extend it in place
+    private int[] inputStart = new int[16];
+    private int csrGates;
+    private int[] inputs = new int[0];
+    private int[] pendingSource = new int[16];
+    private int[] pendingTarget = new int[16];
+    private int pendingCount;
+    
+    // Lazily assigned ids
+    private final Map<Integer, String> idOf = new HashMap<>();
+    private final Map<String, Integer> gateOf = new HashMap<>();
+    
+    public CompactCircuitStore() {
+        this(16);
+    }
+    
+    public CompactCircuitStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        types = new byte[capacity];
+        x = new int[capacity];
+        y = new int[capacity];
+        width = new short[capacity];
+        height = new short[capacity];
+    }
+    
+    /** Appends a gate and returns its index. */
+    public int addGate(ComponentType type, int gateX, int gateY, int gateWidth, int gateHeight) {
+        if (gateWidth < 0 || gateWidth > Short.MAX_VALUE || gateHeight < 0 || gateHeight > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Gate size out of range: " + gateWidth + "x" + gateHeight);
+        }
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            width = Arrays.copyOf(width, capacity);
+            height = Arrays.copyOf(height, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        x[size] = gateX;
+        y[size] = gateY;
+        width[size] = (short) gateWidth;
+        height[size] = (short) gateHeight;
+        states.set(size, type == ComponentType.HIGH_INPUT);
+        return size++;
+    }
+    
+    /** Appends {@code source} to the inputs of {@code target}. */
+    public void connect(int source, int target) {
+        if (source < 0 || source >= size || target < 0 || target >= size) {
+            throw new IndexOutOfBoundsException("No gate " + (source < 0 || source >= size ? source : target));
+        }
+        if (pendingCount == pendingSource.length) {
+            pendingSource = Arrays.copyOf(pendingSource, pendingCount * 2);
+            pendingTarget = Arrays.copyOf(pendingTarget, pendingCount * 2);
+        }
+        pendingSource[pendingCount] = source;
+        pendingTarget[pendingCount++] = target;
+    }
+    
+    /** Folds buffered connections into the CSR arrays, keeping input order. */
+    private void compact() {
+        if (pendingCount == 0) {
+            // Gates appended since the last rebuild have no inputs: extend in place
+            if (csrGates < size) {
+                if (inputStart.length < size + 1) {
+                    inputStart = Arrays.copyOf(inputStart, Math.max(size + 1, inputStart.length * 2));
+                }
+                Arrays.fill(inputStart, csrGates + 1, size + 1, inputStart[csrGates]);
+                csrGates = size;
+            }
+            return;
+        }
+        int oldGates = csrGates;
+        int[] start = new int[size + 1];
+        for (int g = 0; g < oldGates; g++) {
+            start[g + 1] = inputStart[g + 1] - inputStart[g];
+        }
+        for (int e = 0; e < pendingCount; e++) {
+            start[pendingTarget[e] + 1]++;
+        }
+        for (int g = 0; g < size; g++) {
+            start[g + 1] += start[g];
+        }
+        int[] merged = new int[start[size]];
+        int[] fill = Arrays.copyOf(start, size);
+        for (int g = 0; g < oldGates; g++) {
+            for (int i = inputStart[g]; i < inputStart[g + 1]; i++) {
+                merged[fill[g]++] = inputs[i];
+            }
+        }
+        for (int e = 0; e < pendingCount; e++) {
+            merged[fill[pendingTarget[e]]++] = pendingSource[e];
+        }
+        inputStart = start;
+        inputs = merged;
+        csrGates = size;
+        pendingCount = 0;
+        pendingSource = new int[16];
+        pendingTarget = new int[16];
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public ComponentType type(int gate) {
+        checkGate(gate);
+        return TYPES[types[gate]];
+    }
+    
+    public boolean state(int gate) {
+        checkGate(gate);
+        return states.get(gate);
+    }
+    
+    public void setState(int gate, boolean state) {
+        checkGate(gate);
+        states.set(gate, state);
+    }
+    
+    public int x(int gate) {
+        checkGate(gate);
+        return x[gate];
+    }
+    
+    public int y(int gate) {
+        checkGate(gate);
+        return y[gate];
+    }
+    
+    public void setLocation(int gate, int gateX, int gateY) {
+        checkGate(gate);
+        x[gate] = gateX;
+        y[gate] = gateY;
+    }
+    
+    /** Returns a new Rectangle with the gate's bounds. */
+    public Rectangle bounds(int gate) {
+        checkGate(gate);
+        return new Rectangle(x[gate], y[gate], width[gate], height[gate]);
+    }
+    
+    public int inputCount(int gate) {
+        checkGate(gate);
+        compact();
+        return inputStart[gate + 1] - inputStart[gate];
+    }
+    
+    public int input(int gate, int i) {
+        checkGate(gate);
+        compact();
+        if (i < 0 || i >= inputStart[gate + 1] - inputStart[gate]) {
+            throw new IndexOutOfBoundsException("Input " + i + " of gate " + gate);
+        }
+        return inputs[inputStart[gate] + i];
+    }
+    
+    public int edgeCount() {
+        compact();
+        return inputStart[size];
+    }
+    
+    /** Returns the gate's UUID, creating it on first request. */
+    public String id(int gate) {
+        checkGate(gate);
+        String id = idOf.get(gate);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            idOf.put(gate, id);
+            gateOf.put(id, gate);
+        }
+        return id;
+    }
+    
+    /** Returns the gate with the given id, or -1 if no gate was given that id. */
+    public int gateOf(String id) {
+        Integer gate = gateOf.get(id);
+        return gate == null ? -1 : gate;
+    }
+    
+    /** Returns a flyweight view of a gate. */
+    public Gate view(int gate) {
+        checkGate(gate);
+        return new Gate(gate);
+    }
+    
+    private void checkGate(int gate) {
+        if (gate < 0 || gate >= size) {
+            throw new IndexOutOfBoundsException("No gate " + gate);
+        }
+    }
+    
+    /** Approximate heap footprint of the columns and id maps, in bytes. */
+    public long estimatedBytes() {
+        long columns = types.length + (long) x.length * 4 + (long) y.length * 4
+                + (long) width.length * 2 + (long) height.length * 2 + states.size() / 8;
+        long adjacency = (long) inputStart.length * 4 + (long) inputs.length * 4
+                + (long) pendingSource.length * 8;
+        // HashMap entries plus a 36-character String each way
+        long ids = (long) idOf.size() * 2 * (48 + 88);
+        return columns + adjacency + ids;
+    }
+    
+    /** Copies a model; component ids are carried over. */
+    public static CompactCircuitStore fromModel(LogicGateModel model) {
+        List<GateComponent> components = model.getComponents();
+        int n = components.size();
+        CompactCircuitStore store = new CompactCircuitStore(n);
+        Map<GateComponent, Integer> index = new IdentityHashMap<>(n * 2);
+        for (GateComponent component : components) {
+            Rectangle bounds = component.getBounds();
+            int gate = store.addGate(component.getType(), bounds.x, bounds.y, bounds.width, bounds.height);
+            store.states.set(gate, component.getState());
+            store.idOf.put(gate, component.getId());
+            store.gateOf.put(component.getId(), gate);
+            index.put(component, gate);
+        }
+        for (GateComponent component : components) {
+            int target = index.get(component);
+            for (GateComponent source : component.getInputs()) {
+                Integer s = index.get(source);
+                if (s != null) {
+                    store.connect(s, target);
+                }
+            }
+        }
+        return store;
+    }
+    
+    /**
+     * Materializes the store as an editable model with one wire per input.
+     * The new components get fresh ids; use {@link #id(int)} before
+     * converting if ids must be correlated.
+     */
+    public LogicGateModel toModel() {
+        compact();
+        LogicGateModel model = new LogicGateModel();
+        GateComponent[] created = new GateComponent[size];
+        for (int g = 0; g < size; g++) {
+            created[g] = new GateComponent(TYPES[types[g]], x[g], y[g]);
+            created[g].setState(states.get(g));
+            model.addComponent(created[g]);
+        }
+        for (int g = 0; g < size; g++) {
+            GateComponent target = created[g];
+            for (int i = inputStart[g]; i < inputStart[g + 1]; i++) {
+                GateComponent source = created[inputs[i]];
+                model.addWire(Wiring.connect(source, target));
+            }
+        }
+        return model;
+    }
+    
+    /**
+     * Lightweight view of one gate, mirroring the read side of
+     * {@link GateComponent}. Views hold only the store and the index, so
+     * creating them per access is cheap; two views of the same gate are equal.
+     */
+    public final class Gate {
+        private final int index;
+        
+        private Gate(int index) {
+            this.index = index;
+        }
+        
+        public int getIndex() {
+            return index;
+        }
+        
+        public String getId() {
+            return id(index);
+        }
+        
+        public ComponentType getType() {
+            return type(index);
+        }
+        
+        public boolean getState() {
+            return state(index);
+        }
+        
+        public void setState(boolean state) {
+            CompactCircuitStore.this.setState(index, state);
+        }
+        
+        public Rectangle getBounds() {
+            return bounds(index);
+        }
+        
+        public int getInputCount() {
+            return inputCount(index);
+        }
+        
+        public Gate getInput(int i) {
+            return new Gate(input(index, i));
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Gate && ((Gate) o).index == index && ((Gate) o).store() == CompactCircuitStore.this;
+        }
+        
+        @Override
+        public int hashCode() {
+            return index;
+        }
+        
+        private CompactCircuitStore store() {
+            return CompactCircuitStore.this;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Id-keyed lookup and per-component wire adjacency for a {@link LogicGateModel}.
+ *
+ * Edits routed through this class keep the indexes current, so finding a
+ * component by id is O(1) and finding the wires attached to a component is
+ * O(degree) instead of a scan over every wire on the board. The model's own
+ * wire list is not indexed, so {@link #removeWire} still searches it, from
+ * the most recently added wire backwards.
+ */
+public class ModelIndex {
+    
+    private final LogicGateModel model;
+    private final Map<String, GateComponent> componentsById = new HashMap<>();
+    private final Map<GateComponent, List<ConnectionWire>> incoming = new IdentityHashMap<>();
+    private final Map<GateComponent, List<ConnectionWire>> outgoing = new IdentityHashMap<>();
+    
+    public ModelIndex(LogicGateModel model) {
+        this.model = model;
+        rebuild();
+    }
+    
+    /** Re-indexes the model, e.g. after it was loaded or edited directly. */
+    public void rebuild() {
+        componentsById.clear();
+        incoming.clear();
+        outgoing.clear();
+        for (GateComponent component : model.getComponents()) {
+            index(component);
+        }
+        for (ConnectionWire wire : model.getWires()) {
+            indexWire(wire);
+        }
+    }
+    
+    public void addComponent(GateComponent component) {
+        model.addComponent(component);
+        index(component);
+    }
+    
+    public void addWire(ConnectionWire wire) {
+        model.addWire(wire);
+        indexWire(wire);
+    }
+    
+    /** Removes a component, its attached wires and any input references to it. */
+    public void removeComponent(GateComponent component) {
+        removeComponents(Collections.singletonList(component));
+    }
+    
+    /**
+     * Removes components, their attached wires and any input references to
+     * them. The model's component and wire lists are filtered in one pass
+     * each, so deleting a selection of k components costs O(N + W) plus the
+     * degrees of the removed components, not k scans of the whole board.
+     */
+    public void removeComponents(Collection<GateComponent> components) {
+        Set<GateComponent> doomed = Collections.newSetFromMap(new IdentityHashMap<>());
+        doomed.addAll(components);
+        for (GateComponent component : doomed) {
+            List<ConnectionWire> out = outgoing.remove(component);
+            if (out != null) {
+                for (ConnectionWire wire : out) {
+                    wire.getTarget().removeInput(component);
+                    if (!doomed.contains(wire.getTarget())) {
+                        unlink(incoming.get(wire.getTarget()), wire);
+                    }
+                }
+            }
+            List<ConnectionWire> in = incoming.remove(component);
+            if (in != null) {
+                for (ConnectionWire wire : in) {
+                    if (!doomed.contains(wire.getSource())) {
+                        unlink(outgoing.get(wire.getSource()), wire);
+                    }
+                }
+            }
+            if (componentsById.get(component.getId()) == component) {
+                componentsById.remove(component.getId());
+            }
+            model.getOutputStates().remove(component.getId());
+        }
+        model.getComponents().removeIf(doomed::contains);
+        model.getWires().removeIf(wire -> doomed.contains(wire.getSource()) || doomed.contains(wire.getTarget()));
+    }
+    
+    /**
+     * Removes a single wire and disconnects its target's input. The adjacency
+     * updates are O(degree); taking the wire out of the model's list is O(W)
+     * in the worst case, but O(1) for a wire that was just added, e.g. on undo.
+     */
+    public void removeWire(ConnectionWire wire) {
+        unlink(model.getWires(), wire);
+        wire.getTarget().removeInput(wire.getSource());
+        unlink(outgoing.get(wire.getSource()), wire);
+        unlink(incoming.get(wire.getTarget()), wire);
+    }
+    
+    public void clear() {
+        model.clear();
+        componentsById.clear();
+        incoming.clear();
+        outgoing.clear();
+    }
+    
+    public GateComponent findById(String id) {
+        return componentsById.get(id);
+    }
+    
+    public boolean contains(GateComponent component) {
+        return componentsById.get(component.getId()) == component;
+    }
+    
+    /** Returns the wires feeding a component. */
+    public List<ConnectionWire> getIncomingWires(GateComponent component) {
+        List<ConnectionWire> wires = incoming.get(component);
+        return wires == null ? Collections.emptyList() : Collections.unmodifiableList(wires);
+    }
+    
+    /** Returns the wires driven by a component. */
+    public List<ConnectionWire> getOutgoingWires(GateComponent component) {
+        List<ConnectionWire> wires = outgoing.get(component);
+        return wires == null ? Collections.emptyList() : Collections.unmodifiableList(wires);
+    }
+    
+    public LogicGateModel getModel() {
+        return model;
+    }
+    
+    private void index(GateComponent component) {
+        componentsById.put(component.getId(), component);
+        incoming.putIfAbsent(component, new ArrayList<>(2));
+        outgoing.putIfAbsent(component, new ArrayList<>(2));
+    }
+    
+    private void indexWire(ConnectionWire wire) {
+        outgoing.computeIfAbsent(wire.getSource(), c -> new ArrayList<>(2)).add(wire);
+        incoming.computeIfAbsent(wire.getTarget(), c -> new ArrayList<>(2)).add(wire);
+    }
+    
+    private static void unlink(List<ConnectionWire> wires, ConnectionWire wire) {
+        if (wires == null) {
+            return;
+        }
+        for (int i = wires.size() - 1; i >= 0; i--) {
+            if (wires.get(i) == wire) {
+                wires.remove(i);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package model;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform-grid spatial index over component bounds and wire segments.
+ *
+ * Used for hit-testing under the mouse and for finding what intersects the
+ * visible viewport, so both cost time proportional to the objects near the
+ * query instead of the whole board. The index keeps a copy of each indexed
+ * rectangle; after moving a component call {@link #update(GateComponent)},
+ * which also re-indexes its attached wires.
+ *
+ * Wires are indexed as the straight segment from the middle of the source's
+ * right edge to the middle of the target's left edge.
+ */
+public class SpatialIndex {
+    
+    public static final int DEFAULT_CELL_SIZE = 128;
+    /** Objects spanning more cells than this are kept in a list checked by every query. */
+    private static final int MAX_CELLS_PER_ENTRY = 64;
+    
+    private final int cellSize;
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+    private final List<Entry> oversized = new ArrayList<>();
+    private final Map<GateComponent, Entry> componentEntries = new IdentityHashMap<>();
+    private final Map<ConnectionWire, Entry> wireEntries = new IdentityHashMap<>();
+    private final Map<GateComponent, List<ConnectionWire>> attachedWires = new IdentityHashMap<>();
+    private long sequence;
+    private int queryStamp;
+    
+    /** An indexed component or wire with its cached bounding box. */
+    private static final class Entry {
+        final GateComponent component;
+        final ConnectionWire wire;
+        final Rectangle box = new Rectangle();
+        final Line2D.Float segment;
+        long order;
+        int stamp;
+        boolean inOversized;
+        
+        Entry(GateComponent component, ConnectionWire wire) {
+            this.component = component;
+            this.wire = wire;
+            this.segment = wire != null ? new Line2D.Float() : null;
+        }
+    }
+    
+    public SpatialIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+    
+    public SpatialIndex(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSize = cellSize;
+    }
+    
+    /** Builds an index over every component and wire of a model. */
+    public static SpatialIndex of(LogicGateModel model) {
+        SpatialIndex index = new SpatialIndex();
+        index.rebuild(model);
+        return index;
+    }
+    
+    public void rebuild(LogicGateModel model) {
+        clear();
+        for (GateComponent component : model.getComponents()) {
+            add(component);
+        }
+        for (ConnectionWire wire : model.getWires()) {
+            addWire(wire);
+        }
+    }
+    
+    public void clear() {
+        cells.clear();
+        oversized.clear();
+        componentEntries.clear();
+        wireEntries.clear();
+        attachedWires.clear();
+    }
+    
+    public void add(GateComponent component) {
+        if (componentEntries.containsKey(component)) {
+            update(component);
+            return;
+        }
+        Entry entry = new Entry(component, null);
+        entry.order = sequence++;
+        entry.box.setBounds(component.getBounds());
+        componentEntries.put(component, entry);
+        insert(entry);
+    }
+    
+    /** Removes a component and every indexed wire attached to it. */
+    public void remove(GateComponent component) {
+        Entry entry = componentEntries.remove(component);
+        if (entry != null) {
+            erase(entry);
+        }
+        List<ConnectionWire> wires = attachedWires.remove(component);
+        if (wires != null) {
+            for (ConnectionWire wire : new ArrayList<>(wires)) {
+                removeWire(wire);
+            }
+        }
+    }
+    
+    /** Re-indexes a component after it moved or resized, together with its wires. */
+    public void update(GateComponent component) {
+        Entry entry = componentEntries.get(component);
+        if (entry == null) {
+            return;
+        }
+        Rectangle bounds = component.getBounds();
+        if (!bounds.equals(entry.box)) {
+            erase(entry);
+            entry.box.setBounds(bounds);
+            insert(entry);
+        }
+        List<ConnectionWire> wires = attachedWires.get(component);
+        if (wires != null) {
+            for (ConnectionWire wire : wires) {
+                Entry wireEntry = wireEntries.get(wire);
+                erase(wireEntry);
+                setSegment(wireEntry);
+                insert(wireEntry);
+            }
+        }
+    }
+    
+    public void addWire(ConnectionWire wire) {
+        if (wireEntries.containsKey(wire)) {
+            return;
+        }
+        Entry entry = new Entry(null, wire);
+        entry.order = sequence++;
+        setSegment(entry);
+        wireEntries.put(wire, entry);
+        attachedWires.computeIfAbsent(wire.getSource(), c -> new ArrayList<>(2)).add(wire);
+        if (wire.getTarget() != wire.getSource()) {
+            attachedWires.computeIfAbsent(wire.getTarget(), c -> new ArrayList<>(2)).add(wire);
+        }
+        insert(entry);
+    }
+    
+    public void removeWire(ConnectionWire wire) {
+        Entry entry = wireEntries.remove(wire);
+        if (entry == null) {
+            return;
+        }
+        erase(entry);
+        detach(wire.getSource(), wire);
+        detach(wire.getTarget(), wire);
+    }
+    
+    /** Returns the topmost (most recently added) component containing the point, or null. */
+    public GateComponent componentAt(int x, int y) {
+        Entry best = topmost(cells.get(key(cell(x), cell(y))), x, y, null);
+        best = topmost(oversized, x, y, best);
+        return best == null ? null : best.component;
+    }
+    
+    private static Entry topmost(List<Entry> list, int x, int y, Entry best) {
+        if (list == null) {
+            return best;
+        }
+        for (Entry entry : list) {
+            if (entry.component != null && entry.box.contains(x, y) && (best == null || entry.order > best.order)) {
+                best = entry;
+            }
+        }
+        return best;
+    }
+    
+    public GateComponent componentAt(Point point) {
+        return componentAt(point.x, point.y);
+    }
+    
+    /** Returns the closest wire within {@code tolerance} pixels of the point, or null. */
+    public ConnectionWire wireAt(int x, int y, int tolerance) {
+        Rectangle area = new Rectangle(x - tolerance, y - tolerance, 2 * tolerance + 1, 2 * tolerance + 1);
+        ConnectionWire best = null;
+        double bestDistance = (double) tolerance * tolerance;
+        for (Entry entry : query(area, false)) {
+            double distance = entry.segment.ptSegDistSq(x, y);
+            if (distance <= bestDistance) {
+                bestDistance = distance;
+                best = entry.wire;
+            }
+        }
+        return best;
+    }
+    
+    /** Returns the components intersecting the area, in paint (insertion) order. */
+    public List<GateComponent> componentsIn(Rectangle area) {
+        List<Entry> entries = query(area, true);
+        entries.sort((a, b) -> Long.compare(a.order, b.order));
+        List<GateComponent> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            result.add(entry.component);
+        }
+        return result;
+    }
+    
+    /** Returns the wires whose bounding box intersects the area. */
+    public List<ConnectionWire> wiresIn(Rectangle area) {
+        List<Entry> entries = query(area, false);
+        List<ConnectionWire> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (entry.segment.intersects(area)) {
+                result.add(entry.wire);
+            }
+        }
+        return result;
+    }
+    
+    public int componentCount() {
+        return componentEntries.size();
+    }
+    
+    public int wireCount() {
+        return wireEntries.size();
+    }
+    
+    private List<Entry> query(Rectangle area, boolean components) {
+        List<Entry> result = new ArrayList<>();
+        int stamp = ++queryStamp;
+        int x0 = cell(area.x);
+        int y0 = cell(area.y);
+        int x1 = cell(area.x + Math.max(0, area.width - 1));
+        int y1 = cell(area.y + Math.max(0, area.height - 1));
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                collect(cells.get(key(cx, cy)), area, components, stamp, result);
+            }
+        }
+        collect(oversized, area, components, stamp, result);
+        return result;
+    }
+    
+    private static void collect(List<Entry> list, Rectangle area, boolean components, int stamp, List<Entry> result) {
+        if (list == null) {
+            return;
+        }
+        for (Entry entry : list) {
+            if ((entry.component != null) == components && entry.stamp != stamp && intersects(entry.box, area)) {
+                entry.stamp = stamp;
+                result.add(entry);
+            }
+        }
+    }
+    
+    /** Rectangle.intersects ignores zero-width boxes such as vertical wires. */
+    private static boolean intersects(Rectangle box, Rectangle area) {
+        return box.x <= area.x + area.width && area.x <= box.x + box.width
+                && box.y <= area.y + area.height && area.y <= box.y + box.height;
+    }
+    
+    private void setSegment(Entry entry) {
+        Rectangle source = entry.wire.getSource().getBounds();
+        Rectangle target = entry.wire.getTarget().getBounds();
+        entry.segment.setLine(source.x + source.width, source.y + source.height / 2f,
+                target.x, target.y + target.height / 2f);
+        entry.box.setBounds(entry.segment.getBounds());
+    }
+    
+    private void insert(Entry entry) {
+        int x0 = cell(entry.box.x);
+        int y0 = cell(entry.box.y);
+        int x1 = cell(entry.box.x + entry.box.width);
+        int y1 = cell(entry.box.y + entry.box.height);
+        if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > MAX_CELLS_PER_ENTRY) {
+            entry.inOversized = true;
+            oversized.add(entry);
+            return;
+        }
+        entry.inOversized = false;
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>(4)).add(entry);
+            }
+        }
+    }
+    
+    private void erase(Entry entry) {
+        if (entry.inOversized) {
+            oversized.remove(entry);
+            return;
+        }
+        int x0 = cell(entry.box.x);
+        int y0 = cell(entry.box.y);
+        int x1 = cell(entry.box.x + entry.box.width);
+        int y1 = cell(entry.box.y + entry.box.height);
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                Long key = key(cx, cy);
+                List<Entry> list = cells.get(key);
+                if (list != null) {
+                    list.remove(entry);
+                    if (list.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+    
+    private void detach(GateComponent component, ConnectionWire wire) {
+        List<ConnectionWire> wires = attachedWires.get(component);
+        if (wires != null) {
+            wires.remove(wire);
+            if (wires.isEmpty()) {
+                attachedWires.remove(component);
+            }
+        }
+    }
+    
+    private int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+    
+    private static Long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+}
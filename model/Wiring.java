@@ -0,0 +1,40 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Connects components the way the editor does.
+ *
+ * {@link ConnectionWire}'s constructor only records its two ends; the
+ * target's input list, which simulation reads, is a separate step. Code that
+ * builds models (file loaders, converters, the edit journal) goes through
+ * here so both halves always happen together. The caller still adds the
+ * returned wire to its {@link LogicGateModel} or {@link ModelIndex}.
+ *
+ * Neither overload checks the target's input capacity: these callers restore
+ * connections that already exist, such as the n-ary gates of an imported
+ * netlist, so every returned wire has a matching input. Limiting fan-in is
+ * left to the interactive editor.
+ */
+public final class Wiring {
+    
+    private Wiring() {
+    }
+    
+    /** Appends {@code source} to the inputs of {@code target} and returns the wire between them. */
+    public static ConnectionWire connect(GateComponent source, GateComponent target) {
+        target.getInputs().add(source);
+        return new ConnectionWire(source, target);
+    }
+    
+    /**
+     * Inserts {@code source} at {@code position} in the inputs of
+     * {@code target}, or at the end if the list is shorter, and returns the
+     * wire between them. Used to restore a connection exactly where it was.
+     */
+    public static ConnectionWire connect(GateComponent source, GateComponent target, int position) {
+        List<GateComponent> inputs = target.getInputs();
+        inputs.add(Math.min(position, inputs.size()), source);
+        return new ConnectionWire(source, target);
+    }
+}
@@ -0,0 +1,437 @@
+package simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import storage.BlifFile;
+import storage.CircuitFile;
+
+/**
+ * Applies a stream of input vectors to a combinational circuit and streams
+ * back the output states, without touching any GateComponent.
+ *
+ * Vectors are grouped into chunks of {@link #CHUNK_VECTORS}; inside a chunk 64
+ * vectors share one long per net and every gate is a single word operation.
+ * Chunks are evaluated on a fixed thread pool while the calling thread parses
+ * the next ones, and results are written in input order. At most a bounded
+ * window of chunks is in flight and chunk buffers are recycled, so memory is
+ * independent of the number of vectors.
+ *
+ * Input columns are the INPUT gates (HIGH_INPUT/LOW_INPUT components) in
+ * netlist order, output columns the OUTPUT gates in netlist order. Two
+ * encodings are supported:
+ * <ul>
+ * <li>CSV: one vector per line of {@code 0}/{@code 1} values separated by
+ *     commas or whitespace; blank lines and lines starting with {@code #}
+ *     are skipped, so a circuit without inputs reads no vectors;</li>
+ * <li>binary: one vector per {@code ceil(columns / 8)} bytes, column
+ *     {@code i} in bit {@code i % 8} of byte {@code i / 8}.</li>
+ * </ul>
+ */
+public final class BatchRunner implements AutoCloseable {
+    
+    /** 64-vector words per chunk. */
+    public static final int CHUNK_WORDS = 16;
+    
+    /** Vectors per chunk, the unit of work handed to a thread. */
+    public static final int CHUNK_VECTORS = CHUNK_WORDS * 64;
+    
+    private final CompiledCircuit circuit;
+    private final int[] inputSlots;
+    private final int[] outputSlots;
+    private final ExecutorService executor;
+    private final int window;
+    private final ThreadLocal<long[]> scratch;
+    
+    public BatchRunner(CompiledCircuit circuit) {
+        this(circuit, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * @param circuit a circuit compiled with {@link CompiledCircuit#compile};
+     *        it is only read, so several runners may share it
+     * @param threads number of evaluation threads
+     */
+    public BatchRunner(CompiledCircuit circuit, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.circuit = circuit;
+        this.inputSlots = slotsWithOp(circuit, GateOp.INPUT);
+        this.outputSlots = slotsWithOp(circuit, GateOp.OUTPUT);
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "batch-simulation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.window = threads * 2;
+        this.scratch = ThreadLocal.withInitial(() -> new long[circuit.size]);
+    }
+    
+    private static int[] slotsWithOp(CompiledCircuit circuit, int op) {
+        int[] slots = new int[circuit.size];
+        int count = 0;
+        for (int g = 0; g < circuit.size; g++) {
+            if (circuit.netlist.op(g) == op) {
+                slots[count++] = circuit.slotOf[g];
+            }
+        }
+        return Arrays.copyOf(slots, count);
+    }
+    
+    public int inputCount() {
+        return inputSlots.length;
+    }
+    
+    public int outputCount() {
+        return outputSlots.length;
+    }
+    
+    /**
+     * Reads CSV vectors until end of input and writes one CSV line of output
+     * states per vector. The writer is flushed, neither stream is closed.
+     *
+     * @return number of vectors simulated
+     */
+    public long runCsv(Reader in, Writer out) throws IOException {
+        CsvWriter writer = new CsvWriter(out, outputSlots.length);
+        long count = run(new CsvReader(in, inputSlots.length), writer);
+        writer.flush();
+        return count;
+    }
+    
+    /** Binary counterpart of {@link #runCsv}. */
+    public long runBinary(InputStream in, OutputStream out) throws IOException {
+        BinaryWriter writer = new BinaryWriter(out, outputSlots.length);
+        long count = run(new BinaryReader(in, inputSlots.length), writer);
+        writer.flush();
+        return count;
+    }
+    
+    private long run(ChunkReader reader, ChunkWriter writer) throws IOException {
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+        ArrayDeque<Chunk> free = new ArrayDeque<>();
+        long total = 0;
+        try {
+            while (true) {
+                Chunk chunk = free.isEmpty() ? new Chunk(inputSlots.length, outputSlots.length) : free.poll();
+                if (!reader.read(chunk)) {
+                    break;
+                }
+                pending.add(executor.submit(() -> evaluate(chunk)));
+                if (pending.size() >= window) {
+                    Chunk done = await(pending.poll());
+                    writer.write(done);
+                    total += done.vectors;
+                    free.add(done);
+                }
+            }
+            while (!pending.isEmpty()) {
+                Chunk done = await(pending.poll());
+                writer.write(done);
+                total += done.vectors;
+            }
+        } finally {
+            for (Future<Chunk> future : pending) {
+                future.cancel(false);
+            }
+        }
+        return total;
+    }
+    
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch simulation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Batch simulation failed", e.getCause());
+        }
+    }
+    
+    private Chunk evaluate(Chunk chunk) {
+        long[] words = scratch.get();
+        int inputs = inputSlots.length;
+        int outputs = outputSlots.length;
+        int used = (chunk.vectors + 63) >>> 6;
+        for (int w = 0; w < used; w++) {
+            for (int i = 0; i < inputs; i++) {
+                words[inputSlots[i]] = chunk.in[w * inputs + i];
+            }
+            circuit.evaluateWords(words, 0, circuit.size);
+            for (int o = 0; o < outputs; o++) {
+                chunk.out[w * outputs + o] = words[outputSlots[o]];
+            }
+        }
+        return chunk;
+    }
+    
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+    
+    /** Up to CHUNK_VECTORS vectors, bit-packed: word w, column c at [w * columns + c]. */
+    private static final class Chunk {
+        final long[] in;
+        final long[] out;
+        int vectors;
+        
+        Chunk(int inputs, int outputs) {
+            in = new long[CHUNK_WORDS * inputs];
+            out = new long[CHUNK_WORDS * outputs];
+        }
+    }
+    
+    private interface ChunkReader {
+        /** Fills the chunk with the next vectors; returns false at end of input. */
+        boolean read(Chunk chunk) throws IOException;
+    }
+    
+    private interface ChunkWriter {
+        void write(Chunk chunk) throws IOException;
+    }
+    
+    /** Character-level CSV parser; no per-line strings are created. */
+    private static final class CsvReader implements ChunkReader {
+        private final Reader in;
+        private final int columns;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+        private long line = 1;
+        
+        CsvReader(Reader in, int columns) {
+            this.in = in;
+            this.columns = columns;
+        }
+        
+        private int next() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+        
+        @Override
+        public boolean read(Chunk chunk) throws IOException {
+            Arrays.fill(chunk.in, 0L);
+            int vectors = 0;
+            while (vectors < CHUNK_VECTORS) {
+                int base = (vectors >>> 6) * columns;
+                long bit = 1L << vectors;
+                int column = 0;
+                int c = next();
+                while (c != -1 && c != '\n') {
+                    if (c == '#' && column == 0) {
+                        do {
+                            c = next();
+                        } while (c != -1 && c != '\n');
+                        break;
+                    }
+                    if (c == '0' || c == '1') {
+                        if (column == columns) {
+                            throw new IOException("Line " + line + ": more than " + columns + " values");
+                        }
+                        if (c == '1') {
+                            chunk.in[base + column] |= bit;
+                        }
+                        column++;
+                    } else if (c != ',' && c != ' ' && c != '\t' && c != '\r') {
+                        throw new IOException("Line " + line + ": unexpected character '" + (char) c + "'");
+                    }
+                    c = next();
+                }
+                line++;
+                if (column > 0) {
+                    if (column != columns) {
+                        throw new IOException("Line " + (line - 1) + ": expected " + columns
+                                + " values, found " + column);
+                    }
+                    vectors++;
+                }
+                if (c == -1) {
+                    break;
+                }
+            }
+            chunk.vectors = vectors;
+            return vectors > 0;
+        }
+    }
+    
+    private static final class CsvWriter implements ChunkWriter {
+        private final Writer out;
+        private final int columns;
+        private final char[] row;
+        
+        CsvWriter(Writer out, int columns) {
+            this.out = out;
+            this.columns = columns;
+            this.row = new char[Math.max(1, columns * 2)];
+            for (int c = 1; c < columns; c++) {
+                row[c * 2 - 1] = ',';
+            }
+            row[row.length - 1] = '\n';
+        }
+        
+        @Override
+        public void write(Chunk chunk) throws IOException {
+            for (int v = 0; v < chunk.vectors; v++) {
+                int base = (v >>> 6) * columns;
+                for (int c = 0; c < columns; c++) {
+                    row[c * 2] = (chunk.out[base + c] >>> v & 1) != 0 ? '1' : '0';
+                }
+                out.write(row);
+            }
+        }
+        
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+    
+    private static final class BinaryReader implements ChunkReader {
+        private final InputStream in;
+        private final int columns;
+        private final byte[] vector;
+        
+        BinaryReader(InputStream in, int columns) {
+            this.in = in;
+            this.columns = columns;
+            this.vector = new byte[(columns + 7) >>> 3];
+        }
+        
+        @Override
+        public boolean read(Chunk chunk) throws IOException {
+            Arrays.fill(chunk.in, 0L);
+            int vectors = 0;
+            while (vectors < CHUNK_VECTORS && vector.length > 0) {
+                int read = in.readNBytes(vector, 0, vector.length);
+                if (read == 0) {
+                    break;
+                }
+                if (read < vector.length) {
+                    throw new EOFException("Truncated vector " + (vectors + 1));
+                }
+                int base = (vectors >>> 6) * columns;
+                long bit = 1L << vectors;
+                for (int c = 0; c < columns; c++) {
+                    if ((vector[c >>> 3] >>> (c & 7) & 1) != 0) {
+                        chunk.in[base + c] |= bit;
+                    }
+                }
+                vectors++;
+            }
+            chunk.vectors = vectors;
+            return vectors > 0;
+        }
+    }
+    
+    private static final class BinaryWriter implements ChunkWriter {
+        private final OutputStream out;
+        private final int columns;
+        private final byte[] vector;
+        
+        BinaryWriter(OutputStream out, int columns) {
+            this.out = out;
+            this.columns = columns;
+            this.vector = new byte[(columns + 7) >>> 3];
+        }
+        
+        @Override
+        public void write(Chunk chunk) throws IOException {
+            for (int v = 0; v < chunk.vectors; v++) {
+                Arrays.fill(vector, (byte) 0);
+                int base = (v >>> 6) * columns;
+                for (int c = 0; c < columns; c++) {
+                    if ((chunk.out[base + c] >>> v & 1) != 0) {
+                        vector[c >>> 3] |= (byte) (1 << (c & 7));
+                    }
+                }
+                out.write(vector);
+            }
+        }
+        
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+    
+    /**
+     * Usage: {@code java simulation.BatchRunner circuit vectors [output]
+     * [--binary] [--threads n]}. The circuit is a saved binary or serialized
+     * model, or a {@code .blif} netlist; results go to standard output unless
+     * an output file is given.
+     */
+    public static void main(String[] args) throws Exception {
+        boolean binary = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String[] files = new String[3];
+        int fileCount = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--binary")) {
+                binary = true;
+            } else if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (fileCount < files.length) {
+                files[fileCount++] = args[i];
+            }
+        }
+        if (fileCount < 2) {
+            System.err.println("Usage: java simulation.BatchRunner circuit vectors [output] [--binary] [--threads n]");
+            System.exit(2);
+        }
+        
+        Path circuitPath = Paths.get(files[0]);
+        Netlist netlist;
+        if (files[0].endsWith(".blif")) {
+            netlist = BlifFile.read(circuitPath);
+        } else if (CircuitFile.isSerialized(circuitPath)) {
+            netlist = Netlist.fromModel(CircuitFile.load(circuitPath));
+        } else {
+            netlist = CircuitFile.read(circuitPath).toNetlist();
+        }
+        long start = System.nanoTime();
+        long count;
+        // Standard output is flushed by the run methods but never closed
+        try (OutputStream file = fileCount > 2 ? Files.newOutputStream(Paths.get(files[2])) : null;
+                BatchRunner runner = new BatchRunner(CompiledCircuit.compile(netlist), threads);
+                InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(files[1])), 1 << 16)) {
+            OutputStream out = new BufferedOutputStream(file != null ? file : System.out, 1 << 16);
+            if (binary) {
+                count = runner.runBinary(in, out);
+            } else {
+                count = runner.runCsv(new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII)),
+                        new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII)));
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.err.println(count + " vectors in " + millis + " ms");
+    }
+}
@@ -0,0 +1,231 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Word-level circuit where every net is a bus of 1 to 64 bits held in a long.
+ *
+ * Gates take inputs of one common width and evaluate all bits with a single
+ * bitwise operation, so a 64-bit datapath is one gate instead of 64.
+ * Splitters break a bus into single-bit nets (or a narrower slice) and
+ * mergers concatenate nets back into a bus, least significant part first.
+ * As with {@link HierarchicalCircuit}, cells are created after the nets they
+ * read, so creation order is the evaluation order.
+ */
+public final class BusCircuit {
+    
+    public static final int MAX_WIDTH = 64;
+    
+    /** Cell kinds beyond the {@link GateOp} opcodes. */
+    private static final int SPLIT = -1;
+    private static final int SLICE = -2;
+    private static final int MERGE = -3;
+    
+    private final int cellCount;
+    private final int[] kind;
+    private final int[] param;
+    private final int[] inStart;
+    private final int[] in;
+    private final int[] out;
+    private final int[] width;
+    private final long[] values;
+    
+    private BusCircuit(Builder b) {
+        this.cellCount = b.cellCount;
+        this.kind = Arrays.copyOf(b.kind, b.cellCount);
+        this.param = Arrays.copyOf(b.param, b.cellCount);
+        this.inStart = Arrays.copyOf(b.inStart, b.cellCount + 1);
+        this.inStart[b.cellCount] = b.edgeCount;
+        this.in = Arrays.copyOf(b.in, b.edgeCount);
+        this.out = Arrays.copyOf(b.out, b.cellCount);
+        this.width = Arrays.copyOf(b.width, b.netCount);
+        this.values = new long[b.netCount];
+    }
+    
+    public void evaluate() {
+        final long[] values = this.values;
+        for (int c = 0; c < cellCount; c++) {
+            int k = kind[c];
+            int from = inStart[c];
+            int to = inStart[c + 1];
+            switch (k) {
+                case GateOp.INPUT:
+                    break;
+                case SPLIT: {
+                    long bus = values[in[from]];
+                    int first = out[c];
+                    int bits = width[in[from]];
+                    for (int bit = 0; bit < bits; bit++) {
+                        values[first + bit] = bus >>> bit & 1L;
+                    }
+                    break;
+                }
+                case SLICE: {
+                    int net = out[c];
+                    values[net] = values[in[from]] >>> param[c] & mask(width[net]);
+                    break;
+                }
+                case MERGE: {
+                    long bus = 0;
+                    int shift = 0;
+                    for (int i = from; i < to; i++) {
+                        bus |= values[in[i]] << shift;
+                        shift += width[in[i]];
+                    }
+                    values[out[c]] = bus;
+                    break;
+                }
+                default: {
+                    int net = out[c];
+                    values[net] = CompiledCircuit.computeWord(k, from, to, in, values) & mask(width[net]);
+                    break;
+                }
+            }
+        }
+    }
+    
+    static long mask(int width) {
+        return width == 64 ? -1L : (1L << width) - 1;
+    }
+    
+    /** Sets an input bus; bits above its width are ignored. */
+    public void set(int net, long value) {
+        values[net] = value & mask(width[net]);
+    }
+    
+    public long get(int net) {
+        return values[net];
+    }
+    
+    public int width(int net) {
+        return width[net];
+    }
+    
+    public int netCount() {
+        return values.length;
+    }
+    
+    public int cellCount() {
+        return cellCount;
+    }
+    
+    /** Builds a bus circuit; every method returns the net(s) it creates. */
+    public static final class Builder {
+        
+        private int[] kind = new int[64];
+        private int[] param = new int[64];
+        private int[] inStart = new int[65];
+        private int[] in = new int[128];
+        private int[] out = new int[64];
+        private int[] width = new int[64];
+        private int cellCount;
+        private int edgeCount;
+        private int netCount;
+        
+        public int input(int busWidth) {
+            int net = newNets(1, busWidth);
+            addCell(GateOp.INPUT, 0, new int[0], net);
+            return net;
+        }
+        
+        /** Adds a gate over buses of equal width; the result has the same width. */
+        public int gate(int op, int... inputs) {
+            if (op == GateOp.INPUT) {
+                throw new IllegalArgumentException("Use input(width) to add inputs");
+            }
+            if (inputs.length == 0) {
+                throw new IllegalArgumentException(GateOp.name(op) + " gate needs at least one input");
+            }
+            int busWidth = widthOf(inputs[0]);
+            for (int input : inputs) {
+                if (widthOf(input) != busWidth) {
+                    throw new IllegalArgumentException("Bus width mismatch: " + busWidth + " and " + widthOf(input));
+                }
+            }
+            int net = newNets(1, busWidth);
+            addCell(op, 0, inputs, net);
+            return net;
+        }
+        
+        public int output(int source) {
+            return gate(GateOp.OUTPUT, source);
+        }
+        
+        /** Splits a bus into single-bit nets, least significant bit first. */
+        public int[] split(int bus) {
+            int bits = widthOf(bus);
+            int first = newNets(bits, 1);
+            addCell(SPLIT, 0, new int[] {bus}, first);
+            int[] nets = new int[bits];
+            for (int bit = 0; bit < bits; bit++) {
+                nets[bit] = first + bit;
+            }
+            return nets;
+        }
+        
+        /** Extracts {@code sliceWidth} bits starting at bit {@code offset}. */
+        public int slice(int bus, int offset, int sliceWidth) {
+            if (offset < 0 || sliceWidth < 1 || offset + sliceWidth > widthOf(bus)) {
+                throw new IllegalArgumentException("Slice [" + offset + ", " + (offset + sliceWidth)
+                        + ") outside bus of width " + widthOf(bus));
+            }
+            int net = newNets(1, sliceWidth);
+            addCell(SLICE, offset, new int[] {bus}, net);
+            return net;
+        }
+        
+        /** Concatenates nets into one bus, the first net in the lowest bits. */
+        public int merge(int... parts) {
+            int total = 0;
+            for (int part : parts) {
+                total += widthOf(part);
+            }
+            int net = newNets(1, total);
+            addCell(MERGE, 0, parts, net);
+            return net;
+        }
+        
+        public BusCircuit build() {
+            return new BusCircuit(this);
+        }
+        
+        private int widthOf(int net) {
+            if (net < 0 || net >= netCount) {
+                throw new IndexOutOfBoundsException("No net " + net);
+            }
+            return width[net];
+        }
+        
+        private int newNets(int count, int busWidth) {
+            if (busWidth < 1 || busWidth > MAX_WIDTH) {
+                throw new IllegalArgumentException("Bus width must be between 1 and " + MAX_WIDTH + ": " + busWidth);
+            }
+            int first = netCount;
+            netCount += count;
+            if (netCount > width.length) {
+                width = Arrays.copyOf(width, Math.max(netCount, width.length * 2));
+            }
+            Arrays.fill(width, first, netCount, busWidth);
+            return first;
+        }
+        
+        private void addCell(int k, int p, int[] inputs, int net) {
+            if (cellCount == kind.length) {
+                kind = Arrays.copyOf(kind, cellCount * 2);
+                param = Arrays.copyOf(param, cellCount * 2);
+                out = Arrays.copyOf(out, cellCount * 2);
+                inStart = Arrays.copyOf(inStart, cellCount * 2 + 1);
+            }
+            if (edgeCount + inputs.length > in.length) {
+                in = Arrays.copyOf(in, Math.max(edgeCount + inputs.length, in.length * 2));
+            }
+            kind[cellCount] = k;
+            param[cellCount] = p;
+            out[cellCount] = net;
+            inStart[cellCount] = edgeCount;
+            System.arraycopy(inputs, 0, in, edgeCount, inputs.length);
+            edgeCount += inputs.length;
+            cellCount++;
+        }
+    }
+}
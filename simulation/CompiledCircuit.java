@@ -0,0 +1,432 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import model.GateComponent;
+import model.LogicGateModel;
+
+/**
+ * Levelized, array-compiled form of a circuit.
+ *
+ * Compilation topologically sorts the netlist once and lays the gates out in
+ * level order ("slots"), so {@link #evaluate()} is a single linear pass over
+ * primitive arrays: every gate is evaluated exactly once no matter how many
+ * paths reach it, and there is no recursion, so arbitrarily deep circuits are
+ * safe. Gate numbers in the public API are always netlist (component) indices;
+ * slots are an internal detail.
+ */
+public final class CompiledCircuit {
+    
+    final Netlist netlist;
+    final int size;
+    /** Opcode per slot. */
+    final byte[] ops;
+    /** CSR input ranges per slot; entries are slot indices. */
+    final int[] inStart;
+    final int[] in;
+    /** Topological level per slot; sources and unwired gates are level 0. */
+    final int[] level;
+    /** Netlist index to slot, and back. */
+    final int[] slotOf;
+    final int[] netOf;
+    /** Current value per slot. */
+    final boolean[] values;
+    final int depth;
+    /** Netlist indices of gates with at least one input closing a feedback loop. */
+    final int[] feedbackGates;
+    
+    private CompiledCircuit(Netlist netlist, int[] order, int[] level, int depth, int[] feedbackGates) {
+        this.netlist = netlist;
+        this.size = netlist.size();
+        this.depth = depth;
+        this.feedbackGates = feedbackGates;
+        this.ops = new byte[size];
+        this.inStart = new int[size + 1];
+        this.in = new int[netlist.edgeCount()];
+        this.level = new int[size];
+        this.slotOf = new int[size];
+        this.netOf = order;
+        this.values = new boolean[size];
+        
+        for (int slot = 0; slot < size; slot++) {
+            slotOf[order[slot]] = slot;
+        }
+        int[] srcStart = netlist.inputStart();
+        int[] srcInputs = netlist.inputs();
+        int count = 0;
+        for (int slot = 0; slot < size; slot++) {
+            int g = order[slot];
+            ops[slot] = (byte) netlist.op(g);
+            this.level[slot] = level[g];
+            values[slot] = GateOp.isSource(ops[slot]) && netlist.initialState(g);
+            inStart[slot] = count;
+            for (int i = srcStart[g]; i < srcStart[g + 1]; i++) {
+                in[count++] = slotOf[srcInputs[i]];
+            }
+        }
+        inStart[size] = count;
+    }
+    
+    public static CompiledCircuit compile(LogicGateModel model) {
+        return compile(Netlist.fromModel(model));
+    }
+    
+    /**
+     * Compiles a netlist.
+     *
+     * @throws IllegalStateException if the wire graph contains a feedback loop;
+     *         use {@link #compileSequential} for such circuits
+     */
+    public static CompiledCircuit compile(Netlist netlist) {
+        int n = netlist.size();
+        int[] fanStart = new int[n + 1];
+        int[] fanout = fanout(netlist, fanStart);
+        
+        // Kahn's algorithm; level = longest path from any source.
+        int[] pending = new int[n];
+        int[] level = new int[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int g = 0; g < n; g++) {
+            pending[g] = netlist.inputCount(g);
+            if (pending[g] == 0) {
+                queue[tail++] = g;
+            }
+        }
+        int depth = 0;
+        while (head < tail) {
+            int g = queue[head++];
+            int next = level[g] + 1;
+            for (int i = fanStart[g]; i < fanStart[g + 1]; i++) {
+                int t = fanout[i];
+                if (level[t] < next) {
+                    level[t] = next;
+                }
+                if (--pending[t] == 0) {
+                    queue[tail++] = t;
+                    if (next > depth) {
+                        depth = next;
+                    }
+                }
+            }
+        }
+        if (tail != n) {
+            throw new IllegalStateException("Circuit contains a feedback loop through "
+                    + (n - tail) + " gate(s) and cannot be levelized");
+        }
+        return new CompiledCircuit(netlist, sortByLevel(level, depth), level, depth, new int[0]);
+    }
+    
+    /**
+     * Compiles a netlist that may contain feedback loops (latches, flip-flops,
+     * ring oscillators). A depth-first walk along the inputs finds the edges
+     * that close a cycle; the remaining graph is levelized as usual, so every
+     * non-feedback input of a gate lies in an earlier slot. Evaluate the result
+     * with a {@link SequentialSimulator}, which settles the loops.
+     */
+    public static CompiledCircuit compileSequential(LogicGateModel model) {
+        return compileSequential(Netlist.fromModel(model));
+    }
+    
+    public static CompiledCircuit compileSequential(Netlist netlist) {
+        int n = netlist.size();
+        int[] start = netlist.inputStart();
+        int[] inputs = netlist.inputs();
+        boolean[] feedback = new boolean[inputs.length];
+        byte[] state = new byte[n];
+        int[] cursor = new int[n];
+        int[] stack = new int[n];
+        int[] postorder = new int[n];
+        int done = 0;
+        for (int root = 0; root < n; root++) {
+            if (state[root] != 0) {
+                continue;
+            }
+            int sp = 0;
+            stack[sp++] = root;
+            state[root] = 1;
+            cursor[root] = start[root];
+            while (sp > 0) {
+                int g = stack[sp - 1];
+                if (cursor[g] < start[g + 1]) {
+                    int e = cursor[g]++;
+                    int source = inputs[e];
+                    if (state[source] == 0) {
+                        state[source] = 1;
+                        cursor[source] = start[source];
+                        stack[sp++] = source;
+                    } else if (state[source] == 1) {
+                        feedback[e] = true;
+                    }
+                } else {
+                    sp--;
+                    state[g] = 2;
+                    postorder[done++] = g;
+                }
+            }
+        }
+        
+        // Postorder is a topological order of the graph without feedback edges
+        int[] level = new int[n];
+        int depth = 0;
+        int[] loopGates = new int[n];
+        int loopCount = 0;
+        for (int k = 0; k < n; k++) {
+            int g = postorder[k];
+            boolean closesLoop = false;
+            for (int e = start[g]; e < start[g + 1]; e++) {
+                if (feedback[e]) {
+                    closesLoop = true;
+                } else if (level[inputs[e]] + 1 > level[g]) {
+                    level[g] = level[inputs[e]] + 1;
+                }
+            }
+            if (closesLoop) {
+                loopGates[loopCount++] = g;
+            }
+            if (level[g] > depth) {
+                depth = level[g];
+            }
+        }
+        Arrays.sort(loopGates, 0, loopCount);
+        return new CompiledCircuit(netlist, sortByLevel(level, depth), level, depth,
+                Arrays.copyOf(loopGates, loopCount));
+    }
+    
+    /**
+     * Returns a copy of this circuit with a different slot order, which must
+     * also be topological (every input before its gate). Values start from
+     * the netlist's initial states.
+     */
+    CompiledCircuit withOrder(int[] order) {
+        int[] levelOfGate = new int[size];
+        for (int g = 0; g < size; g++) {
+            levelOfGate[g] = level[slotOf[g]];
+        }
+        return new CompiledCircuit(netlist, order, levelOfGate, depth, feedbackGates);
+    }
+    
+    /** Builds the reverse (source to targets) CSR adjacency of a netlist. */
+    static int[] fanout(Netlist netlist, int[] fanStart) {
+        int n = netlist.size();
+        int[] srcStart = netlist.inputStart();
+        int[] srcInputs = netlist.inputs();
+        for (int e = 0; e < srcInputs.length; e++) {
+            fanStart[srcInputs[e] + 1]++;
+        }
+        for (int g = 0; g < n; g++) {
+            fanStart[g + 1] += fanStart[g];
+        }
+        int[] fill = new int[n];
+        System.arraycopy(fanStart, 0, fill, 0, n);
+        int[] fanout = new int[srcInputs.length];
+        for (int g = 0; g < n; g++) {
+            for (int i = srcStart[g]; i < srcStart[g + 1]; i++) {
+                fanout[fill[srcInputs[i]]++] = g;
+            }
+        }
+        return fanout;
+    }
+    
+    /** Stable counting sort of gate indices by level. */
+    static int[] sortByLevel(int[] level, int depth) {
+        int n = level.length;
+        int[] start = new int[depth + 2];
+        for (int g = 0; g < n; g++) {
+            start[level[g] + 1]++;
+        }
+        for (int l = 0; l <= depth; l++) {
+            start[l + 1] += start[l];
+        }
+        int[] order = new int[n];
+        for (int g = 0; g < n; g++) {
+            order[start[level[g]]++] = g;
+        }
+        return order;
+    }
+    
+    /** Evaluates every gate once, in level order. */
+    public void evaluate() {
+        evaluateSlots(0, size);
+    }
+    
+    /**
+     * Evaluates slots {@code [from, to)}. Callers must ensure every input of
+     * those slots lies before {@code from} or inside the range.
+     */
+    void evaluateSlots(int from, int to) {
+        final byte[] ops = this.ops;
+        final int[] inStart = this.inStart;
+        final int[] in = this.in;
+        final boolean[] values = this.values;
+        for (int s = from; s < to; s++) {
+            int op = ops[s];
+            if (op == GateOp.INPUT) {
+                continue;
+            }
+            values[s] = compute(op, inStart[s], inStart[s + 1], in, values);
+        }
+    }
+    
+    static boolean compute(int op, int from, int to, int[] in, boolean[] values) {
+        if (from == to) {
+            return op == GateOp.CONST_HIGH;
+        }
+        boolean v;
+        switch (op) {
+            case GateOp.OUTPUT:
+                return values[in[from]];
+            case GateOp.NOT:
+                return !values[in[from]];
+            case GateOp.AND:
+            case GateOp.NAND:
+                v = true;
+                for (int i = from; i < to && v; i++) {
+                    v = values[in[i]];
+                }
+                return op == GateOp.AND ? v : !v;
+            case GateOp.OR:
+            case GateOp.NOR:
+                v = false;
+                for (int i = from; i < to && !v; i++) {
+                    v = values[in[i]];
+                }
+                return op == GateOp.OR ? v : !v;
+            case GateOp.XOR:
+                v = false;
+                for (int i = from; i < to; i++) {
+                    v ^= values[in[i]];
+                }
+                return v;
+            default:
+                throw new IllegalStateException("Unknown opcode " + op);
+        }
+    }
+    
+    /**
+     * Bit-parallel form of {@link #evaluateSlots}: each long in {@code words}
+     * holds the value of one slot for 64 independent input vectors. Input
+     * slots must be filled in by the caller.
+     */
+    void evaluateWords(long[] words, int from, int to) {
+        final byte[] ops = this.ops;
+        final int[] inStart = this.inStart;
+        final int[] in = this.in;
+        for (int s = from; s < to; s++) {
+            int op = ops[s];
+            if (op == GateOp.INPUT) {
+                continue;
+            }
+            words[s] = computeWord(op, inStart[s], inStart[s + 1], in, words);
+        }
+    }
+    
+    static long computeWord(int op, int from, int to, int[] in, long[] words) {
+        if (from == to) {
+            return op == GateOp.CONST_HIGH ? -1L : 0L;
+        }
+        long v;
+        switch (op) {
+            case GateOp.OUTPUT:
+                return words[in[from]];
+            case GateOp.NOT:
+                return ~words[in[from]];
+            case GateOp.AND:
+            case GateOp.NAND:
+                v = -1L;
+                for (int i = from; i < to; i++) {
+                    v &= words[in[i]];
+                }
+                return op == GateOp.AND ? v : ~v;
+            case GateOp.OR:
+            case GateOp.NOR:
+                v = 0L;
+                for (int i = from; i < to; i++) {
+                    v |= words[in[i]];
+                }
+                return op == GateOp.OR ? v : ~v;
+            case GateOp.XOR:
+                v = 0L;
+                for (int i = from; i < to; i++) {
+                    v ^= words[in[i]];
+                }
+                return v;
+            default:
+                throw new IllegalStateException("Unknown opcode " + op);
+        }
+    }
+    
+    /** Copies the current state of every input component into the circuit. */
+    public void loadSources() {
+        if (!netlist.hasComponents()) {
+            return;
+        }
+        for (int s = 0; s < size; s++) {
+            if (ops[s] == GateOp.INPUT) {
+                values[s] = netlist.component(netOf[s]).getState();
+            }
+        }
+    }
+    
+    /** Sets the value of an input gate; takes effect on the next evaluation. */
+    public void setInput(int gate, boolean state) {
+        int slot = slotOf[gate];
+        if (ops[slot] != GateOp.INPUT) {
+            throw new IllegalArgumentException("Gate " + gate + " is not an input");
+        }
+        values[slot] = state;
+    }
+    
+    public boolean get(int gate) {
+        return values[slotOf[gate]];
+    }
+    
+    public int levelOf(int gate) {
+        return level[slotOf[gate]];
+    }
+    
+    /** Returns the number of levels above the sources. */
+    public int depth() {
+        return depth;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /** Returns true if the circuit was compiled with feedback loops. */
+    public boolean hasFeedback() {
+        return feedbackGates.length > 0;
+    }
+    
+    /** Returns the netlist indices of gates whose inputs close a feedback loop. */
+    public int[] feedbackGates() {
+        return feedbackGates.clone();
+    }
+    
+    public Netlist netlist() {
+        return netlist;
+    }
+    
+    /**
+     * Returns the value of every OUTPUT/BULB keyed by component id, in model
+     * order. Only available for circuits compiled from a model.
+     */
+    public Map<String, Boolean> outputStates() {
+        if (!netlist.hasComponents()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Boolean> states = new LinkedHashMap<>();
+        for (int g = 0; g < size; g++) {
+            if (netlist.op(g) == GateOp.OUTPUT) {
+                GateComponent component = netlist.component(g);
+                states.put(component.getId(), values[slotOf[g]]);
+            }
+        }
+        return states;
+    }
+}
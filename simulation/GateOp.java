@@ -0,0 +1,71 @@
+package simulation;
+
+import model.ComponentType;
+
+/**
+ * Integer opcodes used by the flat simulation arrays.
+ *
+ * Every {@link ComponentType} maps onto one opcode so the evaluation loops can
+ * switch on a small constant instead of dereferencing the enum per gate.
+ * Gates are n-ary over their connected inputs; a gate with no connected
+ * inputs outputs LOW, matching an unwired gate on the canvas. The constant
+ * opcodes have no component type of their own and only appear in netlists
+ * rewritten by {@link NetlistOptimizer}.
+ */
+public final class GateOp {
+    
+    /** HIGH_INPUT / LOW_INPUT: value is driven from outside the circuit. */
+    public static final int INPUT = 0;
+    /** OUTPUT / BULB: copies its single input. */
+    public static final int OUTPUT = 1;
+    public static final int NOT = 2;
+    public static final int AND = 3;
+    public static final int OR = 4;
+    public static final int NAND = 5;
+    public static final int NOR = 6;
+    public static final int XOR = 7;
+    /** Constant LOW, produced by the optimizer; has no inputs. */
+    public static final int CONST_LOW = 8;
+    /** Constant HIGH, produced by the optimizer; has no inputs. */
+    public static final int CONST_HIGH = 9;
+    
+    private static final String[] NAMES = {
+        "INPUT", "OUTPUT", "NOT", "AND", "OR", "NAND", "NOR", "XOR", "CONST_LOW", "CONST_HIGH"
+    };
+    
+    private GateOp() {
+    }
+    
+    public static int of(ComponentType type) {
+        switch (type) {
+            case HIGH_INPUT:
+            case LOW_INPUT:
+                return INPUT;
+            case OUTPUT:
+            case BULB:
+                return OUTPUT;
+            case NOT:
+                return NOT;
+            case AND:
+                return AND;
+            case OR:
+                return OR;
+            case NAND:
+                return NAND;
+            case NOR:
+                return NOR;
+            case XOR:
+                return XOR;
+            default:
+                throw new IllegalArgumentException("Unsupported component type: " + type);
+        }
+    }
+    
+    public static boolean isSource(int op) {
+        return op == INPUT;
+    }
+    
+    public static String name(int op) {
+        return op >= 0 && op < NAMES.length ? NAMES[op] : "OP" + op;
+    }
+}
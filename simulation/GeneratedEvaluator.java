@@ -0,0 +1,627 @@
+package simulation;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import model.LogicGateModel;
+
+/**
+ * Word-parallel evaluator that compiles a combinational circuit to JVM
+ * bytecode.
+ *
+ * Every gate becomes a few straight-line long operations on local variables,
+ * with no opcode switch and no branches, and the class is defined as a hidden
+ * class so the JIT can register-allocate across the whole circuit. HotSpot
+ * does not JIT methods over 8000 bytes of bytecode, so the gates are split in
+ * level order into static methods below that size; only values crossing a
+ * method boundary go through a scratch array. Circuits above
+ * {@link #MAX_GATES}, and circuits whose class the JVM rejects (a single
+ * gate too wide for one method), use the
+ * {@link CompiledCircuit#evaluateWords} interpreter instead.
+ *
+ * {@code evaluate(in, out)} takes one long per INPUT gate and produces one
+ * long per OUTPUT gate, both in netlist order, bit {@code k} of each word
+ * being an independent input vector. Generated classes are cached by circuit
+ * structure, so rebuilding an unchanged model (or any structurally identical
+ * circuit) reuses the class, while every edit yields a new one. Instances
+ * hold scratch state and are not thread-safe; use {@link #copy()} per thread.
+ */
+public final class GeneratedEvaluator {
+    
+    /** Largest circuit compiled to bytecode; larger ones are interpreted. */
+    public static final int MAX_GATES = 100_000;
+    
+    /** Bytecode budget per generated method, under HotSpot's 8000-byte JIT limit. */
+    static final int METHOD_CODE_LIMIT = 7_000;
+    
+    private static final int CACHE_SIZE = 32;
+    private static final Map<Structure, MethodHandle> CACHE = new LinkedHashMap<Structure, MethodHandle>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Structure, MethodHandle> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    
+    /** Implemented by the generated classes and by the interpreter fallback. */
+    public interface Kernel {
+        void evaluate(long[] in, long[] out);
+    }
+    
+    private final CompiledCircuit circuit;
+    private final MethodHandle constructor;
+    private final Kernel kernel;
+    private final int inputCount;
+    private final int outputCount;
+    
+    private GeneratedEvaluator(CompiledCircuit circuit, MethodHandle constructor, int inputCount, int outputCount) {
+        this.circuit = circuit;
+        this.constructor = constructor;
+        this.inputCount = inputCount;
+        this.outputCount = outputCount;
+        this.kernel = constructor != null ? instantiate(constructor) : new Interpreter(circuit);
+    }
+    
+    public static GeneratedEvaluator forModel(LogicGateModel model) {
+        return forNetlist(Netlist.fromModel(model));
+    }
+    
+    /**
+     * @throws IllegalStateException if the circuit has feedback loops
+     */
+    public static GeneratedEvaluator forNetlist(Netlist netlist) {
+        CompiledCircuit circuit = CompiledCircuit.compile(netlist);
+        int inputs = 0;
+        int outputs = 0;
+        for (int s = 0; s < circuit.size; s++) {
+            if (circuit.ops[s] == GateOp.INPUT) {
+                inputs++;
+            } else if (circuit.ops[s] == GateOp.OUTPUT) {
+                outputs++;
+            }
+        }
+        MethodHandle constructor = null;
+        if (circuit.size <= MAX_GATES) {
+            Structure key = new Structure(netlist);
+            synchronized (CACHE) {
+                constructor = CACHE.get(key);
+            }
+            if (constructor == null) {
+                try {
+                    constructor = define(new Emitter(circuit).emit());
+                } catch (LinkageError | IllegalStateException e) {
+                    // e.g. a single gate too wide for one method; interpret instead
+                    constructor = null;
+                }
+                if (constructor != null) {
+                    synchronized (CACHE) {
+                        CACHE.put(key, constructor);
+                    }
+                }
+            }
+        }
+        return new GeneratedEvaluator(circuit, constructor, inputs, outputs);
+    }
+    
+    /** Number of generated classes currently cached. */
+    public static int cachedClasses() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+    
+    /** Returns an independent evaluator for the same circuit, sharing the generated class. */
+    public GeneratedEvaluator copy() {
+        return new GeneratedEvaluator(circuit, constructor, inputCount, outputCount);
+    }
+    
+    /**
+     * Evaluates 64 input vectors at once.
+     *
+     * @param in one word per INPUT gate, in netlist order
+     * @param out receives one word per OUTPUT gate, in netlist order
+     */
+    public void evaluate(long[] in, long[] out) {
+        if (in.length < inputCount || out.length < outputCount) {
+            throw new IllegalArgumentException("Need " + inputCount + " input and " + outputCount + " output words");
+        }
+        kernel.evaluate(in, out);
+    }
+    
+    /** True if this circuit runs as generated bytecode rather than interpreted. */
+    public boolean isGenerated() {
+        return constructor != null;
+    }
+    
+    public int inputCount() {
+        return inputCount;
+    }
+    
+    public int outputCount() {
+        return outputCount;
+    }
+    
+    private static MethodHandle define(byte[] classBytes) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classBytes, true);
+            return lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Generated evaluator could not be defined", e);
+        }
+    }
+    
+    private static Kernel instantiate(MethodHandle constructor) {
+        try {
+            return (Kernel) constructor.invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Generated evaluator could not be instantiated", e);
+        }
+    }
+    
+    /** Fallback for circuits that cannot be generated. */
+    private static final class Interpreter implements Kernel {
+        private final CompiledCircuit circuit;
+        private final int[] inputSlots;
+        private final int[] outputSlots;
+        private final long[] words;
+        
+        Interpreter(CompiledCircuit circuit) {
+            this.circuit = circuit;
+            int[] inputs = new int[circuit.size];
+            int[] outputs = new int[circuit.size];
+            int inputCount = 0;
+            int outputCount = 0;
+            for (int g = 0; g < circuit.size; g++) {
+                int op = circuit.netlist.op(g);
+                if (op == GateOp.INPUT) {
+                    inputs[inputCount++] = circuit.slotOf[g];
+                } else if (op == GateOp.OUTPUT) {
+                    outputs[outputCount++] = circuit.slotOf[g];
+                }
+            }
+            this.inputSlots = Arrays.copyOf(inputs, inputCount);
+            this.outputSlots = Arrays.copyOf(outputs, outputCount);
+            this.words = new long[circuit.size];
+        }
+        
+        @Override
+        public void evaluate(long[] in, long[] out) {
+            for (int i = 0; i < inputSlots.length; i++) {
+                words[inputSlots[i]] = in[i];
+            }
+            circuit.evaluateWords(words, 0, circuit.size);
+            for (int o = 0; o < outputSlots.length; o++) {
+                out[o] = words[outputSlots[o]];
+            }
+        }
+    }
+    
+    /** Cache key: the gate opcodes and wiring, independent of component identity. */
+    private static final class Structure {
+        private final byte[] ops;
+        private final int[] inputStart;
+        private final int[] inputs;
+        private final int hash;
+        
+        Structure(Netlist netlist) {
+            this.ops = netlist.ops();
+            this.inputStart = netlist.inputStart();
+            this.inputs = netlist.inputs();
+            this.hash = (Arrays.hashCode(ops) * 31 + Arrays.hashCode(inputStart)) * 31 + Arrays.hashCode(inputs);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Structure)) {
+                return false;
+            }
+            Structure other = (Structure) o;
+            return hash == other.hash && Arrays.equals(ops, other.ops)
+                    && Arrays.equals(inputStart, other.inputStart) && Arrays.equals(inputs, other.inputs);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+    
+    /**
+     * Writes the class file. Layout of the generated class:
+     * <pre>
+     * final class GeneratedCircuit implements Kernel {
+     *     private final long[] v = new long[size];
+     *     public void evaluate(long[] in, long[] out) { m0(in, out, v); m1(in, out, v); ... }
+     *     private static void m0(long[] in, long[] out, long[] v) { long a = in[0]; ... }
+     * }
+     * </pre>
+     * The code has no branches, so no StackMapTable is needed.
+     */
+    private static final class Emitter {
+        
+        private static final String CLASS_NAME = "simulation/GeneratedCircuit";
+        private static final String KERNEL_NAME = "simulation/GeneratedEvaluator$Kernel";
+        private static final String CHUNK_DESCRIPTOR = "([J[J[J)V";
+        
+        // Local variables of the chunk methods
+        private static final int IN = 0;
+        private static final int OUT = 1;
+        private static final int SCRATCH = 2;
+        private static final int FIRST_LOCAL = 3;
+        
+        private final CompiledCircuit circuit;
+        private final ConstantPool pool = new ConstantPool();
+        private final int[] chunkOf;
+        private final boolean[] exported;
+        private final int[] portIndex;
+        private final int[] localOf;
+        private final int[] localStamp;
+        private int chunkCount;
+        
+        Emitter(CompiledCircuit circuit) {
+            this.circuit = circuit;
+            int n = circuit.size;
+            this.chunkOf = new int[n];
+            this.exported = new boolean[n];
+            this.portIndex = new int[n];
+            this.localOf = new int[n];
+            this.localStamp = new int[n];
+        }
+        
+        byte[] emit() {
+            int n = circuit.size;
+            int inputs = 0;
+            int outputs = 0;
+            // Port numbers follow netlist order, not slot order
+            for (int g = 0; g < n; g++) {
+                int op = circuit.netlist.op(g);
+                if (op == GateOp.INPUT) {
+                    portIndex[circuit.slotOf[g]] = inputs++;
+                } else if (op == GateOp.OUTPUT) {
+                    portIndex[circuit.slotOf[g]] = outputs++;
+                }
+            }
+            
+            // Pass 1: split slots into methods using an upper bound on their code size.
+            // Per input: import (aload, push, laload, store: <= 9 bytes) plus
+            // load and combine (<= 5); per gate: first load, invert, store, and
+            // the export and output stores (<= 4 + 3 + 4 + 9 + 9)
+            int size = 0;
+            chunkCount = 1;
+            for (int s = 0; s < n; s++) {
+                if (circuit.ops[s] == GateOp.INPUT) {
+                    chunkOf[s] = -1;
+                    continue;
+                }
+                int bound = 14 * (circuit.inStart[s + 1] - circuit.inStart[s]) + 29;
+                if (size + bound > METHOD_CODE_LIMIT && size > 0) {
+                    chunkCount++;
+                    size = 0;
+                }
+                chunkOf[s] = chunkCount - 1;
+                size += bound;
+            }
+            for (int s = 0; s < n; s++) {
+                for (int i = circuit.inStart[s]; i < circuit.inStart[s + 1]; i++) {
+                    int source = circuit.in[i];
+                    if (chunkOf[source] >= 0 && chunkOf[source] < chunkOf[s]) {
+                        exported[source] = true;
+                    }
+                }
+            }
+            
+            // Pass 2: emit
+            Bytes methods = new Bytes();
+            int methodCount = 2 + chunkCount;
+            constructor(methods);
+            evaluate(methods);
+            Arrays.fill(localStamp, -1);
+            int slot = 0;
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                Bytes code = new Bytes();
+                int nextLocal = FIRST_LOCAL;
+                while (slot < n && chunkOf[slot] <= chunk) {
+                    if (chunkOf[slot] == chunk) {
+                        nextLocal = gate(code, slot, chunk, nextLocal);
+                    }
+                    slot++;
+                }
+                code.u1(0xb1); // return
+                method(methods, 0x000A, "m" + chunk, CHUNK_DESCRIPTOR, 6, nextLocal, code);
+            }
+            
+            int thisClass = pool.classRef(CLASS_NAME);
+            int superClass = pool.classRef("java/lang/Object");
+            int kernel = pool.classRef(KERNEL_NAME);
+            int fieldName = pool.utf8("v");
+            int fieldType = pool.utf8("[J");
+            
+            Bytes file = new Bytes();
+            file.u4(0xCAFEBABE);
+            file.u2(0);
+            file.u2(52);
+            pool.writeTo(file);
+            file.u2(0x0031); // public final super
+            file.u2(thisClass);
+            file.u2(superClass);
+            file.u2(1);
+            file.u2(kernel);
+            file.u2(1);
+            file.u2(0x0012); // private final
+            file.u2(fieldName);
+            file.u2(fieldType);
+            file.u2(0);
+            file.u2(methodCount);
+            file.bytes(methods);
+            file.u2(0);
+            return file.toArray();
+        }
+        
+        private void constructor(Bytes methods) {
+            Bytes code = new Bytes();
+            code.u1(0x2a); // aload_0
+            code.u1(0xb7); // invokespecial Object.<init>
+            code.u2(pool.methodRef("java/lang/Object", "<init>", "()V"));
+            code.u1(0x2a);
+            pushInt(code, circuit.size);
+            code.u1(0xbc); // newarray long
+            code.u1(11);
+            code.u1(0xb5); // putfield v
+            code.u2(pool.fieldRef(CLASS_NAME, "v", "[J"));
+            code.u1(0xb1);
+            method(methods, 0x0001, "<init>", "()V", 3, 1, code);
+        }
+        
+        private void evaluate(Bytes methods) {
+            Bytes code = new Bytes();
+            code.u1(0x2a);
+            code.u1(0xb4); // getfield v
+            code.u2(pool.fieldRef(CLASS_NAME, "v", "[J"));
+            code.u1(0x4e); // astore_3
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                code.u1(0x2b); // aload_1
+                code.u1(0x2c); // aload_2
+                code.u1(0x2d); // aload_3
+                code.u1(0xb8); // invokestatic
+                code.u2(pool.methodRef(CLASS_NAME, "m" + chunk, CHUNK_DESCRIPTOR));
+            }
+            code.u1(0xb1);
+            method(methods, 0x0001, "evaluate", "([J[J)V", 3, 4, code);
+        }
+        
+        /** Emits one gate; returns the next free local variable. */
+        private int gate(Bytes code, int slot, int chunk, int nextLocal) {
+            int op = circuit.ops[slot];
+            int from = circuit.inStart[slot];
+            int to = circuit.inStart[slot + 1];
+            // Bring sources from other methods into locals first
+            for (int i = from; i < to; i++) {
+                int source = circuit.in[i];
+                if (localStamp[source] != chunk) {
+                    code.u1(chunkOf[source] < 0 ? 0x2a : 0x2c); // aload in / aload v
+                    pushInt(code, chunkOf[source] < 0 ? portIndex[source] : source);
+                    code.u1(0x2f); // laload
+                    nextLocal = bind(code, source, chunk, nextLocal);
+                }
+            }
+            if (from == to) {
+                if (op == GateOp.CONST_HIGH) {
+                    code.u1(0x02); // iconst_m1
+                    code.u1(0x85); // i2l
+                } else {
+                    code.u1(0x09); // lconst_0
+                }
+            } else {
+                int combine;
+                switch (op) {
+                    case GateOp.AND:
+                    case GateOp.NAND:
+                        combine = 0x7f; // land
+                        break;
+                    case GateOp.OR:
+                    case GateOp.NOR:
+                        combine = 0x81; // lor
+                        break;
+                    default:
+                        combine = 0x83; // lxor
+                        break;
+                }
+                load(code, localOf[circuit.in[from]]);
+                if (op != GateOp.OUTPUT && op != GateOp.NOT) {
+                    for (int i = from + 1; i < to; i++) {
+                        load(code, localOf[circuit.in[i]]);
+                        code.u1(combine);
+                    }
+                }
+                if (op == GateOp.NOT || op == GateOp.NAND || op == GateOp.NOR) {
+                    code.u1(0x02);
+                    code.u1(0x85);
+                    code.u1(0x83); // lxor -1
+                }
+            }
+            nextLocal = bind(code, slot, chunk, nextLocal);
+            if (exported[slot]) {
+                code.u1(0x2c); // aload v
+                pushInt(code, slot);
+                load(code, localOf[slot]);
+                code.u1(0x50); // lastore
+            }
+            if (op == GateOp.OUTPUT) {
+                code.u1(0x2b); // aload out
+                pushInt(code, portIndex[slot]);
+                load(code, localOf[slot]);
+                code.u1(0x50);
+            }
+            return nextLocal;
+        }
+        
+        /** Stores the long on the stack into a fresh local bound to the slot. */
+        private int bind(Bytes code, int slot, int chunk, int local) {
+            localOf[slot] = local;
+            localStamp[slot] = chunk;
+            if (local <= 3) {
+                code.u1(0x3f + local); // lstore_n
+            } else if (local <= 255) {
+                code.u1(0x37);
+                code.u1(local);
+            } else {
+                code.u1(0xc4); // wide
+                code.u1(0x37);
+                code.u2(local);
+            }
+            return local + 2;
+        }
+        
+        private static void load(Bytes code, int local) {
+            if (local <= 3) {
+                code.u1(0x1e + local); // lload_n
+            } else if (local <= 255) {
+                code.u1(0x16);
+                code.u1(local);
+            } else {
+                code.u1(0xc4);
+                code.u1(0x16);
+                code.u2(local);
+            }
+        }
+        
+        private void pushInt(Bytes code, int value) {
+            if (value >= -1 && value <= 5) {
+                code.u1(0x03 + value); // iconst_m1 .. iconst_5
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.u1(0x10);
+                code.u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                code.u1(0x11);
+                code.u2(value);
+            } else {
+                code.u1(0x13); // ldc_w
+                code.u2(pool.integer(value));
+            }
+        }
+        
+        private void method(Bytes methods, int access, String name, String descriptor,
+                int maxStack, int maxLocals, Bytes code) {
+            methods.u2(access);
+            methods.u2(pool.utf8(name));
+            methods.u2(pool.utf8(descriptor));
+            methods.u2(1);
+            methods.u2(pool.utf8("Code"));
+            methods.u4(12 + code.size());
+            methods.u2(maxStack);
+            methods.u2(maxLocals);
+            methods.u4(code.size());
+            methods.bytes(code);
+            methods.u2(0); // exception table
+            methods.u2(0); // attributes
+        }
+    }
+    
+    /** Deduplicating class-file constant pool. */
+    private static final class ConstantPool {
+        private final Bytes entries = new Bytes();
+        private final Map<String, Integer> indices = new HashMap<>();
+        private int count = 1;
+        
+        private int entry(String key, int tag, int a, int b, boolean twoOperands) {
+            Integer existing = indices.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            entries.u1(tag);
+            if (tag == 3) {
+                entries.u4(a);
+            } else {
+                entries.u2(a);
+                if (twoOperands) {
+                    entries.u2(b);
+                }
+            }
+            indices.put(key, count);
+            return count++;
+        }
+        
+        int utf8(String value) {
+            Integer existing = indices.get("U" + value);
+            if (existing != null) {
+                return existing;
+            }
+            byte[] bytes = value.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            entries.u1(1);
+            entries.u2(bytes.length);
+            for (byte b : bytes) {
+                entries.u1(b);
+            }
+            indices.put("U" + value, count);
+            return count++;
+        }
+        
+        int integer(int value) {
+            return entry("I" + value, 3, value, 0, false);
+        }
+        
+        int classRef(String name) {
+            return entry("C" + name, 7, utf8(name), 0, false);
+        }
+        
+        private int nameAndType(String name, String descriptor) {
+            return entry("N" + name + ":" + descriptor, 12, utf8(name), utf8(descriptor), true);
+        }
+        
+        int methodRef(String owner, String name, String descriptor) {
+            return entry("M" + owner + "." + name + descriptor, 10, classRef(owner), nameAndType(name, descriptor), true);
+        }
+        
+        int fieldRef(String owner, String name, String descriptor) {
+            return entry("F" + owner + "." + name + ":" + descriptor, 9, classRef(owner), nameAndType(name, descriptor), true);
+        }
+        
+        void writeTo(Bytes out) {
+            out.u2(count);
+            out.bytes(entries);
+        }
+    }
+    
+    /** Big-endian byte buffer. */
+    private static final class Bytes {
+        private byte[] data = new byte[256];
+        private int size;
+        
+        void u1(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = (byte) value;
+        }
+        
+        void u2(int value) {
+            u1(value >>> 8);
+            u1(value);
+        }
+        
+        void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+        
+        void bytes(Bytes other) {
+            if (size + other.size > data.length) {
+                data = Arrays.copyOf(data, Math.max(size + other.size, data.length * 2));
+            }
+            System.arraycopy(other.data, 0, data, size, other.size);
+            size += other.size;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        byte[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A circuit made of primitive gates and instances of shared
+ * {@link SubCircuitDefinition}s.
+ *
+ * Each instance is only a pin-mapping record: a definition index, its input
+ * nets and the first of its consecutive output nets. The definition's gates
+ * exist once, however many instances there are. Cells are created after the
+ * nets they read, so creation order is already topological and evaluation is
+ * one pass over the cells.
+ */
+public final class HierarchicalCircuit {
+    
+    private final int cellCount;
+    /** Opcode for primitive cells, {@code -1 - definition} for instances. */
+    private final int[] kind;
+    private final int[] inStart;
+    private final int[] in;
+    /** Net driven by a primitive, or first output net of an instance. */
+    private final int[] out;
+    private final SubCircuitDefinition[] definitions;
+    private final boolean[] values;
+    private final int[] inputNets;
+    private final int[] outputNets;
+    private final int instanceCount;
+    
+    private HierarchicalCircuit(Builder b) {
+        this.cellCount = b.cellCount;
+        this.kind = Arrays.copyOf(b.kind, b.cellCount);
+        this.inStart = Arrays.copyOf(b.inStart, b.cellCount + 1);
+        this.inStart[b.cellCount] = b.edgeCount;
+        this.in = Arrays.copyOf(b.in, b.edgeCount);
+        this.out = Arrays.copyOf(b.out, b.cellCount);
+        this.definitions = b.definitions.toArray(new SubCircuitDefinition[0]);
+        this.values = Arrays.copyOf(b.initial, b.netCount);
+        
+        int inputs = 0;
+        int outputs = 0;
+        int instances = 0;
+        for (int c = 0; c < cellCount; c++) {
+            if (kind[c] == GateOp.INPUT) {
+                inputs++;
+            } else if (kind[c] == GateOp.OUTPUT) {
+                outputs++;
+            } else if (kind[c] < 0) {
+                instances++;
+            }
+        }
+        this.instanceCount = instances;
+        this.inputNets = new int[inputs];
+        this.outputNets = new int[outputs];
+        inputs = 0;
+        outputs = 0;
+        for (int c = 0; c < cellCount; c++) {
+            if (kind[c] == GateOp.INPUT) {
+                inputNets[inputs++] = out[c];
+            } else if (kind[c] == GateOp.OUTPUT) {
+                outputNets[outputs++] = out[c];
+            }
+        }
+    }
+    
+    public void evaluate() {
+        final int[] kind = this.kind;
+        final int[] inStart = this.inStart;
+        final int[] in = this.in;
+        final int[] out = this.out;
+        final boolean[] values = this.values;
+        for (int c = 0; c < cellCount; c++) {
+            int k = kind[c];
+            if (k == GateOp.INPUT) {
+                continue;
+            }
+            if (k >= 0) {
+                values[out[c]] = CompiledCircuit.compute(k, inStart[c], inStart[c + 1], in, values);
+                continue;
+            }
+            SubCircuitDefinition definition = definitions[-1 - k];
+            long pattern = 0;
+            for (int i = inStart[c], bit = 0; i < inStart[c + 1]; i++, bit++) {
+                if (values[in[i]]) {
+                    pattern |= 1L << bit;
+                }
+            }
+            long result = definition.evaluate(pattern);
+            int first = out[c];
+            for (int o = 0; o < definition.outputCount(); o++) {
+                values[first + o] = (result >>> o & 1L) != 0;
+            }
+        }
+    }
+    
+    public void setInput(int net, boolean state) {
+        values[net] = state;
+    }
+    
+    public boolean get(int net) {
+        return values[net];
+    }
+    
+    public int netCount() {
+        return values.length;
+    }
+    
+    public int instanceCount() {
+        return instanceCount;
+    }
+    
+    /** Returns the number of primitive gates, excluding instances. */
+    public int primitiveCount() {
+        return cellCount - instanceCount;
+    }
+    
+    /** Returns the nets of INPUT gates, in creation order. */
+    public int[] inputNets() {
+        return inputNets.clone();
+    }
+    
+    /** Returns the nets of OUTPUT gates, in creation order. */
+    public int[] outputNets() {
+        return outputNets.clone();
+    }
+    
+    /** Builds a hierarchical circuit; every method returns the net(s) it creates. */
+    public static final class Builder {
+        
+        private int[] kind = new int[64];
+        private int[] inStart = new int[65];
+        private int[] in = new int[128];
+        private int[] out = new int[64];
+        private boolean[] initial = new boolean[64];
+        private final List<SubCircuitDefinition> definitions = new ArrayList<>();
+        private final Map<SubCircuitDefinition, Integer> definitionIndex = new IdentityHashMap<>();
+        private int cellCount;
+        private int edgeCount;
+        private int netCount;
+        
+        public int add(int op, int... inputs) {
+            int net = newNets(1);
+            addCell(op, inputs, net);
+            return net;
+        }
+        
+        /**
+         * Adds an instance whose input pins read the given nets.
+         *
+         * @return the nets driven by the definition's output pins, in pin order
+         */
+        public int[] addInstance(SubCircuitDefinition definition, int... inputs) {
+            if (inputs.length != definition.inputCount()) {
+                throw new IllegalArgumentException("Sub-circuit " + definition.getName() + " expects "
+                        + definition.inputCount() + " inputs, got " + inputs.length);
+            }
+            Integer index = definitionIndex.get(definition);
+            if (index == null) {
+                index = definitions.size();
+                definitions.add(definition);
+                definitionIndex.put(definition, index);
+            }
+            int first = newNets(definition.outputCount());
+            addCell(-1 - index, inputs, first);
+            int[] outputs = new int[definition.outputCount()];
+            for (int o = 0; o < outputs.length; o++) {
+                outputs[o] = first + o;
+            }
+            return outputs;
+        }
+        
+        public void setInitial(int net, boolean state) {
+            initial[net] = state;
+        }
+        
+        public HierarchicalCircuit build() {
+            return new HierarchicalCircuit(this);
+        }
+        
+        private int newNets(int count) {
+            int first = netCount;
+            netCount += count;
+            if (netCount > initial.length) {
+                initial = Arrays.copyOf(initial, Math.max(netCount, initial.length * 2));
+            }
+            return first;
+        }
+        
+        private void addCell(int k, int[] inputs, int net) {
+            for (int input : inputs) {
+                if (input < 0 || input >= net) {
+                    throw new IndexOutOfBoundsException("Input net " + input + " does not exist yet");
+                }
+            }
+            if (cellCount == kind.length) {
+                kind = Arrays.copyOf(kind, cellCount * 2);
+                out = Arrays.copyOf(out, cellCount * 2);
+                inStart = Arrays.copyOf(inStart, cellCount * 2 + 1);
+            }
+            if (edgeCount + inputs.length > in.length) {
+                in = Arrays.copyOf(in, Math.max(edgeCount + inputs.length, in.length * 2));
+            }
+            kind[cellCount] = k;
+            out[cellCount] = net;
+            inStart[cellCount] = edgeCount;
+            System.arraycopy(inputs, 0, in, edgeCount, inputs.length);
+            edgeCount += inputs.length;
+            cellCount++;
+        }
+    }
+}
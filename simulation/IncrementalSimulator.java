@@ -0,0 +1,281 @@
+package simulation;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import model.GateComponent;
+import model.LogicGateModel;
+
+/**
+ * Event-driven re-simulation on top of a {@link CompiledCircuit}.
+ *
+ * Keeps the fanout index (the reverse of {@code getInputs()}) and, when an
+ * input changes, re-evaluates only gates downstream of a value that actually
+ * changed. Pending gates are drained in slot (topological) order, so each gate
+ * is evaluated at most once per update and propagation stops as soon as a
+ * gate's output is unchanged. All work buffers are preallocated.
+ *
+ * Only acyclic circuits from {@link CompiledCircuit#compile} are accepted;
+ * circuits with feedback loops belong to {@link SequentialSimulator}.
+ */
+public final class IncrementalSimulator {
+    
+    private final CompiledCircuit circuit;
+    private final int[] fanStart;
+    private final int[] fanout;
+    private final Map<GateComponent, Integer> gateOf;
+    
+    // Min-heap of pending slots plus membership flags
+    private final int[] heap;
+    private final boolean[] queued;
+    private int heapSize;
+    
+    // Netlist indices of gates whose value changed in the last update
+    private final int[] changed;
+    private int changedCount;
+    private int evaluations;
+    private int depth;
+    
+    private SimulationMetrics metrics;
+    
+    public IncrementalSimulator(CompiledCircuit circuit) {
+        this(circuit, true);
+    }
+    
+    private IncrementalSimulator(CompiledCircuit circuit, boolean loadSources) {
+        if (circuit.hasFeedback()) {
+            throw new IllegalArgumentException("Circuit has feedback loops; use SequentialSimulator");
+        }
+        this.circuit = circuit;
+        int n = circuit.size;
+        this.fanStart = new int[n + 1];
+        this.fanout = new int[circuit.in.length];
+        for (int e = 0; e < circuit.in.length; e++) {
+            fanStart[circuit.in[e] + 1]++;
+        }
+        for (int s = 0; s < n; s++) {
+            fanStart[s + 1] += fanStart[s];
+        }
+        int[] fill = new int[n];
+        System.arraycopy(fanStart, 0, fill, 0, n);
+        for (int s = 0; s < n; s++) {
+            for (int i = circuit.inStart[s]; i < circuit.inStart[s + 1]; i++) {
+                fanout[fill[circuit.in[i]]++] = s;
+            }
+        }
+        this.heap = new int[n];
+        this.queued = new boolean[n];
+        this.changed = new int[n];
+        
+        Netlist netlist = circuit.netlist;
+        if (netlist.hasComponents()) {
+            gateOf = new IdentityHashMap<>(n * 2);
+            for (int g = 0; g < n; g++) {
+                gateOf.put(netlist.component(g), g);
+            }
+        } else {
+            gateOf = null;
+        }
+        if (loadSources) {
+            circuit.loadSources();
+            circuit.evaluate();
+        }
+    }
+    
+    /**
+     * Creates a simulator whose inputs are taken from {@code states} instead
+     * of the netlist's components, then evaluates the circuit once. Safe off
+     * the EDT: no {@link GateComponent} is read.
+     *
+     * @param inputGates netlist indices of INPUT gates
+     * @param states     value per entry of {@code inputGates}
+     */
+    public static IncrementalSimulator seeded(CompiledCircuit circuit, int[] inputGates, boolean[] states) {
+        IncrementalSimulator simulator = new IncrementalSimulator(circuit, false);
+        for (int i = 0; i < inputGates.length; i++) {
+            circuit.setInput(inputGates[i], states[i]);
+        }
+        circuit.evaluate();
+        return simulator;
+    }
+    
+    public static IncrementalSimulator forModel(LogicGateModel model) {
+        return new IncrementalSimulator(CompiledCircuit.compile(model));
+    }
+    
+    /**
+     * Sets an input component's state and propagates the change.
+     *
+     * @return true if any gate changed value
+     */
+    public boolean setState(GateComponent component, boolean state) {
+        Integer gate = gateOf == null ? null : gateOf.get(component);
+        if (gate == null) {
+            throw new IllegalArgumentException("Component is not part of this circuit");
+        }
+        component.setState(state);
+        return setInput(gate, state);
+    }
+    
+    /**
+     * Sets an input gate's value and propagates the change.
+     *
+     * @return true if any gate changed value
+     */
+    public boolean setInput(int gate, boolean state) {
+        changedCount = 0;
+        evaluations = 0;
+        depth = 0;
+        int slot = circuit.slotOf[gate];
+        if (circuit.ops[slot] != GateOp.INPUT) {
+            throw new IllegalArgumentException("Gate " + gate + " is not an input");
+        }
+        if (circuit.values[slot] == state) {
+            return false;
+        }
+        circuit.values[slot] = state;
+        changed[changedCount++] = gate;
+        enqueueFanout(slot);
+        if (metrics == null) {
+            propagate();
+        } else {
+            metrics.recordGate(gate, true);
+            propagateInstrumented();
+        }
+        return true;
+    }
+    
+    private void propagate() {
+        final boolean[] values = circuit.values;
+        final byte[] ops = circuit.ops;
+        final int[] inStart = circuit.inStart;
+        final int[] in = circuit.in;
+        while (heapSize > 0) {
+            int slot = poll();
+            queued[slot] = false;
+            evaluations++;
+            boolean v = CompiledCircuit.compute(ops[slot], inStart[slot], inStart[slot + 1], in, values);
+            if (v != values[slot]) {
+                values[slot] = v;
+                changed[changedCount++] = circuit.netOf[slot];
+                enqueueFanout(slot);
+            }
+        }
+    }
+    
+    /** Same as {@link #propagate()}, also counting per-gate work and the propagation depth. */
+    private void propagateInstrumented() {
+        final boolean[] values = circuit.values;
+        final byte[] ops = circuit.ops;
+        final int[] inStart = circuit.inStart;
+        final int[] in = circuit.in;
+        final int[] level = circuit.level;
+        final SimulationMetrics metrics = this.metrics;
+        while (heapSize > 0) {
+            int slot = poll();
+            queued[slot] = false;
+            evaluations++;
+            boolean v = CompiledCircuit.compute(ops[slot], inStart[slot], inStart[slot + 1], in, values);
+            boolean toggled = v != values[slot];
+            metrics.recordGate(circuit.netOf[slot], toggled);
+            if (toggled) {
+                values[slot] = v;
+                changed[changedCount++] = circuit.netOf[slot];
+                depth = Math.max(depth, level[slot]);
+                enqueueFanout(slot);
+            }
+        }
+    }
+    
+    private void enqueueFanout(int slot) {
+        for (int i = fanStart[slot]; i < fanStart[slot + 1]; i++) {
+            int target = fanout[i];
+            if (!queued[target]) {
+                queued[target] = true;
+                push(target);
+            }
+        }
+    }
+    
+    private void push(int slot) {
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= slot) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = slot;
+    }
+    
+    private int poll() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= last) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+    
+    public boolean get(int gate) {
+        return circuit.get(gate);
+    }
+    
+    /** Returns the number of gates whose value changed in the last update, including the input. */
+    public int changedCount() {
+        return changedCount;
+    }
+    
+    /** Returns the netlist index of the i-th gate changed by the last update. */
+    public int changedGate(int i) {
+        if (i >= changedCount) {
+            throw new IndexOutOfBoundsException("Changed gate " + i + " of " + changedCount);
+        }
+        return changed[i];
+    }
+    
+    /** Returns the number of gates re-evaluated by the last update. */
+    public int lastEvaluations() {
+        return evaluations;
+    }
+    
+    /**
+     * Returns the highest level reached by a changed gate in the last update;
+     * only tracked while metrics are attached.
+     */
+    public int lastDepth() {
+        return depth;
+    }
+    
+    /**
+     * Attaches metrics, binding them to this circuit, or detaches them with
+     * {@code null}. Without metrics the uninstrumented loop runs.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        if (metrics != null) {
+            metrics.bind(circuit.netlist);
+        }
+        this.metrics = metrics;
+    }
+    
+    public CompiledCircuit circuit() {
+        return circuit;
+    }
+    
+    public Map<String, Boolean> outputStates() {
+        return circuit.outputStates();
+    }
+}
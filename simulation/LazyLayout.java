@@ -0,0 +1,182 @@
+package simulation;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.GateComponent;
+import model.LogicGateModel;
+import model.Wiring;
+
+/**
+ * Automatic layout of an imported netlist whose components are created only
+ * when the region they sit in is first viewed.
+ *
+ * Gates are placed like {@link Netlist#toModel()}: one column per topological
+ * level, one row per gate within the level, in gate order. The layout itself
+ * is two int arrays computed on first use; {@link #materialize(Rectangle)}
+ * then creates {@link GateComponent}s for the gates in a viewport and adds
+ * them to {@link #model()}, together with every wire whose other end is
+ * already materialized. A multi-million-gate import therefore costs only the
+ * components the user actually scrolls past.
+ */
+public final class LazyLayout {
+    
+    private final Netlist netlist;
+    private final LogicGateModel model = new LogicGateModel();
+    private GateComponent[] components;
+    private int materialized;
+    
+    // Layout, computed on first use
+    private int[] column;
+    private int[] row;
+    private int[] columnStart;
+    private int[] byColumn;
+    private int[] fanStart;
+    private int[] fanout;
+    
+    public LazyLayout(Netlist netlist) {
+        this.netlist = netlist;
+    }
+    
+    private void layout() {
+        if (column != null) {
+            return;
+        }
+        int n = netlist.size();
+        CompiledCircuit levels = CompiledCircuit.compileSequential(netlist);
+        int columns = levels.depth() + 1;
+        column = new int[n];
+        row = new int[n];
+        columnStart = new int[columns + 1];
+        for (int g = 0; g < n; g++) {
+            column[g] = levels.levelOf(g);
+            row[g] = columnStart[column[g] + 1]++;
+        }
+        for (int c = 0; c < columns; c++) {
+            columnStart[c + 1] += columnStart[c];
+        }
+        byColumn = new int[n];
+        for (int g = 0; g < n; g++) {
+            byColumn[columnStart[column[g]] + row[g]] = g;
+        }
+        
+        fanStart = new int[n + 1];
+        for (int g = 0; g < n; g++) {
+            for (int i = 0; i < netlist.inputCount(g); i++) {
+                fanStart[netlist.input(g, i) + 1]++;
+            }
+        }
+        for (int g = 0; g < n; g++) {
+            fanStart[g + 1] += fanStart[g];
+        }
+        fanout = new int[fanStart[n]];
+        int[] fill = fanStart.clone();
+        for (int g = 0; g < n; g++) {
+            for (int i = 0; i < netlist.inputCount(g); i++) {
+                fanout[fill[netlist.input(g, i)]++] = g;
+            }
+        }
+        components = new GateComponent[n];
+    }
+    
+    /** Top-left corner assigned to a gate. */
+    public Point position(int gate) {
+        layout();
+        return new Point(column[gate] * Netlist.COLUMN_SPACING, row[gate] * Netlist.ROW_SPACING);
+    }
+    
+    /** Gates whose layout cell intersects {@code area}, column by column. */
+    public int[] gatesIn(Rectangle area) {
+        layout();
+        int columns = columnStart.length - 1;
+        int firstColumn = Math.max(0, Math.floorDiv(area.x, Netlist.COLUMN_SPACING));
+        int lastColumn = Math.min(columns - 1, Math.floorDiv(area.x + area.width - 1, Netlist.COLUMN_SPACING));
+        int firstRow = Math.max(0, Math.floorDiv(area.y, Netlist.ROW_SPACING));
+        int lastRow = Math.floorDiv(area.y + area.height - 1, Netlist.ROW_SPACING);
+        if (area.isEmpty() || lastRow < firstRow) {
+            return new int[0];
+        }
+        int count = 0;
+        for (int c = firstColumn; c <= lastColumn; c++) {
+            count += Math.max(0, Math.min(lastRow + 1, columnStart[c + 1] - columnStart[c]) - firstRow);
+        }
+        int[] result = new int[count];
+        int k = 0;
+        for (int c = firstColumn; c <= lastColumn; c++) {
+            int end = Math.min(columnStart[c] + lastRow + 1, columnStart[c + 1]);
+            for (int i = columnStart[c] + firstRow; i < end; i++) {
+                result[k++] = byColumn[i];
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Creates the components in {@code area} that do not exist yet and wires
+     * them to their materialized neighbours.
+     *
+     * @return the components created by this call
+     */
+    public List<GateComponent> materialize(Rectangle area) {
+        List<GateComponent> created = new ArrayList<>();
+        for (int g : gatesIn(area)) {
+            if (components[g] != null) {
+                continue;
+            }
+            Point at = position(g);
+            GateComponent component = new GateComponent(netlist.componentType(g), at.x, at.y);
+            if (netlist.inputCount(g) == 0) {
+                component.setState(netlist.initialState(g));
+            }
+            model.addComponent(component);
+            for (int i = 0; i < netlist.inputCount(g); i++) {
+                GateComponent source = components[netlist.input(g, i)];
+                if (source != null) {
+                    connect(source, component);
+                }
+            }
+            // Registered after the inputs so a self-loop is wired once
+            components[g] = component;
+            for (int i = fanStart[g]; i < fanStart[g + 1]; i++) {
+                GateComponent target = components[fanout[i]];
+                if (target != null) {
+                    connect(component, target);
+                }
+            }
+            materialized++;
+            created.add(component);
+        }
+        return created;
+    }
+    
+    private void connect(GateComponent source, GateComponent target) {
+        model.addWire(Wiring.connect(source, target));
+    }
+    
+    /** The component for a gate, or null if its region was never materialized. */
+    public GateComponent component(int gate) {
+        layout();
+        return components[gate];
+    }
+    
+    /** The model holding every component materialized so far. */
+    public LogicGateModel model() {
+        return model;
+    }
+    
+    public int materializedCount() {
+        return materialized;
+    }
+    
+    /** Bounds of the whole layout, for scroll bars. */
+    public Rectangle extent() {
+        layout();
+        int tallest = 0;
+        for (int c = 0; c + 1 < columnStart.length; c++) {
+            tallest = Math.max(tallest, columnStart[c + 1] - columnStart[c]);
+        }
+        return new Rectangle(0, 0, (columnStart.length - 1) * Netlist.COLUMN_SPACING, tallest * Netlist.ROW_SPACING);
+    }
+}
@@ -0,0 +1,319 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.CompactCircuitStore;
+import model.ComponentType;
+import model.GateComponent;
+import model.LogicGateModel;
+import model.Wiring;
+
+/**
+ * Flat, index-based description of a circuit.
+ *
+ * Gates are numbered 0..size-1 in the order they were added. Inputs are held in
+ * compressed-sparse-row form: the inputs of gate {@code g} are
+ * {@code inputs[inputStart[g] .. inputStart[g + 1])}. A netlist built from a
+ * {@link LogicGateModel} keeps the originating components so results can be
+ * mapped back; netlists built directly (generators, file loaders) do not.
+ */
+public final class Netlist {
+    
+    public static final int COLUMN_SPACING = 100;
+    public static final int ROW_SPACING = 60;
+    
+    private final byte[] ops;
+    private final int[] inputStart;
+    private final int[] inputs;
+    private final boolean[] initial;
+    private final GateComponent[] components;
+    
+    Netlist(byte[] ops, int[] inputStart, int[] inputs, boolean[] initial, GateComponent[] components) {
+        this.ops = ops;
+        this.inputStart = inputStart;
+        this.inputs = inputs;
+        this.initial = initial;
+        this.components = components;
+    }
+    
+    /**
+     * Wraps prebuilt CSR arrays without copying them, e.g. when decoding a
+     * circuit file. The arrays must not be modified afterwards.
+     */
+    public static Netlist of(byte[] ops, int[] inputStart, int[] inputs, boolean[] initial) {
+        int n = ops.length;
+        if (inputStart.length != n + 1 || initial.length != n || inputStart[n] != inputs.length) {
+            throw new IllegalArgumentException("Inconsistent netlist arrays");
+        }
+        for (int source : inputs) {
+            if (source < 0 || source >= n) {
+                throw new IllegalArgumentException("Input refers to missing gate " + source);
+            }
+        }
+        return new Netlist(ops, inputStart, inputs, initial, null);
+    }
+    
+    /**
+     * Snapshots the components and their input lists. Inputs that point at
+     * components no longer in the model are ignored, as if unwired.
+     */
+    public static Netlist fromModel(LogicGateModel model) {
+        List<GateComponent> list = model.getComponents();
+        int n = list.size();
+        GateComponent[] components = list.toArray(new GateComponent[n]);
+        Map<GateComponent, Integer> index = new IdentityHashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            index.put(components[i], i);
+        }
+        
+        byte[] ops = new byte[n];
+        boolean[] initial = new boolean[n];
+        int[] inputStart = new int[n + 1];
+        int[] inputs = new int[Math.max(16, n * 2)];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            GateComponent component = components[i];
+            ops[i] = (byte) GateOp.of(component.getType());
+            initial[i] = component.getState();
+            inputStart[i] = count;
+            for (GateComponent source : component.getInputs()) {
+                Integer s = index.get(source);
+                if (s == null) {
+                    continue;
+                }
+                if (count == inputs.length) {
+                    inputs = Arrays.copyOf(inputs, count * 2);
+                }
+                inputs[count++] = s;
+            }
+        }
+        inputStart[n] = count;
+        return new Netlist(ops, inputStart, Arrays.copyOf(inputs, count), initial, components);
+    }
+    
+    /**
+     * Materializes the netlist as an editable model. Components are laid out
+     * in columns by topological level, one row per gate within a level.
+     */
+    public LogicGateModel toModel() {
+        CompiledCircuit layout = CompiledCircuit.compileSequential(this);
+        int n = size();
+        int[] row = new int[layout.depth + 1];
+        int[] x = new int[n];
+        int[] y = new int[n];
+        for (int g = 0; g < n; g++) {
+            int level = layout.levelOf(g);
+            x[g] = level * COLUMN_SPACING;
+            y[g] = row[level]++ * ROW_SPACING;
+        }
+        return toModel(x, y);
+    }
+    
+    /** Materializes the netlist as an editable model with the given positions. */
+    public LogicGateModel toModel(int[] x, int[] y) {
+        int n = size();
+        LogicGateModel model = new LogicGateModel();
+        GateComponent[] created = new GateComponent[n];
+        for (int g = 0; g < n; g++) {
+            created[g] = new GateComponent(componentType(g), x[g], y[g]);
+            if (ops[g] == GateOp.INPUT || ops[g] == GateOp.CONST_LOW || ops[g] == GateOp.CONST_HIGH) {
+                created[g].setState(initialState(g));
+            }
+            model.addComponent(created[g]);
+        }
+        for (int g = 0; g < n; g++) {
+            GateComponent target = created[g];
+            for (int i = inputStart[g]; i < inputStart[g + 1]; i++) {
+                GateComponent source = created[inputs[i]];
+                model.addWire(Wiring.connect(source, target));
+            }
+        }
+        return model;
+    }
+    
+    /** Builds a netlist straight from a store's columns, without components. */
+    public static Netlist fromStore(CompactCircuitStore store) {
+        int n = store.size();
+        byte[] ops = new byte[n];
+        boolean[] initial = new boolean[n];
+        int[] inputStart = new int[n + 1];
+        int[] inputs = new int[store.edgeCount()];
+        int count = 0;
+        for (int g = 0; g < n; g++) {
+            ops[g] = (byte) GateOp.of(store.type(g));
+            initial[g] = store.state(g);
+            inputStart[g] = count;
+            for (int i = 0; i < store.inputCount(g); i++) {
+                inputs[count++] = store.input(g, i);
+            }
+        }
+        inputStart[n] = count;
+        return new Netlist(ops, inputStart, inputs, initial, null);
+    }
+    
+    /** Copies the netlist into a compact store with the given positions and a uniform gate size. */
+    public CompactCircuitStore toStore(int[] x, int[] y, int gateWidth, int gateHeight) {
+        int n = size();
+        CompactCircuitStore store = new CompactCircuitStore(n);
+        for (int g = 0; g < n; g++) {
+            store.addGate(componentType(g), x[g], y[g], gateWidth, gateHeight);
+            store.setState(g, initialState(g));
+        }
+        for (int g = 0; g < n; g++) {
+            for (int i = inputStart[g]; i < inputStart[g + 1]; i++) {
+                store.connect(inputs[i], g);
+            }
+        }
+        return store;
+    }
+    
+    /** Returns the component type a gate materializes as. */
+    public ComponentType componentType(int gate) {
+        if (components != null) {
+            return components[gate].getType();
+        }
+        switch (ops[gate]) {
+            case GateOp.INPUT:
+                return initial[gate] ? ComponentType.HIGH_INPUT : ComponentType.LOW_INPUT;
+            case GateOp.CONST_LOW:
+                return ComponentType.LOW_INPUT;
+            case GateOp.CONST_HIGH:
+                return ComponentType.HIGH_INPUT;
+            case GateOp.OUTPUT:
+                return ComponentType.OUTPUT;
+            case GateOp.NOT:
+                return ComponentType.NOT;
+            case GateOp.AND:
+                return ComponentType.AND;
+            case GateOp.OR:
+                return ComponentType.OR;
+            case GateOp.NAND:
+                return ComponentType.NAND;
+            case GateOp.NOR:
+                return ComponentType.NOR;
+            case GateOp.XOR:
+                return ComponentType.XOR;
+            default:
+                throw new IllegalStateException("No component type for opcode " + ops[gate]);
+        }
+    }
+    
+    public int size() {
+        return ops.length;
+    }
+    
+    public int op(int gate) {
+        return ops[gate];
+    }
+    
+    public int inputCount(int gate) {
+        return inputStart[gate + 1] - inputStart[gate];
+    }
+    
+    public int input(int gate, int i) {
+        return inputs[inputStart[gate] + i];
+    }
+    
+    public int edgeCount() {
+        return inputStart[ops.length];
+    }
+    
+    /** Returns the state an input starts in; constants report their fixed value. */
+    public boolean initialState(int gate) {
+        return ops[gate] == GateOp.CONST_HIGH || initial[gate] && ops[gate] != GateOp.CONST_LOW;
+    }
+    
+    /** Returns the originating component, or null for netlists not built from a model. */
+    public GateComponent component(int gate) {
+        return components == null ? null : components[gate];
+    }
+    
+    public boolean hasComponents() {
+        return components != null;
+    }
+    
+    byte[] ops() {
+        return ops;
+    }
+    
+    int[] inputStart() {
+        return inputStart;
+    }
+    
+    int[] inputs() {
+        return inputs;
+    }
+    
+    /**
+     * Incremental construction of a netlist without creating any
+     * {@link GateComponent} objects. Gate indices are returned by {@link #add}.
+     */
+    public static final class Builder {
+        
+        private byte[] ops = new byte[64];
+        private boolean[] initial = new boolean[64];
+        private int[] edgeSource = new int[128];
+        private int[] edgeTarget = new int[128];
+        private int gateCount;
+        private int edgeCount;
+        
+        public int add(int op) {
+            if (gateCount == ops.length) {
+                ops = Arrays.copyOf(ops, gateCount * 2);
+                initial = Arrays.copyOf(initial, gateCount * 2);
+            }
+            ops[gateCount] = (byte) op;
+            return gateCount++;
+        }
+        
+        public int add(int op, int... sources) {
+            int gate = add(op);
+            for (int source : sources) {
+                connect(source, gate);
+            }
+            return gate;
+        }
+        
+        public void connect(int source, int target) {
+            if (source < 0 || source >= gateCount || target < 0 || target >= gateCount) {
+                throw new IndexOutOfBoundsException("No gate " + (source < 0 || source >= gateCount ? source : target));
+            }
+            if (edgeCount == edgeSource.length) {
+                edgeSource = Arrays.copyOf(edgeSource, edgeCount * 2);
+                edgeTarget = Arrays.copyOf(edgeTarget, edgeCount * 2);
+            }
+            edgeSource[edgeCount] = source;
+            edgeTarget[edgeCount] = target;
+            edgeCount++;
+        }
+        
+        public void setInitial(int gate, boolean state) {
+            initial[gate] = state;
+        }
+        
+        public int size() {
+            return gateCount;
+        }
+        
+        /** Builds the netlist; inputs of each gate keep the order they were connected in. */
+        public Netlist build() {
+            int[] inputStart = new int[gateCount + 1];
+            for (int e = 0; e < edgeCount; e++) {
+                inputStart[edgeTarget[e] + 1]++;
+            }
+            for (int g = 0; g < gateCount; g++) {
+                inputStart[g + 1] += inputStart[g];
+            }
+            int[] fill = Arrays.copyOf(inputStart, gateCount);
+            int[] inputs = new int[edgeCount];
+            for (int e = 0; e < edgeCount; e++) {
+                inputs[fill[edgeTarget[e]]++] = edgeSource[e];
+            }
+            return new Netlist(Arrays.copyOf(ops, gateCount), inputStart, inputs,
+                    Arrays.copyOf(initial, gateCount), null);
+        }
+    }
+}
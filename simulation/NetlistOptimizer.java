@@ -0,0 +1,380 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Produces a reduced netlist for simulation; the source netlist and the
+ * editable model it came from are never modified.
+ *
+ * Three rewrites run in one topological pass plus a sweep:
+ * <ul>
+ * <li>constant folding through the AND/OR/NAND/NOR/XOR/NOT semantics,
+ *     including identities such as {@code x AND x = x}, {@code x XOR x = 0}
+ *     and {@code NOT NOT x = x};</li>
+ * <li>hash-consing, so structurally identical gates (same op, same inputs
+ *     in any order) become one gate;</li>
+ * <li>dead-gate elimination of every cone that reaches no OUTPUT.</li>
+ * </ul>
+ * INPUT gates listed as variable stay inputs; every other INPUT is treated as
+ * a constant with its current state, which is how HIGH_INPUT/LOW_INPUT
+ * components that are never toggled get folded away. Re-run the optimizer
+ * if a folded input changes.
+ */
+public final class NetlistOptimizer {
+    
+    /** Literal for a gate folded to constant LOW. */
+    static final int LOW = -1;
+    /** Literal for a gate folded to constant HIGH. */
+    static final int HIGH = -2;
+    
+    private NetlistOptimizer() {
+    }
+    
+    /** Result of an optimization: the reduced netlist and the mapping into it. */
+    public static final class Result {
+        private final Netlist netlist;
+        private final int[] gateOf;
+        private final int originalSize;
+        
+        Result(Netlist netlist, int[] gateOf, int originalSize) {
+            this.netlist = netlist;
+            this.gateOf = gateOf;
+            this.originalSize = originalSize;
+        }
+        
+        public Netlist netlist() {
+            return netlist;
+        }
+        
+        /**
+         * Returns the gate in the reduced netlist computing an original gate's
+         * value, or -1 if the gate was folded to a constant or pruned.
+         * OUTPUT and variable INPUT gates always map to a gate.
+         */
+        public int gateFor(int original) {
+            return Math.max(-1, gateOf[original]);
+        }
+        
+        public int originalSize() {
+            return originalSize;
+        }
+        
+        public int removedGates() {
+            return originalSize - netlist.size();
+        }
+    }
+    
+    /** Optimizes with every INPUT gate kept as a variable. */
+    public static Result optimize(Netlist netlist) {
+        BitSet all = new BitSet(netlist.size());
+        for (int g = 0; g < netlist.size(); g++) {
+            if (netlist.op(g) == GateOp.INPUT) {
+                all.set(g);
+            }
+        }
+        return optimize(netlist, all);
+    }
+    
+    /**
+     * @param variableInputs original indices of the INPUT gates that may
+     *        change; all other inputs are folded as constants
+     * @throws IllegalStateException if the netlist has feedback loops
+     */
+    public static Result optimize(Netlist netlist, BitSet variableInputs) {
+        int n = netlist.size();
+        CompiledCircuit order = CompiledCircuit.compile(netlist);
+        Nodes nodes = new Nodes(n);
+        int[] literal = new int[n];
+        int[] scratch = new int[16];
+        
+        for (int slot = 0; slot < n; slot++) {
+            int g = order.netOf[slot];
+            int op = netlist.op(g);
+            int count = netlist.inputCount(g);
+            if (scratch.length < count) {
+                scratch = new int[count * 2];
+            }
+            for (int i = 0; i < count; i++) {
+                scratch[i] = literal[netlist.input(g, i)];
+            }
+            switch (op) {
+                case GateOp.INPUT:
+                    literal[g] = variableInputs.get(g) ? nodes.add(GateOp.INPUT, scratch, 0, g, true, netlist.initialState(g))
+                            : constant(netlist.initialState(g));
+                    break;
+                case GateOp.CONST_LOW:
+                case GateOp.CONST_HIGH:
+                    literal[g] = constant(op == GateOp.CONST_HIGH);
+                    break;
+                case GateOp.OUTPUT: {
+                    int source = count == 0 ? LOW : scratch[0];
+                    if (source < 0) {
+                        source = nodes.constantNode(source == HIGH, g);
+                    }
+                    scratch[0] = source;
+                    literal[g] = nodes.add(GateOp.OUTPUT, scratch, 1, g, true, false);
+                    break;
+                }
+                default:
+                    literal[g] = count == 0 ? LOW : fold(op, scratch, count, nodes, g);
+                    break;
+            }
+        }
+        return nodes.compact(literal, n);
+    }
+    
+    private static int constant(boolean value) {
+        return value ? HIGH : LOW;
+    }
+    
+    private static int fold(int op, int[] in, int count, Nodes nodes, int origin) {
+        switch (op) {
+            case GateOp.NOT:
+                return not(in[0], nodes, origin);
+            case GateOp.AND:
+            case GateOp.NAND: {
+                boolean invert = op == GateOp.NAND;
+                int size = 0;
+                for (int i = 0; i < count; i++) {
+                    if (in[i] == LOW) {
+                        return constant(invert);
+                    }
+                    if (in[i] != HIGH) {
+                        in[size++] = in[i];
+                    }
+                }
+                size = dedupe(in, size, false);
+                return combine(GateOp.AND, in, size, constant(!invert), invert, nodes, origin);
+            }
+            case GateOp.OR:
+            case GateOp.NOR: {
+                boolean invert = op == GateOp.NOR;
+                int size = 0;
+                for (int i = 0; i < count; i++) {
+                    if (in[i] == HIGH) {
+                        return constant(!invert);
+                    }
+                    if (in[i] != LOW) {
+                        in[size++] = in[i];
+                    }
+                }
+                size = dedupe(in, size, false);
+                return combine(GateOp.OR, in, size, constant(invert), invert, nodes, origin);
+            }
+            case GateOp.XOR: {
+                boolean parity = false;
+                int size = 0;
+                for (int i = 0; i < count; i++) {
+                    if (in[i] == HIGH) {
+                        parity = !parity;
+                    } else if (in[i] != LOW) {
+                        in[size++] = in[i];
+                    }
+                }
+                size = dedupe(in, size, true);
+                return combine(GateOp.XOR, in, size, constant(parity), parity, nodes, origin);
+            }
+            default:
+                throw new IllegalStateException("Unknown opcode " + op);
+        }
+    }
+    
+    /**
+     * Builds {@code op(in)} optionally inverted, where {@code empty} is the
+     * literal to use when no variable inputs remain.
+     */
+    private static int combine(int op, int[] in, int size, int empty, boolean invert, Nodes nodes, int origin) {
+        if (size == 0) {
+            return empty;
+        }
+        int value = size == 1 ? in[0] : nodes.add(op, in, size, origin, false, false);
+        return invert ? not(value, nodes, origin) : value;
+    }
+    
+    private static int not(int value, Nodes nodes, int origin) {
+        if (value < 0) {
+            return value == HIGH ? LOW : HIGH;
+        }
+        if (nodes.op(value) == GateOp.NOT) {
+            return nodes.input(value, 0);
+        }
+        return nodes.add(GateOp.NOT, new int[] {value}, 1, origin, false, false);
+    }
+    
+    /** Sorts and removes duplicate inputs; for XOR, pairs cancel instead. */
+    private static int dedupe(int[] in, int size, boolean cancelPairs) {
+        Arrays.sort(in, 0, size);
+        int out = 0;
+        for (int i = 0; i < size; i++) {
+            if (out > 0 && in[out - 1] == in[i]) {
+                if (cancelPairs) {
+                    out--;
+                }
+                continue;
+            }
+            in[out++] = in[i];
+        }
+        return out;
+    }
+    
+    /** Growable, hash-consed node store for the rewritten circuit. */
+    private static final class Nodes {
+        
+        private int[] op;
+        private int[] inStart;
+        private int[] in;
+        private int[] origin;
+        private boolean[] root;
+        private boolean[] initial;
+        private int size;
+        private int edges;
+        private final Map<Key, Integer> unique = new HashMap<>();
+        private final int[] constants = {-1, -1};
+        
+        Nodes(int capacity) {
+            capacity = Math.max(16, capacity);
+            op = new int[capacity];
+            inStart = new int[capacity + 1];
+            in = new int[capacity * 2];
+            origin = new int[capacity];
+            root = new boolean[capacity];
+            initial = new boolean[capacity];
+        }
+        
+        int op(int node) {
+            return op[node];
+        }
+        
+        int input(int node, int i) {
+            return in[inStart[node] + i];
+        }
+        
+        int constantNode(boolean value, int from) {
+            int index = value ? 1 : 0;
+            if (constants[index] < 0) {
+                constants[index] = add(value ? GateOp.CONST_HIGH : GateOp.CONST_LOW, new int[0], 0, from, false, false);
+            }
+            return constants[index];
+        }
+        
+        /**
+         * Adds a node, or returns the existing identical one. Roots (inputs
+         * and outputs) are never merged and survive dead-gate elimination.
+         */
+        int add(int nodeOp, int[] inputs, int count, int from, boolean isRoot, boolean state) {
+            Key key = null;
+            if (!isRoot) {
+                key = new Key(nodeOp, Arrays.copyOf(inputs, count));
+                Integer existing = unique.get(key);
+                if (existing != null) {
+                    return existing;
+                }
+            }
+            if (size == op.length) {
+                int capacity = size * 2;
+                op = Arrays.copyOf(op, capacity);
+                inStart = Arrays.copyOf(inStart, capacity + 1);
+                origin = Arrays.copyOf(origin, capacity);
+                root = Arrays.copyOf(root, capacity);
+                initial = Arrays.copyOf(initial, capacity);
+            }
+            if (edges + count > in.length) {
+                in = Arrays.copyOf(in, Math.max(edges + count, in.length * 2));
+            }
+            op[size] = nodeOp;
+            origin[size] = from;
+            root[size] = isRoot;
+            initial[size] = state;
+            inStart[size] = edges;
+            System.arraycopy(inputs, 0, in, edges, count);
+            edges += count;
+            inStart[size + 1] = edges;
+            if (key != null) {
+                unique.put(key, size);
+            }
+            return size++;
+        }
+        
+        /** Drops nodes no root depends on and emits them ordered by originating gate. */
+        Result compact(int[] literal, int originalSize) {
+            boolean[] live = new boolean[size];
+            int[] stack = new int[size];
+            int sp = 0;
+            for (int v = 0; v < size; v++) {
+                if (root[v]) {
+                    live[v] = true;
+                    stack[sp++] = v;
+                }
+            }
+            while (sp > 0) {
+                int v = stack[--sp];
+                for (int i = inStart[v]; i < inStart[v + 1]; i++) {
+                    int u = in[i];
+                    if (!live[u]) {
+                        live[u] = true;
+                        stack[sp++] = u;
+                    }
+                }
+            }
+            
+            // Order by originating gate so inputs and outputs keep their relative order
+            Integer[] kept = new Integer[size];
+            int count = 0;
+            for (int v = 0; v < size; v++) {
+                if (live[v]) {
+                    kept[count++] = v;
+                }
+            }
+            Arrays.sort(kept, 0, count, (a, b) -> origin[a] != origin[b]
+                    ? Integer.compare(origin[a], origin[b]) : Integer.compare(a, b));
+            int[] newIndex = new int[size];
+            Arrays.fill(newIndex, -1);
+            Netlist.Builder builder = new Netlist.Builder();
+            for (int k = 0; k < count; k++) {
+                int v = kept[k];
+                newIndex[v] = builder.add(op[v]);
+                builder.setInitial(newIndex[v], initial[v]);
+            }
+            for (int k = 0; k < count; k++) {
+                int v = kept[k];
+                for (int i = inStart[v]; i < inStart[v + 1]; i++) {
+                    builder.connect(newIndex[in[i]], newIndex[v]);
+                }
+            }
+            int[] gateOf = new int[originalSize];
+            for (int g = 0; g < originalSize; g++) {
+                gateOf[g] = literal[g] < 0 ? literal[g] : newIndex[literal[g]];
+            }
+            return new Result(builder.build(), gateOf, originalSize);
+        }
+    }
+    
+    private static final class Key {
+        final int op;
+        final int[] inputs;
+        final int hash;
+        
+        Key(int op, int[] inputs) {
+            this.op = op;
+            this.inputs = inputs;
+            this.hash = 31 * op + Arrays.hashCode(inputs);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return op == other.op && Arrays.equals(inputs, other.inputs);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import model.LogicGateModel;
+
+/**
+ * Multi-threaded full evaluation of a combinational circuit.
+ *
+ * The wire graph is split into connected components (union-find over the
+ * inputs) and the circuit is recompiled so that every component occupies a
+ * contiguous run of slots, in level order inside the run. Components share
+ * nothing, so they are evaluated as independent ForkJoin tasks; small ones
+ * are batched into runs of about {@link #GRAIN} slots. Inside a large
+ * component each level is a barrier: levels wider than two grains are split
+ * into grain-sized slot ranges evaluated in parallel, narrower ones run
+ * inline. Each task writes only its own contiguous slot range, so threads
+ * touch disjoint stretches of the value array apart from range edges.
+ *
+ * Every gate still sees exactly the inputs the sequential
+ * {@link CompiledCircuit#evaluate()} would give it, so results are identical.
+ */
+public final class ParallelEvaluator {
+    
+    /** Slots per task; large enough to amortize task overhead. */
+    public static final int GRAIN = 4096;
+    
+    private final CompiledCircuit circuit;
+    private final ForkJoinPool pool;
+    private final int partitionCount;
+    private final int largestPartition;
+    // Units of work: batches of small partitions and large partitions with level bounds
+    private final int[] batchStart;
+    private final int[] batchEnd;
+    private final List<int[]> largeLevels = new ArrayList<>();
+    
+    public ParallelEvaluator(CompiledCircuit compiled) {
+        this(compiled, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * @param compiled a circuit from {@link CompiledCircuit#compile}; it is
+     *        re-slotted into a private copy, see {@link #circuit()}
+     * @throws IllegalArgumentException if the circuit has feedback loops,
+     *         whose inputs would be read while another thread writes them
+     */
+    public ParallelEvaluator(CompiledCircuit compiled, ForkJoinPool pool) {
+        if (compiled.hasFeedback()) {
+            throw new IllegalArgumentException("Circuit has feedback loops; use SequentialSimulator");
+        }
+        this.pool = pool;
+        int n = compiled.size;
+        Netlist netlist = compiled.netlist;
+        
+        // Union-find over wires, with path halving
+        int[] parent = new int[n];
+        for (int g = 0; g < n; g++) {
+            parent[g] = g;
+        }
+        for (int g = 0; g < n; g++) {
+            for (int i = 0; i < netlist.inputCount(g); i++) {
+                int a = find(parent, g);
+                int b = find(parent, netlist.input(g, i));
+                if (a != b) {
+                    parent[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+        // Partitions numbered by their lowest gate
+        int[] partitionOf = new int[n];
+        int[] rootPartition = new int[n];
+        int count = 0;
+        for (int g = 0; g < n; g++) {
+            int root = find(parent, g);
+            if (root == g) {
+                rootPartition[g] = count++;
+            }
+            partitionOf[g] = rootPartition[root];
+        }
+        this.partitionCount = count;
+        
+        // Stable sort of the level order by partition: partition-major, level-minor
+        int[] start = new int[count + 1];
+        for (int g = 0; g < n; g++) {
+            start[partitionOf[g] + 1]++;
+        }
+        for (int p = 0; p < count; p++) {
+            start[p + 1] += start[p];
+        }
+        int[] bounds = start.clone();
+        int[] order = new int[n];
+        for (int slot = 0; slot < n; slot++) {
+            int g = compiled.netOf[slot];
+            order[bounds[partitionOf[g]]++] = g;
+        }
+        this.circuit = compiled.withOrder(order);
+        
+        // Plan the work units
+        int largest = 0;
+        List<int[]> batches = new ArrayList<>();
+        int batchFrom = -1;
+        for (int p = 0; p < count; p++) {
+            int from = start[p];
+            int to = start[p + 1];
+            largest = Math.max(largest, to - from);
+            if (to - from >= 2 * GRAIN) {
+                if (batchFrom >= 0) {
+                    batches.add(new int[] {batchFrom, from});
+                    batchFrom = -1;
+                }
+                largeLevels.add(levelBounds(from, to));
+            } else {
+                if (batchFrom < 0) {
+                    batchFrom = from;
+                }
+                if (to - batchFrom >= GRAIN) {
+                    batches.add(new int[] {batchFrom, to});
+                    batchFrom = -1;
+                }
+            }
+        }
+        if (batchFrom >= 0) {
+            batches.add(new int[] {batchFrom, n});
+        }
+        this.largestPartition = largest;
+        this.batchStart = new int[batches.size()];
+        this.batchEnd = new int[batches.size()];
+        for (int b = 0; b < batches.size(); b++) {
+            batchStart[b] = batches.get(b)[0];
+            batchEnd[b] = batches.get(b)[1];
+        }
+    }
+    
+    public static ParallelEvaluator forModel(LogicGateModel model) {
+        return new ParallelEvaluator(CompiledCircuit.compile(model));
+    }
+    
+    private static int find(int[] parent, int g) {
+        while (parent[g] != g) {
+            parent[g] = parent[parent[g]];
+            g = parent[g];
+        }
+        return g;
+    }
+    
+    /** Returns the slot boundaries of each level in {@code [from, to)}. */
+    private int[] levelBounds(int from, int to) {
+        int[] level = circuit.level;
+        int levels = 1;
+        for (int s = from + 1; s < to; s++) {
+            if (level[s] != level[s - 1]) {
+                levels++;
+            }
+        }
+        int[] result = new int[levels + 1];
+        int k = 0;
+        result[k++] = from;
+        for (int s = from + 1; s < to; s++) {
+            if (level[s] != level[s - 1]) {
+                result[k++] = s;
+            }
+        }
+        result[k] = to;
+        return result;
+    }
+    
+    /** Evaluates every gate once from the current input values. */
+    public void evaluate() {
+        if (largeLevels.isEmpty() && batchStart.length <= 1) {
+            circuit.evaluate();
+            return;
+        }
+        pool.invoke(new RootTask());
+    }
+    
+    public void setInput(int gate, boolean state) {
+        circuit.setInput(gate, state);
+    }
+    
+    public boolean get(int gate) {
+        return circuit.get(gate);
+    }
+    
+    /** Copies the current input component states into the circuit. */
+    public void loadSources() {
+        circuit.loadSources();
+    }
+    
+    /** The partition-major circuit this evaluator writes into. */
+    public CompiledCircuit circuit() {
+        return circuit;
+    }
+    
+    public int partitionCount() {
+        return partitionCount;
+    }
+    
+    public int largestPartition() {
+        return largestPartition;
+    }
+    
+    private final class RootTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        protected void compute() {
+            List<RecursiveAction> tasks = new ArrayList<>(batchStart.length + largeLevels.size());
+            for (int[] levels : largeLevels) {
+                tasks.add(new PartitionTask(levels));
+            }
+            for (int b = 0; b < batchStart.length; b++) {
+                tasks.add(new RangeTask(batchStart[b], batchEnd[b]));
+            }
+            invokeAll(tasks);
+        }
+    }
+    
+    /** One large partition, level by level. */
+    private final class PartitionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int[] levels;
+        
+        PartitionTask(int[] levels) {
+            this.levels = levels;
+        }
+        
+        @Override
+        protected void compute() {
+            List<RangeTask> chunks = new ArrayList<>();
+            for (int l = 0; l + 1 < levels.length; l++) {
+                int from = levels[l];
+                int to = levels[l + 1];
+                if (to - from < 2 * GRAIN) {
+                    circuit.evaluateSlots(from, to);
+                    continue;
+                }
+                chunks.clear();
+                for (int s = from; s < to; s += GRAIN) {
+                    chunks.add(new RangeTask(s, Math.min(to, s + GRAIN)));
+                }
+                invokeAll(chunks);
+            }
+        }
+    }
+    
+    private final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        
+        RangeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            circuit.evaluateSlots(from, to);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package simulation;
+
+import model.LogicGateModel;
+
+/**
+ * Clocked simulation of circuits with feedback loops.
+ *
+ * Each settle sweep is two-phase: the compute phase evaluates every gate in
+ * slot order into the {@code next} buffer, reading inputs from earlier slots
+ * out of {@code next} (already computed this sweep) and feedback inputs out of
+ * {@code current} (the last committed state); the commit phase swaps the
+ * buffers. Sweeps repeat until nothing changes or {@link #getMaxSweeps()} is
+ * reached, in which case the tick is reported as oscillating.
+ *
+ * The circuit model has no clock component, so clocks are INPUT gates
+ * designated at construction; {@link #tick()} toggles every clock once (one
+ * edge) and settles. All state lives in arrays allocated up front, so ticking
+ * does not allocate.
+ */
+public final class SequentialSimulator {
+    
+    public static final int DEFAULT_MAX_SWEEPS = 64;
+    
+    private final CompiledCircuit circuit;
+    private final int[] clockSlots;
+    private boolean[] current;
+    private boolean[] next;
+    private int maxSweeps = DEFAULT_MAX_SWEEPS;
+    
+    private long ticks;
+    private int lastSweeps;
+    private boolean oscillating;
+    private long oscillatingTicks;
+    
+    /**
+     * @param circuit a circuit from {@link CompiledCircuit#compileSequential}
+     *        (combinational circuits work too)
+     * @param clockGates netlist indices of the INPUT gates driven as clocks
+     */
+    public SequentialSimulator(CompiledCircuit circuit, int... clockGates) {
+        this.circuit = circuit;
+        this.clockSlots = new int[clockGates.length];
+        for (int i = 0; i < clockGates.length; i++) {
+            int slot = circuit.slotOf[clockGates[i]];
+            if (circuit.ops[slot] != GateOp.INPUT) {
+                throw new IllegalArgumentException("Clock gate " + clockGates[i] + " is not an input");
+            }
+            clockSlots[i] = slot;
+        }
+        this.current = circuit.values.clone();
+        this.next = new boolean[circuit.size];
+        settle();
+    }
+    
+    public static SequentialSimulator forModel(LogicGateModel model, int... clockGates) {
+        return new SequentialSimulator(CompiledCircuit.compileSequential(model), clockGates);
+    }
+    
+    /** Toggles every clock input and settles the circuit. */
+    public boolean tick() {
+        for (int slot : clockSlots) {
+            current[slot] = !current[slot];
+        }
+        ticks++;
+        boolean stable = settle();
+        if (!stable) {
+            oscillatingTicks++;
+        }
+        return stable;
+    }
+    
+    /**
+     * Runs a number of ticks.
+     *
+     * @return the number of ticks that failed to settle
+     */
+    public long run(long count) {
+        long before = oscillatingTicks;
+        for (long i = 0; i < count; i++) {
+            tick();
+        }
+        return oscillatingTicks - before;
+    }
+    
+    /**
+     * Sweeps until the state stops changing.
+     *
+     * @return true if the circuit settled within the sweep bound
+     */
+    public boolean settle() {
+        final byte[] ops = circuit.ops;
+        final int[] inStart = circuit.inStart;
+        final int[] in = circuit.in;
+        final int size = circuit.size;
+        for (int sweep = 1; sweep <= maxSweeps; sweep++) {
+            boolean[] cur = current;
+            boolean[] nxt = next;
+            boolean changed = false;
+            for (int s = 0; s < size; s++) {
+                int op = ops[s];
+                boolean v = op == GateOp.INPUT ? cur[s] : compute(op, s, inStart[s], inStart[s + 1], in, cur, nxt);
+                nxt[s] = v;
+                changed |= v != cur[s];
+            }
+            current = nxt;
+            next = cur;
+            if (!changed) {
+                lastSweeps = sweep;
+                oscillating = false;
+                publish();
+                return true;
+            }
+        }
+        lastSweeps = maxSweeps;
+        oscillating = true;
+        publish();
+        return false;
+    }
+    
+    private static boolean compute(int op, int slot, int from, int to, int[] in, boolean[] cur, boolean[] nxt) {
+        if (from == to) {
+            return op == GateOp.CONST_HIGH;
+        }
+        boolean v;
+        switch (op) {
+            case GateOp.OUTPUT:
+                return read(in[from], slot, cur, nxt);
+            case GateOp.NOT:
+                return !read(in[from], slot, cur, nxt);
+            case GateOp.AND:
+            case GateOp.NAND:
+                v = true;
+                for (int i = from; i < to && v; i++) {
+                    v = read(in[i], slot, cur, nxt);
+                }
+                return op == GateOp.AND ? v : !v;
+            case GateOp.OR:
+            case GateOp.NOR:
+                v = false;
+                for (int i = from; i < to && !v; i++) {
+                    v = read(in[i], slot, cur, nxt);
+                }
+                return op == GateOp.OR ? v : !v;
+            case GateOp.XOR:
+                v = false;
+                for (int i = from; i < to; i++) {
+                    v ^= read(in[i], slot, cur, nxt);
+                }
+                return v;
+            default:
+                throw new IllegalStateException("Unknown opcode " + op);
+        }
+    }
+    
+    private static boolean read(int source, int slot, boolean[] cur, boolean[] nxt) {
+        return source < slot ? nxt[source] : cur[source];
+    }
+    
+    /** Mirrors the committed state into the circuit so its accessors stay current. */
+    private void publish() {
+        System.arraycopy(current, 0, circuit.values, 0, circuit.size);
+    }
+    
+    /** Sets an input gate; takes effect on the next {@link #settle()} or {@link #tick()}. */
+    public void setInput(int gate, boolean state) {
+        int slot = circuit.slotOf[gate];
+        if (circuit.ops[slot] != GateOp.INPUT) {
+            throw new IllegalArgumentException("Gate " + gate + " is not an input");
+        }
+        current[slot] = state;
+    }
+    
+    /** Copies the state of every input component into the circuit. */
+    public void loadSources() {
+        circuit.loadSources();
+        for (int s = 0; s < circuit.size; s++) {
+            if (circuit.ops[s] == GateOp.INPUT) {
+                current[s] = circuit.values[s];
+            }
+        }
+    }
+    
+    public boolean get(int gate) {
+        return current[circuit.slotOf[gate]];
+    }
+    
+    public int getMaxSweeps() {
+        return maxSweeps;
+    }
+    
+    public void setMaxSweeps(int maxSweeps) {
+        if (maxSweeps < 1) {
+            throw new IllegalArgumentException("maxSweeps must be positive");
+        }
+        this.maxSweeps = maxSweeps;
+    }
+    
+    public long getTicks() {
+        return ticks;
+    }
+    
+    /** Returns the number of sweeps used by the last settle. */
+    public int getLastSweeps() {
+        return lastSweeps;
+    }
+    
+    /** Returns true if the last settle hit the sweep bound without converging. */
+    public boolean isOscillating() {
+        return oscillating;
+    }
+    
+    public long getOscillatingTicks() {
+        return oscillatingTicks;
+    }
+    
+    public CompiledCircuit circuit() {
+        return circuit;
+    }
+}
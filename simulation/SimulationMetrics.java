@@ -0,0 +1,225 @@
+package simulation;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import model.GateComponent;
+
+/**
+ * Opt-in simulation counters.
+ *
+ * Run totals (runs, evaluations, toggles, wall time) are striped
+ * {@link LongAdder}s, so simulators on several threads can share one
+ * instance. Per-gate evaluation and toggle counts are plain arrays indexed by
+ * netlist gate, written only by the simulator bound to that netlist and read
+ * racily by the view, which is fine for a heat map. The netlist and its count
+ * arrays are published together through one volatile holder, so readers never
+ * pair a netlist with another netlist's arrays. Simulators without a
+ * metrics object run their normal loops; the instrumented loops are separate
+ * code, so leaving instrumentation off costs one null check per update.
+ */
+public final class SimulationMetrics implements SimulationMetricsMXBean {
+    
+    private static final int HOTTEST = 10;
+    
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder toggles = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    private volatile long lastRunNanos;
+    private volatile int lastDepth;
+    
+    private volatile GateCounts gates = new GateCounts(null);
+    private ObjectName registeredName;
+    
+    /** Per-gate counts for one netlist, published together. */
+    private static final class GateCounts {
+        final Netlist netlist;
+        final long[] evaluations;
+        final long[] toggles;
+        // Racy running maximum of toggles, good enough to scale a heat map
+        long maxToggles;
+        
+        GateCounts(Netlist netlist) {
+            this.netlist = netlist;
+            int n = netlist == null ? 0 : netlist.size();
+            this.evaluations = new long[n];
+            this.toggles = new long[n];
+        }
+    }
+    
+    /**
+     * Starts per-gate counting for a new circuit, discarding the per-gate
+     * counts of the previous one. Run totals are kept.
+     */
+    public void bind(Netlist netlist) {
+        gates = new GateCounts(netlist);
+    }
+    
+    /** Records one simulation run, e.g. one update of the controller's simulate path. */
+    public void recordRun(long gateEvaluationCount, long toggleCount, int depth, long elapsedNanos) {
+        runs.increment();
+        evaluations.add(gateEvaluationCount);
+        toggles.add(toggleCount);
+        nanos.add(elapsedNanos);
+        maxDepth.accumulate(depth);
+        lastDepth = depth;
+        lastRunNanos = elapsedNanos;
+    }
+    
+    /** Counts one evaluation of a netlist gate; hot path of the instrumented simulators. */
+    void recordGate(int gate, boolean toggled) {
+        GateCounts counts = gates;
+        if (gate < counts.evaluations.length) {
+            counts.evaluations[gate]++;
+            if (toggled) {
+                long toggles = ++counts.toggles[gate];
+                if (toggles > counts.maxToggles) {
+                    counts.maxToggles = toggles;
+                }
+            }
+        }
+    }
+    
+    public Netlist netlist() {
+        return gates.netlist;
+    }
+    
+    public long gateEvaluations(int gate) {
+        long[] counts = gates.evaluations;
+        return gate < counts.length ? counts[gate] : 0;
+    }
+    
+    public long gateToggles(int gate) {
+        long[] counts = gates.toggles;
+        return gate < counts.length ? counts[gate] : 0;
+    }
+    
+    /** Returns the highest per-gate toggle count, for normalizing a heat map; O(1). */
+    public long maxGateToggles() {
+        return gates.maxToggles;
+    }
+    
+    @Override
+    public long getRuns() {
+        return runs.sum();
+    }
+    
+    @Override
+    public long getGateEvaluations() {
+        return evaluations.sum();
+    }
+    
+    @Override
+    public long getOutputToggles() {
+        return toggles.sum();
+    }
+    
+    @Override
+    public long getTotalNanos() {
+        return nanos.sum();
+    }
+    
+    @Override
+    public long getLastRunNanos() {
+        return lastRunNanos;
+    }
+    
+    @Override
+    public double getAverageRunMicros() {
+        long count = runs.sum();
+        return count == 0 ? 0 : nanos.sum() / 1000.0 / count;
+    }
+    
+    @Override
+    public int getLastDepth() {
+        return lastDepth;
+    }
+    
+    @Override
+    public int getMaxDepth() {
+        return (int) maxDepth.get();
+    }
+    
+    @Override
+    public String[] getHottestGates() {
+        GateCounts snapshot = gates;
+        long[] counts = snapshot.toggles;
+        Netlist bound = snapshot.netlist;
+        // Top-ten selection: insertion into a small array sorted by count, descending
+        int[] top = new int[HOTTEST];
+        long[] topCounts = new long[HOTTEST];
+        int n = 0;
+        for (int g = 0; g < counts.length; g++) {
+            long count = counts[g];
+            if (count == 0 || n == HOTTEST && count <= topCounts[n - 1]) {
+                continue;
+            }
+            int i = n < HOTTEST ? n++ : n - 1;
+            while (i > 0 && topCounts[i - 1] < count) {
+                top[i] = top[i - 1];
+                topCounts[i] = topCounts[i - 1];
+                i--;
+            }
+            top[i] = g;
+            topCounts[i] = count;
+        }
+        String[] hottest = new String[n];
+        for (int i = 0; i < n; i++) {
+            int g = top[i];
+            GateComponent component = bound.component(g);
+            String label = component != null ? component.getId() + " (" + component.getType() + ")"
+                    : "#" + g + " (" + GateOp.name(bound.op(g)) + ")";
+            hottest[i] = label + ": " + topCounts[i];
+        }
+        return hottest;
+    }
+    
+    @Override
+    public void reset() {
+        runs.reset();
+        evaluations.reset();
+        toggles.reset();
+        nanos.reset();
+        maxDepth.reset();
+        lastRunNanos = 0;
+        lastDepth = 0;
+        Netlist bound = gates.netlist;
+        if (bound != null) {
+            bind(bound);
+        }
+    }
+    
+    /** Registers this object with the platform MBean server. */
+    public synchronized void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("gateo:type=SimulationMetrics,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+            registeredName = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register simulation metrics", e);
+        }
+    }
+    
+    public synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            // Already gone
+        }
+        registeredName = null;
+    }
+}
@@ -0,0 +1,29 @@
+package simulation;
+
+/**
+ * JMX view of {@link SimulationMetrics}. Registered under
+ * {@code gateo:type=SimulationMetrics,name=<name>}.
+ */
+public interface SimulationMetricsMXBean {
+    
+    long getRuns();
+    
+    long getGateEvaluations();
+    
+    long getOutputToggles();
+    
+    long getTotalNanos();
+    
+    long getLastRunNanos();
+    
+    double getAverageRunMicros();
+    
+    int getLastDepth();
+    
+    int getMaxDepth();
+    
+    /** Component ids of the most frequently toggling gates, with their counts. */
+    String[] getHottestGates();
+    
+    void reset();
+}
@@ -0,0 +1,148 @@
+package simulation;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import model.LogicGateModel;
+
+/**
+ * A reusable circuit with declared input and output pins.
+ *
+ * The pins are the definition's INPUT gates and OUTPUT gates, in netlist
+ * order. The definition is compiled once and shared by every instance; each
+ * distinct input pattern is evaluated once and memoized, so a board that
+ * instantiates the same full adder thousands of times evaluates it at most
+ * eight times. Patterns are packed into a long, input pin {@code i} at bit
+ * {@code i}, which limits a definition to 64 inputs and 64 outputs.
+ */
+public final class SubCircuitDefinition {
+    
+    /** Definitions with at most this many inputs memoize into a dense table. */
+    private static final int DENSE_TABLE_INPUTS = 16;
+    /** Upper bound on memoized patterns for wider definitions. */
+    private static final int MAX_SPARSE_ENTRIES = 1 << 20;
+    
+    private final String name;
+    private final CompiledCircuit circuit;
+    private final HierarchicalCircuit nested;
+    private final int[] inputPins;
+    private final int[] outputPins;
+    
+    private long[] table;
+    private long[] known;
+    private final ConcurrentHashMap<Long, Long> sparse;
+    private long evaluations;
+    
+    public SubCircuitDefinition(String name, CompiledCircuit circuit) {
+        this(name, circuit, null, pins(circuit.netlist, GateOp.INPUT), pins(circuit.netlist, GateOp.OUTPUT));
+    }
+    
+    /** Wraps a hierarchical circuit so definitions can nest. */
+    public SubCircuitDefinition(String name, HierarchicalCircuit nested) {
+        this(name, null, nested, nested.inputNets(), nested.outputNets());
+    }
+    
+    private SubCircuitDefinition(String name, CompiledCircuit circuit, HierarchicalCircuit nested,
+            int[] inputPins, int[] outputPins) {
+        if (inputPins.length > 64 || outputPins.length > 64) {
+            throw new IllegalArgumentException("Sub-circuit " + name + " has more than 64 input or output pins");
+        }
+        this.name = name;
+        this.circuit = circuit;
+        this.nested = nested;
+        this.inputPins = inputPins;
+        this.outputPins = outputPins;
+        this.sparse = inputPins.length > DENSE_TABLE_INPUTS ? new ConcurrentHashMap<>() : null;
+    }
+    
+    public static SubCircuitDefinition fromModel(String name, LogicGateModel model) {
+        return new SubCircuitDefinition(name, CompiledCircuit.compile(model));
+    }
+    
+    private static int[] pins(Netlist netlist, int op) {
+        int count = 0;
+        for (int g = 0; g < netlist.size(); g++) {
+            if (netlist.op(g) == op) {
+                count++;
+            }
+        }
+        int[] pins = new int[count];
+        count = 0;
+        for (int g = 0; g < netlist.size(); g++) {
+            if (netlist.op(g) == op) {
+                pins[count++] = g;
+            }
+        }
+        return pins;
+    }
+    
+    /** Returns the output pattern for an input pattern, evaluating it on first use. */
+    public long evaluate(long inputs) {
+        if (sparse != null) {
+            Long cached = sparse.get(inputs);
+            if (cached != null) {
+                return cached;
+            }
+            long outputs = compute(inputs);
+            if (sparse.size() < MAX_SPARSE_ENTRIES) {
+                sparse.put(inputs, outputs);
+            }
+            return outputs;
+        }
+        int row = (int) inputs;
+        synchronized (this) {
+            if (table == null) {
+                table = new long[1 << inputPins.length];
+                known = new long[Math.max(1, table.length >>> 6)];
+            }
+            if ((known[row >>> 6] & (1L << row)) == 0) {
+                table[row] = compute(inputs);
+                known[row >>> 6] |= 1L << row;
+            }
+            return table[row];
+        }
+    }
+    
+    private synchronized long compute(long inputs) {
+        evaluations++;
+        long outputs = 0;
+        if (circuit != null) {
+            for (int i = 0; i < inputPins.length; i++) {
+                circuit.setInput(inputPins[i], (inputs >>> i & 1L) != 0);
+            }
+            circuit.evaluate();
+            for (int o = 0; o < outputPins.length; o++) {
+                if (circuit.get(outputPins[o])) {
+                    outputs |= 1L << o;
+                }
+            }
+        } else {
+            for (int i = 0; i < inputPins.length; i++) {
+                nested.setInput(inputPins[i], (inputs >>> i & 1L) != 0);
+            }
+            nested.evaluate();
+            for (int o = 0; o < outputPins.length; o++) {
+                if (nested.get(outputPins[o])) {
+                    outputs |= 1L << o;
+                }
+            }
+        }
+        return outputs;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public int inputCount() {
+        return inputPins.length;
+    }
+    
+    public int outputCount() {
+        return outputPins.length;
+    }
+    
+    /** Returns how many distinct patterns were actually simulated. */
+    public synchronized long getEvaluations() {
+        return evaluations;
+    }
+}
@@ -0,0 +1,215 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import model.LogicGateModel;
+
+/**
+ * Exhaustive truth table of a combinational circuit.
+ *
+ * The INPUT gates are the variables, in netlist order, with input 0 as the
+ * least significant bit of the row number; the OUTPUT gates are the columns.
+ * Generation packs 64 rows into one long per net and evaluates every gate as a
+ * single bitwise word operation, splitting the row space across a ForkJoin
+ * pool. Each output column is stored as a packed bitset of 2^inputs bits, so a
+ * 30-input circuit costs 128 MB per output column.
+ */
+public final class TruthTable {
+    
+    /** Largest supported number of inputs (2^30 rows). */
+    public static final int MAX_INPUTS = 30;
+    
+    /** Row patterns of the first six inputs within one 64-row word. */
+    private static final long[] LOW_PATTERNS = {
+        0xAAAAAAAAAAAAAAAAL,
+        0xCCCCCCCCCCCCCCCCL,
+        0xF0F0F0F0F0F0F0F0L,
+        0xFF00FF00FF00FF00L,
+        0xFFFF0000FFFF0000L,
+        0xFFFFFFFF00000000L
+    };
+    
+    private final int inputCount;
+    private final long rows;
+    private final int[] inputGates;
+    private final int[] outputGates;
+    private final long[][] columns;
+    
+    private TruthTable(int[] inputGates, int[] outputGates, long[][] columns) {
+        this.inputCount = inputGates.length;
+        this.rows = 1L << inputCount;
+        this.inputGates = inputGates;
+        this.outputGates = outputGates;
+        this.columns = columns;
+    }
+    
+    public static TruthTable generate(LogicGateModel model) {
+        return generate(CompiledCircuit.compile(model), ForkJoinPool.commonPool());
+    }
+    
+    public static TruthTable generate(CompiledCircuit circuit) {
+        return generate(circuit, ForkJoinPool.commonPool());
+    }
+    
+    public static TruthTable generate(CompiledCircuit circuit, ForkJoinPool pool) {
+        Netlist netlist = circuit.netlist;
+        int[] inputs = gatesWithOp(netlist, GateOp.INPUT);
+        int[] outputs = gatesWithOp(netlist, GateOp.OUTPUT);
+        if (inputs.length > MAX_INPUTS) {
+            throw new IllegalArgumentException("Truth table of " + inputs.length
+                    + " inputs exceeds the limit of " + MAX_INPUTS);
+        }
+        int words = inputs.length <= 6 ? 1 : 1 << (inputs.length - 6);
+        long[][] columns = new long[outputs.length][words];
+        int grain = Math.max(1, words / (pool.getParallelism() * 8));
+        pool.invoke(new RowTask(circuit, inputs, outputs, columns, 0, words, grain));
+        
+        if (inputs.length < 6) {
+            long mask = (1L << (1 << inputs.length)) - 1;
+            for (long[] column : columns) {
+                column[0] &= mask;
+            }
+        }
+        return new TruthTable(inputs, outputs, columns);
+    }
+    
+    private static int[] gatesWithOp(Netlist netlist, int op) {
+        int[] gates = new int[netlist.size()];
+        int count = 0;
+        for (int g = 0; g < netlist.size(); g++) {
+            if (netlist.op(g) == op) {
+                gates[count++] = g;
+            }
+        }
+        return Arrays.copyOf(gates, count);
+    }
+    
+    /** Evaluates a range of 64-row words with a private scratch buffer. */
+    private static final class RowTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final CompiledCircuit circuit;
+        private final int[] inputs;
+        private final int[] outputs;
+        private final long[][] columns;
+        private final int from;
+        private final int to;
+        private final int grain;
+        
+        RowTask(CompiledCircuit circuit, int[] inputs, int[] outputs, long[][] columns,
+                int from, int to, int grain) {
+            this.circuit = circuit;
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RowTask(circuit, inputs, outputs, columns, from, mid, grain),
+                        new RowTask(circuit, inputs, outputs, columns, mid, to, grain));
+                return;
+            }
+            long[] words = new long[circuit.size];
+            int[] inputSlots = new int[inputs.length];
+            int[] outputSlots = new int[outputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                inputSlots[i] = circuit.slotOf[inputs[i]];
+            }
+            for (int o = 0; o < outputs.length; o++) {
+                outputSlots[o] = circuit.slotOf[outputs[o]];
+            }
+            for (int i = 0; i < inputs.length && i < 6; i++) {
+                words[inputSlots[i]] = LOW_PATTERNS[i];
+            }
+            for (int w = from; w < to; w++) {
+                for (int i = 6; i < inputs.length; i++) {
+                    words[inputSlots[i]] = ((w >>> (i - 6)) & 1) != 0 ? -1L : 0L;
+                }
+                circuit.evaluateWords(words, 0, circuit.size);
+                for (int o = 0; o < outputs.length; o++) {
+                    columns[o][w] = words[outputSlots[o]];
+                }
+            }
+        }
+    }
+    
+    public int inputCount() {
+        return inputCount;
+    }
+    
+    public int outputCount() {
+        return outputGates.length;
+    }
+    
+    public long rowCount() {
+        return rows;
+    }
+    
+    /** Returns the netlist index of the given input variable. */
+    public int inputGate(int input) {
+        return inputGates[input];
+    }
+    
+    /** Returns the netlist index of the given output column. */
+    public int outputGate(int output) {
+        return outputGates[output];
+    }
+    
+    public boolean get(long row, int output) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        }
+        return (columns[output][(int) (row >>> 6)] >>> (row & 63) & 1L) != 0;
+    }
+    
+    /** Returns the number of rows for which the output is HIGH. */
+    public long countHigh(int output) {
+        long count = 0;
+        for (long word : columns[output]) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+    
+    /** Returns a copy of one output column. Only valid below 2^31 rows. */
+    public BitSet toBitSet(int output) {
+        return BitSet.valueOf(columns[output]);
+    }
+    
+    /**
+     * Compares two tables with the same inputs and outputs.
+     *
+     * @return the first row where any output differs, or -1 if equivalent
+     */
+    public long firstMismatch(TruthTable other) {
+        if (other.inputCount != inputCount || other.outputGates.length != outputGates.length) {
+            throw new IllegalArgumentException("Truth tables have different shapes");
+        }
+        long first = -1;
+        for (int o = 0; o < outputGates.length; o++) {
+            long[] a = columns[o];
+            long[] b = other.columns[o];
+            for (int w = 0; w < a.length; w++) {
+                long diff = a[w] ^ b[w];
+                if (diff != 0) {
+                    long row = ((long) w << 6) + Long.numberOfTrailingZeros(diff);
+                    if (first < 0 || row < first) {
+                        first = row;
+                    }
+                    break;
+                }
+            }
+        }
+        return first;
+    }
+}
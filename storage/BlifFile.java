@@ -0,0 +1,716 @@
+package storage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import simulation.GateOp;
+import simulation.Netlist;
+
+/**
+ * Import and export of combinational circuits in Berkeley Logic Interchange
+ * Format (BLIF), the structural netlist format read by ABC, SIS and Yosys.
+ *
+ * The reader streams the file through a fixed byte buffer and resolves signal
+ * names in a byte-keyed symbol table, so the only per-gate allocations are the
+ * growing gate arrays themselves. Each {@code .names} cover is matched against
+ * the gates of the editor: single-row and one-hot covers, or any cover of up
+ * to six inputs whose truth table is that of AND, OR, NAND, NOR, XOR, NOT or a
+ * constant, becomes that gate; a buffer becomes an alias of its input. Covers
+ * with more than two inputs are split into balanced two-input trees so every
+ * gate fits a {@link model.GateComponent}. Any other cover is built as a sum
+ * of products.
+ *
+ * Inputs become INPUT gates in {@code .inputs} order and every {@code .outputs}
+ * name gets an OUTPUT gate, appended in declaration order. Signal names are not
+ * kept. {@code .latch}, {@code .subckt} and {@code .gate} are rejected.
+ */
+public final class BlifFile {
+    
+    /** Largest cover, in inputs, matched by truth table. */
+    private static final int TABLE_INPUTS = 6;
+    /** Widest XOR the writer expands into a cover; wider ones are chained. */
+    private static final int XOR_COVER_INPUTS = 8;
+    
+    private BlifFile() {
+    }
+    
+    public static Netlist read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+    
+    /** Parses a BLIF model; the stream is read to the first {@code .end}. */
+    public static Netlist read(InputStream in) throws IOException {
+        return new Parser(in).parse();
+    }
+    
+    public static void write(Netlist netlist, Path path) throws IOException {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path),
+                StandardCharsets.US_ASCII), 1 << 16)) {
+            write(netlist, out, dot > 0 ? name.substring(0, dot) : name);
+        }
+    }
+    
+    /**
+     * Writes a netlist as one BLIF model. Gate {@code g} is the signal
+     * {@code n<g>}; INPUT and OUTPUT gates are listed in index order.
+     */
+    public static void write(Netlist netlist, Writer out, String modelName) throws IOException {
+        int n = netlist.size();
+        StringBuilder line = new StringBuilder(256);
+        out.append(".model ").append(modelName).append('\n');
+        writeList(netlist, out, line, ".inputs", GateOp.INPUT);
+        writeList(netlist, out, line, ".outputs", GateOp.OUTPUT);
+        
+        for (int g = 0; g < n; g++) {
+            int op = netlist.op(g);
+            int k = netlist.inputCount(g);
+            if (op == GateOp.INPUT) {
+                continue;
+            }
+            if (op == GateOp.OUTPUT || op == GateOp.NOT) {
+                // Only the first input is read
+                k = Math.min(k, 1);
+            }
+            if (op == GateOp.XOR && k > XOR_COVER_INPUTS) {
+                writeXorChain(netlist, g, out, line);
+                continue;
+            }
+            line.setLength(0);
+            line.append(".names");
+            for (int i = 0; i < k; i++) {
+                line.append(" n").append(netlist.input(g, i));
+            }
+            line.append(" n").append(g).append('\n');
+            if (k == 0) {
+                // No rows is constant 0; gates without inputs evaluate low
+                if (op == GateOp.CONST_HIGH) {
+                    line.append("1\n");
+                }
+            } else {
+                appendCover(line, op, k);
+            }
+            out.append(line);
+        }
+        out.append(".end\n");
+        out.flush();
+    }
+    
+    private static void writeList(Netlist netlist, Writer out, StringBuilder line, String directive, int op)
+            throws IOException {
+        line.setLength(0);
+        line.append(directive);
+        int count = 0;
+        for (int g = 0; g < netlist.size(); g++) {
+            if (netlist.op(g) == op) {
+                if (++count % 16 == 0) {
+                    line.append(" \\\n");
+                    out.append(line);
+                    line.setLength(0);
+                }
+                line.append(" n").append(g);
+            }
+        }
+        out.append(line).append('\n');
+    }
+    
+    /** Appends the rows of a k-input cover for an opcode. */
+    private static void appendCover(StringBuilder line, int op, int k) {
+        switch (op) {
+            case GateOp.OUTPUT:
+            case GateOp.AND:
+            case GateOp.NAND:
+                appendRepeated(line, '1', k).append(op == GateOp.NAND ? " 0\n" : " 1\n");
+                break;
+            case GateOp.NOT:
+                line.append("0 1\n");
+                break;
+            case GateOp.NOR:
+                appendRepeated(line, '0', k).append(" 1\n");
+                break;
+            case GateOp.OR:
+                for (int i = 0; i < k; i++) {
+                    appendRepeated(line, '-', i).append('1');
+                    appendRepeated(line, '-', k - i - 1).append(" 1\n");
+                }
+                break;
+            case GateOp.XOR:
+                for (int m = 0; m < 1 << k; m++) {
+                    if ((Integer.bitCount(m) & 1) != 0) {
+                        for (int i = 0; i < k; i++) {
+                            line.append((m >>> i & 1) != 0 ? '1' : '0');
+                        }
+                        line.append(" 1\n");
+                    }
+                }
+                break;
+            case GateOp.CONST_LOW:
+                break;
+            case GateOp.CONST_HIGH:
+                appendRepeated(line, '-', k).append(" 1\n");
+                break;
+            default:
+                throw new IllegalStateException("Unknown opcode " + op);
+        }
+    }
+    
+    private static StringBuilder appendRepeated(StringBuilder line, char c, int count) {
+        for (int i = 0; i < count; i++) {
+            line.append(c);
+        }
+        return line;
+    }
+    
+    /** Writes a wide XOR as a chain of two-input XORs named {@code n<g>_<i>}. */
+    private static void writeXorChain(Netlist netlist, int g, Writer out, StringBuilder line) throws IOException {
+        int k = netlist.inputCount(g);
+        for (int i = 1; i < k; i++) {
+            line.setLength(0);
+            line.append(".names ");
+            if (i == 1) {
+                line.append('n').append(netlist.input(g, 0));
+            } else {
+                line.append('n').append(g).append('_').append(i - 1);
+            }
+            line.append(" n").append(netlist.input(g, i)).append(" n").append(g);
+            if (i < k - 1) {
+                line.append('_').append(i);
+            }
+            line.append("\n01 1\n10 1\n");
+            out.append(line);
+        }
+    }
+    
+    /**
+     * Single-pass BLIF parser. Gate inputs are recorded as references that are
+     * either a symbol (>= 0) or a gate ({@code ~gate}), so signals may be used
+     * before the line that drives them; symbols are resolved to gates at the end.
+     */
+    private static final class Parser {
+        
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position;
+        private int limit;
+        private int lineNumber;
+        
+        // Current logical line and its tokens
+        private byte[] line = new byte[256];
+        private int[] tokenStart = new int[16];
+        private int[] tokenEnd = new int[16];
+        private int tokens;
+        
+        private final SymbolTable symbols = new SymbolTable();
+        private int[] driver = new int[1024];
+        private int[] alias = new int[1024];
+        private int[] outputs = new int[16];
+        private int outputCount;
+        
+        // Gates under construction
+        private byte[] ops = new byte[1024];
+        private int[] refStart = new int[1025];
+        private int[] refs = new int[2048];
+        private int gates;
+        
+        // Current cover
+        private int[] coverInputs = new int[16];
+        private byte[] cover = new byte[256];
+        private int rows;
+        private int[] scratch = new int[16];
+        
+        Parser(InputStream in) {
+            this.in = in;
+            Arrays.fill(driver, -1);
+            Arrays.fill(alias, -1);
+        }
+        
+        Netlist parse() throws IOException {
+            boolean pending = nextLine();
+            while (pending) {
+                if (tokens == 0) {
+                    pending = nextLine();
+                    continue;
+                }
+                if (is(0, ".names")) {
+                    pending = readNames();
+                    continue;
+                }
+                if (is(0, ".inputs")) {
+                    for (int t = 1; t < tokens; t++) {
+                        int symbol = symbol(t);
+                        drive(symbol, ~addGate(GateOp.INPUT));
+                    }
+                } else if (is(0, ".outputs")) {
+                    for (int t = 1; t < tokens; t++) {
+                        if (outputCount == outputs.length) {
+                            outputs = Arrays.copyOf(outputs, outputCount * 2);
+                        }
+                        outputs[outputCount++] = symbol(t);
+                    }
+                } else if (is(0, ".end") || is(0, ".exdc")) {
+                    break;
+                } else if (is(0, ".latch") || is(0, ".mlatch") || is(0, ".subckt") || is(0, ".gate")) {
+                    throw error("Unsupported directive " + token(0));
+                } else if (line[tokenStart[0]] != '.') {
+                    throw error("Cover row outside .names");
+                }
+                // .model, .default_* timing and other annotations are ignored
+                pending = nextLine();
+            }
+            return build();
+        }
+        
+        /** Reads a .names header and its cover rows; returns whether a line is pending. */
+        private boolean readNames() throws IOException {
+            if (tokens < 2) {
+                throw error(".names without an output");
+            }
+            int k = tokens - 2;
+            if (coverInputs.length < k) {
+                coverInputs = new int[k * 2];
+            }
+            for (int i = 0; i < k; i++) {
+                coverInputs[i] = symbol(i + 1);
+            }
+            int output = symbol(tokens - 1);
+            int header = lineNumber;
+            
+            rows = 0;
+            int outputBit = -1;
+            boolean pending;
+            while ((pending = nextLine()) && (tokens == 0 || line[tokenStart[0]] != '.')) {
+                if (tokens == 0) {
+                    continue;
+                }
+                if (tokens != (k == 0 ? 1 : 2) || (k > 0 && tokenEnd[0] - tokenStart[0] != k)
+                        || tokenEnd[tokens - 1] - tokenStart[tokens - 1] != 1) {
+                    throw error("Malformed cover row for " + k + " inputs");
+                }
+                int bit = line[tokenStart[tokens - 1]] - '0';
+                if (bit != 0 && bit != 1 || outputBit >= 0 && bit != outputBit) {
+                    throw error("Cover rows must all set the output to the same 0 or 1");
+                }
+                outputBit = bit;
+                if (cover.length < (rows + 1) * k) {
+                    cover = Arrays.copyOf(cover, Math.max(cover.length * 2, (rows + 1) * k));
+                }
+                for (int i = 0; i < k; i++) {
+                    byte c = line[tokenStart[0] + i];
+                    if (c != '0' && c != '1' && c != '-') {
+                        throw error("Bad cover character '" + (char) c + "'");
+                    }
+                    cover[rows * k + i] = c;
+                }
+                rows++;
+            }
+            int saved = lineNumber;
+            lineNumber = header;
+            drive(output, coverFunction(k, outputBit != 0));
+            lineNumber = saved;
+            return pending;
+        }
+        
+        /** Builds the current cover and returns the reference to its result. */
+        private int coverFunction(int k, boolean onSet) {
+            if (rows == 0) {
+                return ~addGate(GateOp.CONST_LOW);
+            }
+            if (k == 0) {
+                return ~addGate(onSet ? GateOp.CONST_HIGH : GateOp.CONST_LOW);
+            }
+            if (k <= TABLE_INPUTS) {
+                long mask = k == 6 ? -1L : (1L << (1 << k)) - 1;
+                long table = truthTable(k);
+                if (!onSet) {
+                    table = ~table & mask;
+                }
+                long parity = 0;
+                for (int m = 0; m < 1 << k; m++) {
+                    parity |= (long) (Integer.bitCount(m) & 1) << m;
+                }
+                long all = 1L << ((1 << k) - 1);
+                if (table == 0) {
+                    return ~addGate(GateOp.CONST_LOW);
+                } else if (table == mask) {
+                    return ~addGate(GateOp.CONST_HIGH);
+                } else if (k == 1 && table == 2) {
+                    return coverInputs[0];
+                } else if (k == 1 && table == 1) {
+                    return ~addGate(GateOp.NOT, coverInputs[0]);
+                } else if (table == all) {
+                    return tree(GateOp.AND, GateOp.AND, coverInputs, 0, k);
+                } else if (table == (~all & mask)) {
+                    return tree(GateOp.NAND, GateOp.AND, coverInputs, 0, k);
+                } else if (table == (mask & ~1L)) {
+                    return tree(GateOp.OR, GateOp.OR, coverInputs, 0, k);
+                } else if (table == 1) {
+                    return tree(GateOp.NOR, GateOp.OR, coverInputs, 0, k);
+                } else if (table == parity) {
+                    return tree(GateOp.XOR, GateOp.XOR, coverInputs, 0, k);
+                } else if (table == (~parity & mask)) {
+                    return ~addGate(GateOp.NOT, tree(GateOp.XOR, GateOp.XOR, coverInputs, 0, k));
+                }
+            } else if (rows == 1 && uniformRow(0, k, (byte) '1')) {
+                return tree(onSet ? GateOp.AND : GateOp.NAND, GateOp.AND, coverInputs, 0, k);
+            } else if (rows == 1 && uniformRow(0, k, (byte) '0')) {
+                return tree(onSet ? GateOp.NOR : GateOp.OR, GateOp.OR, coverInputs, 0, k);
+            } else if (rows == k && oneHot(k, (byte) '1')) {
+                return tree(onSet ? GateOp.OR : GateOp.NOR, GateOp.OR, coverInputs, 0, k);
+            } else if (rows == k && oneHot(k, (byte) '0')) {
+                return tree(onSet ? GateOp.NAND : GateOp.AND, GateOp.AND, coverInputs, 0, k);
+            }
+            return sumOfProducts(k, onSet);
+        }
+        
+        /** Truth table of the rows, bit m set when minterm m is covered. */
+        private long truthTable(int k) {
+            long table = 0;
+            for (int m = 0; m < 1 << k; m++) {
+                for (int r = 0; r < rows; r++) {
+                    boolean match = true;
+                    for (int i = 0; i < k && match; i++) {
+                        byte c = cover[r * k + i];
+                        match = c == '-' || (c == '1') == ((m >>> i & 1) != 0);
+                    }
+                    if (match) {
+                        table |= 1L << m;
+                        break;
+                    }
+                }
+            }
+            return table;
+        }
+        
+        private boolean uniformRow(int row, int k, byte c) {
+            for (int i = 0; i < k; i++) {
+                if (cover[row * k + i] != c) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /** Row r has c at position r and '-' elsewhere. */
+        private boolean oneHot(int k, byte c) {
+            for (int r = 0; r < rows; r++) {
+                for (int i = 0; i < k; i++) {
+                    if (cover[r * k + i] != (i == r ? c : '-')) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        
+        private int sumOfProducts(int k, boolean onSet) {
+            if (scratch.length < k + rows) {
+                scratch = new int[(k + rows) * 2];
+            }
+            int[] inverted = new int[k];
+            Arrays.fill(inverted, Integer.MAX_VALUE);
+            int[] terms = new int[rows];
+            for (int r = 0; r < rows; r++) {
+                int literals = 0;
+                for (int i = 0; i < k; i++) {
+                    byte c = cover[r * k + i];
+                    if (c == '1') {
+                        scratch[literals++] = coverInputs[i];
+                    } else if (c == '0') {
+                        if (inverted[i] == Integer.MAX_VALUE) {
+                            inverted[i] = ~addGate(GateOp.NOT, coverInputs[i]);
+                        }
+                        scratch[literals++] = inverted[i];
+                    }
+                }
+                terms[r] = literals == 0 ? ~addGate(GateOp.CONST_HIGH)
+                        : tree(GateOp.AND, GateOp.AND, scratch, 0, literals);
+            }
+            int sum = tree(GateOp.OR, GateOp.OR, terms, 0, rows);
+            return onSet ? sum : ~addGate(GateOp.NOT, sum);
+        }
+        
+        /**
+         * Balanced two-input tree over {@code refs[from, to)}: inner nodes use
+         * {@code inner}, the root uses {@code op}. A single reference is returned
+         * as is unless the root inverts.
+         */
+        private int tree(int op, int inner, int[] refs, int from, int to) {
+            if (to - from == 1) {
+                return op == inner ? refs[from] : ~addGate(GateOp.NOT, refs[from]);
+            }
+            if (to - from == 2) {
+                return ~addGate(op, refs[from], refs[from + 1]);
+            }
+            int middle = (from + to) >>> 1;
+            int left = tree(inner, inner, refs, from, middle);
+            int right = tree(inner, inner, refs, middle, to);
+            return ~addGate(op, left, right);
+        }
+        
+        private int addGate(int op) {
+            return append(op, 0);
+        }
+        
+        private int addGate(int op, int source) {
+            refs[refStart[gates]] = source;
+            return append(op, 1);
+        }
+        
+        private int addGate(int op, int a, int b) {
+            refs[refStart[gates]] = a;
+            refs[refStart[gates] + 1] = b;
+            return append(op, 2);
+        }
+        
+        /** Commits the next gate, whose references were written past the end. */
+        private int append(int op, int inputs) {
+            ops[gates] = (byte) op;
+            refStart[gates + 1] = refStart[gates] + inputs;
+            gates++;
+            if (gates + 1 == ops.length) {
+                ops = Arrays.copyOf(ops, ops.length * 2);
+                refStart = Arrays.copyOf(refStart, ops.length + 1);
+            }
+            if (refStart[gates] + 2 > refs.length) {
+                refs = Arrays.copyOf(refs, refs.length * 2);
+            }
+            return gates - 1;
+        }
+        
+        private void drive(int symbol, int ref) throws IOException {
+            if (driver[symbol] >= 0 || alias[symbol] >= 0) {
+                throw error("Signal " + symbols.name(symbol) + " is driven twice");
+            }
+            if (ref >= 0) {
+                alias[symbol] = ref;
+            } else {
+                driver[symbol] = ~ref;
+            }
+        }
+        
+        private int symbol(int token) {
+            int symbol = symbols.intern(line, tokenStart[token], tokenEnd[token]);
+            if (symbol == driver.length) {
+                int capacity = driver.length * 2;
+                driver = Arrays.copyOf(driver, capacity);
+                alias = Arrays.copyOf(alias, capacity);
+                Arrays.fill(driver, symbol, capacity, -1);
+                Arrays.fill(alias, symbol, capacity, -1);
+            }
+            return symbol;
+        }
+        
+        /** Follows buffer aliases to the driving gate. */
+        private int resolve(int symbol) throws IOException {
+            int s = symbol;
+            for (int steps = 0; driver[s] < 0; steps++) {
+                if (alias[s] < 0) {
+                    throw new IOException("Signal " + symbols.name(s) + " is never driven");
+                }
+                if (steps > symbols.size()) {
+                    throw new IOException("Buffer loop through signal " + symbols.name(symbol));
+                }
+                s = alias[s];
+            }
+            return driver[s];
+        }
+        
+        private Netlist build() throws IOException {
+            for (int o = 0; o < outputCount; o++) {
+                addGate(GateOp.OUTPUT, outputs[o]);
+            }
+            int[] inputs = new int[refStart[gates]];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = refs[i] >= 0 ? resolve(refs[i]) : ~refs[i];
+            }
+            return Netlist.of(Arrays.copyOf(ops, gates), Arrays.copyOf(refStart, gates + 1), inputs,
+                    new boolean[gates]);
+        }
+        
+        /**
+         * Reads the next logical line into {@link #line}, joining backslash
+         * continuations and dropping comments. Returns false at end of input.
+         */
+        private boolean nextLine() throws IOException {
+            int length = 0;
+            tokens = 0;
+            boolean any = false;
+            boolean comment = false;
+            while (true) {
+                if (position == limit) {
+                    limit = in.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        break;
+                    }
+                }
+                any = true;
+                byte c = buffer[position++];
+                if (c == '\n') {
+                    lineNumber++;
+                    if (length > 0 && line[length - 1] == '\\' && !comment) {
+                        length--;
+                        line[length++] = ' ';
+                        continue;
+                    }
+                    break;
+                }
+                if (c == '#') {
+                    comment = true;
+                }
+                if (comment || c == '\r') {
+                    continue;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = c;
+            }
+            if (!any) {
+                return false;
+            }
+            // Split on blanks
+            int i = 0;
+            while (i < length) {
+                while (i < length && (line[i] == ' ' || line[i] == '\t')) {
+                    i++;
+                }
+                if (i == length) {
+                    break;
+                }
+                if (tokens == tokenStart.length) {
+                    tokenStart = Arrays.copyOf(tokenStart, tokens * 2);
+                    tokenEnd = Arrays.copyOf(tokenEnd, tokens * 2);
+                }
+                tokenStart[tokens] = i;
+                while (i < length && line[i] != ' ' && line[i] != '\t') {
+                    i++;
+                }
+                tokenEnd[tokens++] = i;
+            }
+            return true;
+        }
+        
+        private boolean is(int token, String directive) {
+            int length = tokenEnd[token] - tokenStart[token];
+            if (length != directive.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (line[tokenStart[token] + i] != directive.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private String token(int token) {
+            return new String(line, tokenStart[token], tokenEnd[token] - tokenStart[token], StandardCharsets.UTF_8);
+        }
+        
+        private IOException error(String message) {
+            return new IOException("Line " + lineNumber + ": " + message);
+        }
+    }
+    
+    /** Open-addressing map from byte-string names to dense symbol ids. */
+    private static final class SymbolTable {
+        private byte[] bytes = new byte[1 << 14];
+        private int used;
+        private int[] offset = new int[1024];
+        private int[] hashes = new int[1024];
+        private int count;
+        private int[] slots = new int[2048];
+        
+        SymbolTable() {
+            Arrays.fill(slots, -1);
+        }
+        
+        int intern(byte[] source, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + source[i];
+            }
+            int mask = slots.length - 1;
+            for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+                int symbol = slots[slot];
+                if (symbol < 0) {
+                    return add(source, from, to, hash, slot);
+                }
+                if (hashes[symbol] == hash && equals(symbol, source, from, to)) {
+                    return symbol;
+                }
+            }
+        }
+        
+        private int add(byte[] source, int from, int to, int hash, int slot) {
+            int length = to - from;
+            if (used + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, used + length));
+            }
+            if (count + 1 == offset.length) {
+                offset = Arrays.copyOf(offset, offset.length * 2);
+                hashes = Arrays.copyOf(hashes, offset.length);
+            }
+            System.arraycopy(source, from, bytes, used, length);
+            offset[count] = used;
+            used += length;
+            offset[count + 1] = used;
+            hashes[count] = hash;
+            slots[slot] = count;
+            if (++count * 2 > slots.length) {
+                rehash();
+            }
+            return count - 1;
+        }
+        
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            Arrays.fill(slots, -1);
+            int mask = slots.length - 1;
+            for (int symbol = 0; symbol < count; symbol++) {
+                int slot = mix(hashes[symbol]) & mask;
+                while (slots[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = symbol;
+            }
+        }
+        
+        private boolean equals(int symbol, byte[] source, int from, int to) {
+            int start = offset[symbol];
+            if (offset[symbol + 1] - start != to - from) {
+                return false;
+            }
+            for (int i = from; i < to; i++) {
+                if (bytes[start + i - from] != source[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static int mix(int hash) {
+            return (hash ^ hash >>> 16) * 0x45d9f3b;
+        }
+        
+        int size() {
+            return count;
+        }
+        
+        String name(int symbol) {
+            return new String(bytes, offset[symbol], offset[symbol + 1] - offset[symbol], StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package storage;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.ComponentType;
+import model.ConnectionWire;
+import model.GateComponent;
+import model.LogicGateModel;
+import simulation.Netlist;
+
+/**
+ * Compact binary circuit file format.
+ *
+ * <pre>
+ * header   magic "GATE", version u8, flags u8, reserved u16,
+ *          gate/edge/wire counts and six section offsets (i32, big-endian)
+ * types    varint count, then each ComponentType name as varint length + UTF-8
+ * gates    one varint per gate: (type code &lt;&lt; 1) | state
+ * geometry zig-zag varint deltas of x and y per gate
+ * inputs   per gate: varint input count, then zig-zag (gate - source) per input
+ * wires    per wire: varint source, zig-zag (target - source)
+ * </pre>
+ *
+ * Gates and nets are referred to by dense int index instead of UUID strings,
+ * and type codes index the file's own type table, so reordering
+ * {@link ComponentType} does not invalidate saved files. Files are read through
+ * a memory map ({@link #map}); the netlist sections can be decoded for
+ * simulation without building the component object graph.
+ */
+public final class CircuitFile {
+    
+    public static final int MAGIC = 0x47415445;
+    public static final int VERSION = 1;
+    static final int HEADER_SIZE = 44;
+    
+    /** First two bytes of a Java serialization stream. */
+    private static final int SERIALIZATION_MAGIC = 0xACED;
+    
+    private CircuitFile() {
+    }
+    
+    public static void save(LogicGateModel model, Path path) throws IOException {
+        Netlist netlist = Netlist.fromModel(model);
+        int n = netlist.size();
+        int[] x = new int[n];
+        int[] y = new int[n];
+        Map<GateComponent, Integer> index = new IdentityHashMap<>(n * 2);
+        for (int g = 0; g < n; g++) {
+            GateComponent component = netlist.component(g);
+            x[g] = component.getBounds().x;
+            y[g] = component.getBounds().y;
+            index.put(component, g);
+        }
+        List<ConnectionWire> wireList = model.getWires();
+        int[] wires = new int[wireList.size() * 2];
+        int count = 0;
+        for (ConnectionWire wire : wireList) {
+            Integer source = index.get(wire.getSource());
+            Integer target = index.get(wire.getTarget());
+            if (source != null && target != null) {
+                wires[count++] = source;
+                wires[count++] = target;
+            }
+        }
+        write(netlist, x, y, Arrays.copyOf(wires, count), path);
+    }
+    
+    /** Saves a netlist that has no component objects; one wire is written per input. */
+    public static void save(Netlist netlist, int[] x, int[] y, Path path) throws IOException {
+        int[] wires = new int[netlist.edgeCount() * 2];
+        int count = 0;
+        for (int g = 0; g < netlist.size(); g++) {
+            for (int i = 0; i < netlist.inputCount(g); i++) {
+                wires[count++] = netlist.input(g, i);
+                wires[count++] = g;
+            }
+        }
+        write(netlist, x, y, wires, path);
+    }
+    
+    private static void write(Netlist netlist, int[] x, int[] y, int[] wires, Path path) throws IOException {
+        int n = netlist.size();
+        ComponentType[] table = ComponentType.values();
+        ByteSink out = new ByteSink(HEADER_SIZE + n * 8);
+        out.position(HEADER_SIZE);
+        
+        int typesOffset = out.position();
+        out.writeVarint(table.length);
+        for (ComponentType type : table) {
+            byte[] name = type.name().getBytes(StandardCharsets.UTF_8);
+            out.writeVarint(name.length);
+            out.write(name);
+        }
+        
+        int gatesOffset = out.position();
+        for (int g = 0; g < n; g++) {
+            ComponentType type = netlist.componentType(g);
+            boolean state = netlist.hasComponents() ? netlist.component(g).getState() : netlist.initialState(g);
+            out.writeVarint(type.ordinal() << 1 | (state ? 1 : 0));
+        }
+        
+        int geometryOffset = out.position();
+        int lastX = 0;
+        int lastY = 0;
+        for (int g = 0; g < n; g++) {
+            out.writeZigZag(x[g] - lastX);
+            out.writeZigZag(y[g] - lastY);
+            lastX = x[g];
+            lastY = y[g];
+        }
+        
+        int inputsOffset = out.position();
+        for (int g = 0; g < n; g++) {
+            int count = netlist.inputCount(g);
+            out.writeVarint(count);
+            for (int i = 0; i < count; i++) {
+                out.writeZigZag(g - netlist.input(g, i));
+            }
+        }
+        
+        int wiresOffset = out.position();
+        for (int w = 0; w < wires.length; w += 2) {
+            out.writeVarint(wires[w]);
+            out.writeZigZag(wires[w + 1] - wires[w]);
+        }
+        int end = out.position();
+        
+        out.position(0);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(0);
+        out.writeByte(0);
+        out.writeByte(0);
+        out.writeInt(n);
+        out.writeInt(netlist.edgeCount());
+        out.writeInt(wires.length / 2);
+        out.writeInt(typesOffset);
+        out.writeInt(gatesOffset);
+        out.writeInt(geometryOffset);
+        out.writeInt(inputsOffset);
+        out.writeInt(wiresOffset);
+        out.writeInt(end);
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(out.array(), 0, end);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+    
+    /** Memory-maps a binary circuit file and validates its header. */
+    public static MappedCircuit map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Circuit file too large to map: " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedCircuit(buffer);
+        }
+    }
+    
+    /**
+     * Reads a binary circuit file into a heap buffer instead of mapping it.
+     * Suits one-shot decoding such as a batch run: the file is closed on
+     * return and no mapping is left behind until the next garbage collection.
+     */
+    public static MappedCircuit read(Path path) throws IOException {
+        return new MappedCircuit(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+    
+    /**
+     * Loads a circuit saved in either the binary format or the older Java
+     * serialization format, detected from the first bytes of the file.
+     */
+    public static LogicGateModel load(Path path) throws IOException {
+        if (isSerialized(path)) {
+            return importSerialized(path);
+        }
+        return map(path).toModel();
+    }
+    
+    /** Reads a model written by Java serialization. */
+    public static LogicGateModel importSerialized(Path path) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            Object object = in.readObject();
+            if (!(object instanceof LogicGateModel)) {
+                throw new IOException("File does not contain a circuit: " + object.getClass().getName());
+            }
+            return (LogicGateModel) object;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class in serialized circuit: " + e.getMessage(), e);
+        }
+    }
+    
+    /** Converts a Java-serialized circuit into the binary format. */
+    public static void convertSerialized(Path serialized, Path binary) throws IOException {
+        save(importSerialized(serialized), binary);
+    }
+    
+    public static boolean isSerialized(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            int b0 = in.read();
+            int b1 = in.read();
+            return b0 >= 0 && b1 >= 0 && (b0 << 8 | b1) == SERIALIZATION_MAGIC;
+        }
+    }
+    
+    /** Growable big-endian byte buffer with varint helpers. */
+    private static final class ByteSink {
+        
+        private byte[] bytes;
+        private int position;
+        
+        ByteSink(int capacity) {
+            bytes = new byte[Math.max(64, capacity)];
+        }
+        
+        int position() {
+            return position;
+        }
+        
+        void position(int position) {
+            ensure(position);
+            this.position = position;
+        }
+        
+        byte[] array() {
+            return bytes;
+        }
+        
+        void writeByte(int b) {
+            ensure(position + 1);
+            bytes[position++] = (byte) b;
+        }
+        
+        void write(byte[] data) {
+            ensure(position + data.length);
+            System.arraycopy(data, 0, bytes, position, data.length);
+            position += data.length;
+        }
+        
+        void writeInt(int v) {
+            writeByte(v >>> 24);
+            writeByte(v >>> 16);
+            writeByte(v >>> 8);
+            writeByte(v);
+        }
+        
+        void writeVarint(int v) {
+            ensure(position + 5);
+            while ((v & ~0x7F) != 0) {
+                bytes[position++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[position++] = (byte) v;
+        }
+        
+        void writeZigZag(int v) {
+            writeVarint((v << 1) ^ (v >> 31));
+        }
+        
+        private void ensure(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import model.ComponentType;
+import model.ConnectionWire;
+import model.GateComponent;
+import model.LogicGateModel;
+import model.Wiring;
+import simulation.GateOp;
+import simulation.Netlist;
+
+/**
+ * A binary circuit file read in place from a (memory-mapped) buffer.
+ *
+ * Only the header and type table are decoded up front. {@link #toNetlist()}
+ * decodes just the gate and input sections into primitive arrays, so a
+ * simulator can start without creating any {@link GateComponent};
+ * {@link #toModel()} builds the full editable object graph.
+ */
+public final class MappedCircuit {
+    
+    private final ByteBuffer buffer;
+    private final int version;
+    private final int gateCount;
+    private final int edgeCount;
+    private final int wireCount;
+    private final int gatesOffset;
+    private final int geometryOffset;
+    private final int inputsOffset;
+    private final int wiresOffset;
+    private final int end;
+    private final ComponentType[] types;
+    
+    MappedCircuit(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < CircuitFile.HEADER_SIZE || buffer.getInt(0) != CircuitFile.MAGIC) {
+            throw new IOException("Not a binary circuit file");
+        }
+        version = buffer.get(4) & 0xFF;
+        if (version > CircuitFile.VERSION) {
+            throw new IOException("Unsupported circuit file version " + version);
+        }
+        gateCount = buffer.getInt(8);
+        edgeCount = buffer.getInt(12);
+        wireCount = buffer.getInt(16);
+        int typesOffset = buffer.getInt(20);
+        gatesOffset = buffer.getInt(24);
+        geometryOffset = buffer.getInt(28);
+        inputsOffset = buffer.getInt(32);
+        wiresOffset = buffer.getInt(36);
+        end = buffer.getInt(40);
+        if (gateCount < 0 || edgeCount < 0 || wireCount < 0 || end > buffer.limit()
+                || !(CircuitFile.HEADER_SIZE <= typesOffset && typesOffset <= gatesOffset
+                && gatesOffset <= geometryOffset && geometryOffset <= inputsOffset
+                && inputsOffset <= wiresOffset && wiresOffset <= end)) {
+            throw new IOException("Corrupt circuit file header");
+        }
+        // Every varint takes at least one byte, so each count is bounded by its
+        // section's length; checked here so decoding never sizes arrays from a bad header
+        if (geometryOffset - gatesOffset < gateCount
+                || inputsOffset - geometryOffset < 2L * gateCount
+                || wiresOffset - inputsOffset < (long) gateCount + edgeCount
+                || end - wiresOffset < 2L * wireCount) {
+            throw new IOException("Circuit file counts exceed their sections (truncated or corrupt file)");
+        }
+        
+        Reader in = new Reader(typesOffset, gatesOffset);
+        int typeCount = in.varint();
+        if (typeCount < 0 || typeCount > gatesOffset - typesOffset) {
+            throw new IOException("Corrupt type table");
+        }
+        types = new ComponentType[typeCount];
+        for (int t = 0; t < types.length; t++) {
+            int length = in.varint();
+            if (length < 0 || length > gatesOffset - typesOffset) {
+                throw new IOException("Corrupt type table");
+            }
+            byte[] name = new byte[length];
+            for (int i = 0; i < length; i++) {
+                name[i] = in.next();
+            }
+            String typeName = new String(name, StandardCharsets.UTF_8);
+            try {
+                types[t] = ComponentType.valueOf(typeName);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown component type in circuit file: " + typeName, e);
+            }
+        }
+    }
+    
+    public int getVersion() {
+        return version;
+    }
+    
+    public int getGateCount() {
+        return gateCount;
+    }
+    
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+    
+    public int getWireCount() {
+        return wireCount;
+    }
+    
+    /** Decodes the component type of every gate. */
+    public ComponentType[] readTypes() throws IOException {
+        ComponentType[] result = new ComponentType[gateCount];
+        Reader in = new Reader(gatesOffset, geometryOffset);
+        for (int g = 0; g < gateCount; g++) {
+            result[g] = type(in.varint() >>> 1);
+        }
+        return result;
+    }
+    
+    /** Decodes gate positions into the given arrays. */
+    public void readPositions(int[] x, int[] y) throws IOException {
+        Reader in = new Reader(geometryOffset, inputsOffset);
+        int lastX = 0;
+        int lastY = 0;
+        for (int g = 0; g < gateCount; g++) {
+            lastX += in.zigzag();
+            lastY += in.zigzag();
+            x[g] = lastX;
+            y[g] = lastY;
+        }
+    }
+    
+    /** Decodes the simulation netlist without touching geometry or wires. */
+    public Netlist toNetlist() throws IOException {
+        byte[] ops = new byte[gateCount];
+        boolean[] initial = new boolean[gateCount];
+        Reader gates = new Reader(gatesOffset, geometryOffset);
+        for (int g = 0; g < gateCount; g++) {
+            int code = gates.varint();
+            ops[g] = (byte) GateOp.of(type(code >>> 1));
+            initial[g] = (code & 1) != 0;
+        }
+        
+        int[] inputStart = new int[gateCount + 1];
+        int[] inputs = new int[edgeCount];
+        Reader in = new Reader(inputsOffset, wiresOffset);
+        int e = 0;
+        for (int g = 0; g < gateCount; g++) {
+            inputStart[g] = e;
+            int count = in.varint();
+            if (count > edgeCount - e) {
+                throw new IOException("Corrupt input section at gate " + g);
+            }
+            for (int i = 0; i < count; i++) {
+                inputs[e++] = g - in.zigzag();
+            }
+        }
+        inputStart[gateCount] = e;
+        if (e != edgeCount) {
+            throw new IOException("Corrupt input section: expected " + edgeCount + " inputs, found " + e);
+        }
+        try {
+            return Netlist.of(ops, inputStart, inputs, initial);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Corrupt circuit file: " + ex.getMessage(), ex);
+        }
+    }
+    
+    /** Builds the full editable model: components, their inputs and wires. */
+    public LogicGateModel toModel() throws IOException {
+        Netlist netlist = toNetlist();
+        LogicGateModel model = new LogicGateModel();
+        GateComponent[] components = new GateComponent[gateCount];
+        Reader gates = new Reader(gatesOffset, geometryOffset);
+        Reader geometry = new Reader(geometryOffset, inputsOffset);
+        int x = 0;
+        int y = 0;
+        for (int g = 0; g < gateCount; g++) {
+            int code = gates.varint();
+            x += geometry.zigzag();
+            y += geometry.zigzag();
+            GateComponent component = new GateComponent(type(code >>> 1), x, y);
+            component.setState((code & 1) != 0);
+            components[g] = component;
+            model.addComponent(component);
+        }
+        
+        // Pair each saved wire with the first unclaimed input it feeds
+        int[] edgeStart = new int[gateCount + 1];
+        for (int g = 0; g < gateCount; g++) {
+            edgeStart[g + 1] = edgeStart[g] + netlist.inputCount(g);
+        }
+        boolean[] wired = new boolean[edgeCount];
+        int[] bare = new int[wireCount * 2];
+        int bareCount = 0;
+        Reader wires = new Reader(wiresOffset, end);
+        for (int w = 0; w < wireCount; w++) {
+            int source = wires.varint();
+            int target = source + wires.zigzag();
+            component(components, source);
+            component(components, target);
+            int edge = edgeStart[target];
+            while (edge < edgeStart[target + 1]
+                    && (wired[edge] || netlist.input(target, edge - edgeStart[target]) != source)) {
+                edge++;
+            }
+            if (edge < edgeStart[target + 1]) {
+                wired[edge] = true;
+            } else {
+                bare[bareCount++] = source;
+                bare[bareCount++] = target;
+            }
+        }
+        
+        // Inputs in saved order, each with its wire; then wires that feed no input
+        for (int g = 0; g < gateCount; g++) {
+            GateComponent target = components[g];
+            for (int i = 0; i < netlist.inputCount(g); i++) {
+                GateComponent source = components[netlist.input(g, i)];
+                if (wired[edgeStart[g] + i]) {
+                    model.addWire(Wiring.connect(source, target, i));
+                } else {
+                    target.getInputs().add(source);
+                }
+            }
+        }
+        for (int w = 0; w < bareCount; w += 2) {
+            model.addWire(new ConnectionWire(components[bare[w]], components[bare[w + 1]]));
+        }
+        return model;
+    }
+    
+    private ComponentType type(int code) throws IOException {
+        if (code < 0 || code >= types.length) {
+            throw new IOException("Unknown type code " + code);
+        }
+        return types[code];
+    }
+    
+    private static GateComponent component(GateComponent[] components, int index) throws IOException {
+        if (index < 0 || index >= components.length) {
+            throw new IOException("Reference to missing gate " + index);
+        }
+        return components[index];
+    }
+    
+    /** Sequential varint reader over one section of the buffer. */
+    private final class Reader {
+        
+        private int position;
+        private final int limit;
+        
+        Reader(int position, int limit) {
+            this.position = position;
+            this.limit = limit;
+        }
+        
+        byte next() throws IOException {
+            if (position >= limit) {
+                throw new IOException("Truncated circuit file section");
+            }
+            return buffer.get(position++);
+        }
+        
+        int varint() throws IOException {
+            int result = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = next();
+                result |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varint in circuit file");
+        }
+        
+        int zigzag() throws IOException {
+            int v = varint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package view;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JComponent;
+
+import model.ConnectionWire;
+import model.GateComponent;
+import model.ModelIndex;
+import simulation.IncrementalSimulator;
+import simulation.Netlist;
+
+/**
+ * Collects the canvas areas that need repainting after a state change.
+ *
+ * Regions are in model coordinates and grown by a small margin for outlines
+ * and anti-aliasing. Overlapping or nearby regions are merged as they arrive
+ * so a burst of changes turns into a handful of repaint calls; past
+ * {@link #MAX_REGIONS} everything collapses into one bounding rectangle.
+ */
+public class DirtyRegionTracker {
+    
+    public static final int MAX_REGIONS = 32;
+    private static final int MARGIN = 4;
+    
+    private final List<Rectangle> regions = new ArrayList<>();
+    
+    public void markComponent(GateComponent component) {
+        Rectangle bounds = new Rectangle(component.getBounds());
+        bounds.grow(MARGIN, MARGIN);
+        mark(bounds);
+    }
+    
+    /** Marks the box spanned by a wire, matching how {@link model.SpatialIndex} places wires. */
+    public void markWire(ConnectionWire wire) {
+        Rectangle source = wire.getSource().getBounds();
+        Rectangle target = wire.getTarget().getBounds();
+        Rectangle box = new Rectangle(source.x + source.width, source.y + source.height / 2, 0, 0);
+        box.add(target.x, target.y + target.height / 2);
+        box.grow(MARGIN, MARGIN);
+        mark(box);
+    }
+    
+    /**
+     * Marks every gate changed by the simulator's last update together with
+     * the wires it drives, whose colour follows the gate's state.
+     */
+    public void markChanged(IncrementalSimulator simulator, ModelIndex index) {
+        Netlist netlist = simulator.circuit().netlist();
+        for (int i = 0; i < simulator.changedCount(); i++) {
+            GateComponent component = netlist.component(simulator.changedGate(i));
+            if (component == null) {
+                continue;
+            }
+            markComponent(component);
+            for (ConnectionWire wire : index.getOutgoingWires(component)) {
+                markWire(wire);
+            }
+        }
+    }
+    
+    public void mark(Rectangle region) {
+        if (region.width <= 0 || region.height <= 0) {
+            region = new Rectangle(region.x, region.y, Math.max(1, region.width), Math.max(1, region.height));
+        }
+        Rectangle merged = new Rectangle(region);
+        // Absorb every region the new one overlaps or makes cheap to cover
+        boolean absorbed = true;
+        while (absorbed) {
+            absorbed = false;
+            for (int i = regions.size() - 1; i >= 0; i--) {
+                Rectangle existing = regions.get(i);
+                if (worthMerging(existing, merged)) {
+                    merged.add(existing);
+                    regions.remove(i);
+                    absorbed = true;
+                }
+            }
+        }
+        regions.add(merged);
+        if (regions.size() > MAX_REGIONS) {
+            Rectangle all = new Rectangle(regions.get(0));
+            for (Rectangle r : regions) {
+                all.add(r);
+            }
+            regions.clear();
+            regions.add(all);
+        }
+    }
+    
+    /** Merges when the union costs little more area than the two regions painted separately. */
+    private static boolean worthMerging(Rectangle a, Rectangle b) {
+        if (a.intersects(b)) {
+            return true;
+        }
+        Rectangle union = a.union(b);
+        long unionArea = (long) union.width * union.height;
+        long separate = (long) a.width * a.height + (long) b.width * b.height;
+        return unionArea <= separate + separate / 2;
+    }
+    
+    public boolean isEmpty() {
+        return regions.isEmpty();
+    }
+    
+    /** Returns and clears the pending regions. */
+    public List<Rectangle> drain() {
+        List<Rectangle> pending = new ArrayList<>(regions);
+        regions.clear();
+        return pending;
+    }
+    
+    /**
+     * Requests a repaint of each pending region on the canvas, converting
+     * from model to screen coordinates with the view's zoom and pan offset.
+     */
+    public void flush(JComponent canvas, double zoom, int offsetX, int offsetY) {
+        for (Rectangle r : drain()) {
+            int x = (int) Math.floor(r.x * zoom) + offsetX;
+            int y = (int) Math.floor(r.y * zoom) + offsetY;
+            int w = (int) Math.ceil(r.width * zoom) + 1;
+            int h = (int) Math.ceil(r.height * zoom) + 1;
+            canvas.repaint(x, y, w, h);
+        }
+    }
+}
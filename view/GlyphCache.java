@@ -0,0 +1,118 @@
+package view;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+import model.ComponentType;
+import model.GateComponent;
+
+/**
+ * Pre-rendered gate sprites, one per component type, state and zoom step.
+ *
+ * Drawing a gate becomes a single image blit instead of re-stroking its
+ * shape. Sprites are compatible images for the screen's graphics
+ * configuration, which Java2D caches in video memory on its own; unlike a
+ * VolatileImage they never lose their contents. Zoom is quantized to
+ * {@link #ZOOM_STEPS} steps per doubling so the cache stays small while
+ * zooming.
+ */
+public class GlyphCache {
+    
+    /** Draws one gate glyph into a sprite of the given size, origin at top-left. */
+    public interface GlyphPainter {
+        void paint(Graphics2D g, ComponentType type, boolean state, int width, int height);
+    }
+    
+    public static final int ZOOM_STEPS = 8;
+    
+    private final GlyphPainter painter;
+    private final GraphicsConfiguration configuration;
+    private final Map<Long, BufferedImage> sprites = new HashMap<>();
+    
+    public GlyphCache(GlyphPainter painter) {
+        this.painter = painter;
+        this.configuration = GraphicsEnvironment.isHeadless() ? null
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+    }
+    
+    /**
+     * Draws a component at its bounds scaled by {@code zoom}. The sprite of
+     * the nearest zoom step is stretched by at most a few percent onto the
+     * exact screen bounds, so the glyph covers the gate's hit box and dirty
+     * region at any zoom.
+     */
+    public void draw(Graphics2D g, GateComponent component, double zoom) {
+        Rectangle bounds = component.getBounds();
+        int x = (int) Math.round(bounds.x * zoom);
+        int y = (int) Math.round(bounds.y * zoom);
+        int w = (int) Math.round((bounds.x + bounds.width) * zoom) - x;
+        int h = (int) Math.round((bounds.y + bounds.height) * zoom) - y;
+        BufferedImage sprite = sprite(component.getType(), component.getState(), bounds.width, bounds.height, zoom);
+        if (sprite.getWidth() == w && sprite.getHeight() == h) {
+            g.drawImage(sprite, x, y, null);
+        } else {
+            g.drawImage(sprite, x, y, w, h, null);
+        }
+    }
+    
+    /** Returns the cached sprite, rendering it on first use. */
+    public BufferedImage sprite(ComponentType type, boolean state, int width, int height, double zoom) {
+        int step = zoomStep(zoom);
+        long key = ((long) step << 40) | ((long) (width & 0xFFFF) << 24) | ((long) (height & 0xFFFF) << 8)
+                | ((long) type.ordinal() << 1) | (state ? 1 : 0);
+        BufferedImage sprite = sprites.get(key);
+        if (sprite == null) {
+            sprite = render(type, state, width, height, stepZoom(step));
+            sprites.put(key, sprite);
+        }
+        return sprite;
+    }
+    
+    private BufferedImage render(ComponentType type, boolean state, int width, int height, double zoom) {
+        int w = Math.max(1, (int) Math.ceil(width * zoom));
+        int h = Math.max(1, (int) Math.ceil(height * zoom));
+        BufferedImage image = configuration != null
+                ? configuration.createCompatibleImage(w, h, Transparency.TRANSLUCENT)
+                : new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, w, h);
+            g.setComposite(AlphaComposite.SrcOver);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.scale(zoom, zoom);
+            painter.paint(g, type, state, width, height);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+    
+    static int zoomStep(double zoom) {
+        if (!(zoom > 0)) {
+            throw new IllegalArgumentException("Zoom must be positive");
+        }
+        return (int) Math.round(Math.log(zoom) / Math.log(2) * ZOOM_STEPS);
+    }
+    
+    static double stepZoom(int step) {
+        return Math.pow(2, (double) step / ZOOM_STEPS);
+    }
+    
+    public int size() {
+        return sprites.size();
+    }
+    
+    /** Drops every sprite, e.g. after the theme or the painter's styling changed. */
+    public void clear() {
+        sprites.clear();
+    }
+}
@@ -0,0 +1,109 @@
+package view;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import model.GateComponent;
+import model.SpatialIndex;
+import simulation.Netlist;
+import simulation.SimulationMetrics;
+
+/**
+ * Paints per-gate toggle activity from {@link SimulationMetrics} as a
+ * translucent overlay on top of the circuit.
+ *
+ * Counts are scaled logarithmically against the hottest gate, so a few very
+ * busy gates don't wash out the rest, and mapped from blue (rarely toggles)
+ * through yellow to red (hottest). Gates that never toggled are left clear.
+ * Only the components the {@link SpatialIndex} finds under the graphics
+ * clip are visited, or every gate if there is no clip. Colours come from a
+ * fixed palette, and the component-to-gate map is rebuilt only when the
+ * metrics are bound to a new netlist, so a frame costs time proportional to
+ * what is on screen.
+ */
+public class HeatMapOverlay {
+    
+    private static final int ALPHA = 140;
+    private static final int PALETTE_SIZE = 64;
+    private static final Color[] PALETTE = new Color[PALETTE_SIZE];
+    
+    static {
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            double heat = i / (double) (PALETTE_SIZE - 1);
+            if (heat < 0.5) {
+                double t = heat * 2;
+                PALETTE[i] = new Color((int) (255 * t), (int) (255 * t), (int) (255 * (1 - t)), ALPHA);
+            } else {
+                double t = (heat - 0.5) * 2;
+                PALETTE[i] = new Color(255, (int) (255 * (1 - t)), 0, ALPHA);
+            }
+        }
+    }
+    
+    private final SimulationMetrics metrics;
+    private final SpatialIndex index;
+    private Netlist mappedNetlist;
+    private Map<GateComponent, Integer> gateOf;
+    
+    /**
+     * @param index spatial index of the model the metrics' netlist was built
+     *        from, kept current by the caller
+     */
+    public HeatMapOverlay(SimulationMetrics metrics, SpatialIndex index) {
+        this.metrics = metrics;
+        this.index = index;
+    }
+    
+    /** Paints the overlay with the view's zoom; the caller has already applied the pan offset. */
+    public void paint(Graphics2D g, double zoom) {
+        Netlist netlist = metrics.netlist();
+        long max = metrics.maxGateToggles();
+        if (netlist == null || max == 0) {
+            return;
+        }
+        if (netlist != mappedNetlist) {
+            gateOf = new IdentityHashMap<>(netlist.size() * 2);
+            for (int gate = 0; gate < netlist.size(); gate++) {
+                GateComponent component = netlist.component(gate);
+                if (component != null) {
+                    gateOf.put(component, gate);
+                }
+            }
+            mappedNetlist = netlist;
+        }
+        Iterable<GateComponent> visible = gateOf.keySet();
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            // Clip in model coordinates, rounded outwards
+            int x0 = (int) Math.floor(clip.x / zoom);
+            int y0 = (int) Math.floor(clip.y / zoom);
+            visible = index.componentsIn(new Rectangle(x0, y0,
+                    (int) Math.ceil((clip.x + clip.width) / zoom) - x0,
+                    (int) Math.ceil((clip.y + clip.height) / zoom) - y0));
+        }
+        double scale = Math.log1p(max);
+        for (GateComponent component : visible) {
+            Integer gate = gateOf.get(component);
+            long toggles = gate == null ? 0 : metrics.gateToggles(gate);
+            if (toggles == 0) {
+                continue;
+            }
+            Rectangle bounds = component.getBounds();
+            int x = (int) Math.floor(bounds.x * zoom);
+            int y = (int) Math.floor(bounds.y * zoom);
+            int w = (int) Math.ceil(bounds.width * zoom);
+            int h = (int) Math.ceil(bounds.height * zoom);
+            g.setColor(colorFor(Math.log1p(toggles) / scale));
+            g.fillRect(x, y, w, h);
+        }
+    }
+    
+    /** Maps heat in [0, 1] to blue, yellow, red, quantized to a shared palette. */
+    public static Color colorFor(double heat) {
+        heat = Math.max(0, Math.min(1, heat));
+        return PALETTE[(int) Math.round(heat * (PALETTE_SIZE - 1))];
+    }
+}